@@ -68,6 +68,10 @@ public class InfinitestPlugin extends AbstractUIPlugin {
 	// CHECKSTYLE:ON
 	{
 		sharedInstance = null;
+		if (this.context != null) {
+			this.context.close();
+			this.context = null;
+		}
 		super.stop(context);
 	}
 
@@ -84,6 +88,8 @@ public class InfinitestPlugin extends AbstractUIPlugin {
 	protected void initializeDefaultPreferences(IPreferenceStore store) {
 		store.setDefault(PARALLEL_CORES, 1);
 		store.setDefault(SLOW_TEST_WARNING, getSlowTestTimeLimit());
+		store.setDefault(UPDATE_QUIET_PERIOD, getUpdateQuietPeriod());
+		store.setDefault(MAXIMUM_UPDATE_DELAY, getMaximumUpdateDelay());
 	}
 
 	// Only used for testing.
@@ -117,5 +123,7 @@ public class InfinitestPlugin extends AbstractUIPlugin {
 	void restoreSavedPreferences(Preferences preferences, CoreSettings coreSettings) {
 		coreSettings.setConcurrentCoreCount(preferences.getInt(PARALLEL_CORES));
 		InfinitestGlobalSettings.setSlowTestTimeLimit(preferences.getLong(SLOW_TEST_WARNING));
+		InfinitestGlobalSettings.setUpdateQuietPeriod(preferences.getLong(UPDATE_QUIET_PERIOD));
+		InfinitestGlobalSettings.setMaximumUpdateDelay(preferences.getLong(MAXIMUM_UPDATE_DELAY));
 	}
 }
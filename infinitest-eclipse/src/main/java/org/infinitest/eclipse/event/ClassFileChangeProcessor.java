@@ -25,18 +25,28 @@ import static org.eclipse.core.resources.IResourceChangeEvent.*;
 
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
+import org.infinitest.*;
 import org.infinitest.eclipse.workspace.*;
+import org.springframework.beans.factory.*;
 import org.springframework.beans.factory.annotation.*;
 import org.springframework.stereotype.*;
 
 @Component
-class ClassFileChangeProcessor extends EclipseEventProcessor {
+class ClassFileChangeProcessor extends EclipseEventProcessor implements DisposableBean {
 	private final WorkspaceFacade workspace;
+	private final UpdateCoalescer coalescer;
 
 	@Autowired
-	ClassFileChangeProcessor(WorkspaceFacade workspace) {
+	ClassFileChangeProcessor(WorkspaceFacade workspace, final EventQueue eventQueue) {
 		super("Looking for tests");
 		this.workspace = workspace;
+		// The coalesced update goes back on the queue, so it doesn't run
+		// alongside the other event processors
+		coalescer = new UpdateCoalescer(new Runnable() {
+			public void run() {
+				eventQueue.pushNamed(new UpdateProjectsRunnable());
+			}
+		});
 	}
 
 	@Override
@@ -47,10 +57,14 @@ class ClassFileChangeProcessor extends EclipseEventProcessor {
 	@Override
 	public void processEvent(IResourceChangeEvent event) throws CoreException {
 		if (containsClassFileChanges(getDeltas(event))) {
-			workspace.updateProjects();
+			coalescer.requestUpdate();
 		}
 	}
 
+	public void destroy() {
+		coalescer.shutdown();
+	}
+
 	private boolean containsClassFileChanges(IResourceDelta... deltas) {
 		// DEBT SHould use IResourceDeltaVisitor instead
 		for (IResourceDelta delta : deltas) {
@@ -64,4 +78,18 @@ class ClassFileChangeProcessor extends EclipseEventProcessor {
 	private boolean isClassFile(IResourceDelta delta) {
 		return delta.getFullPath().toPortableString().endsWith(".class");
 	}
+
+	private class UpdateProjectsRunnable extends NamedRunnable {
+		UpdateProjectsRunnable() {
+			super(getJobName());
+		}
+
+		public void run() {
+			try {
+				workspace.updateProjects();
+			} catch (CoreException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
 }
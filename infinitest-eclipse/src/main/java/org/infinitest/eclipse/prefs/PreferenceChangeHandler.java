@@ -62,6 +62,26 @@ public class PreferenceChangeHandler {
 		if (PARALLEL_CORES.equals(preference)) {
 			updateConcurrency((String) newValue);
 		}
+
+		if (UPDATE_QUIET_PERIOD.equals(preference)) {
+			updateQuietPeriod((String) newValue);
+		}
+
+		if (MAXIMUM_UPDATE_DELAY.equals(preference)) {
+			updateMaximumDelay((String) newValue);
+		}
+	}
+
+	private void updateQuietPeriod(String newValue) {
+		if (!isBlank(newValue)) {
+			setUpdateQuietPeriod(parseInt(newValue));
+		}
+	}
+
+	private void updateMaximumDelay(String newValue) {
+		if (!isBlank(newValue)) {
+			setMaximumUpdateDelay(parseInt(newValue));
+		}
 	}
 
 	private void updateConcurrency(String newValue) {
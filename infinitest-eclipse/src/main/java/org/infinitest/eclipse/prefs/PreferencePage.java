@@ -57,6 +57,22 @@ public class PreferencePage extends FieldEditorPreferencePage implements IWorkbe
 		addField(autoTestEditor);
 		addField(createParallelizationEditor());
 		addField(createSlowTestWarningCutoffEditor());
+		addField(createQuietPeriodEditor());
+		addField(createMaximumDelayEditor());
+	}
+
+	private FieldEditor createQuietPeriodEditor() {
+		IntegerFieldEditor editor = new IntegerFieldEditor(UPDATE_QUIET_PERIOD, "Wait For Compiles To Settle (milliseconds)", getFieldEditorParent());
+		editor.setEmptyStringAllowed(false);
+		editor.setValidRange(0, MAX_VALUE);
+		return editor;
+	}
+
+	private FieldEditor createMaximumDelayEditor() {
+		IntegerFieldEditor editor = new IntegerFieldEditor(MAXIMUM_UPDATE_DELAY, "Longest Wait Before Testing (milliseconds)", getFieldEditorParent());
+		editor.setEmptyStringAllowed(false);
+		editor.setValidRange(0, MAX_VALUE);
+		return editor;
 	}
 
 	private FieldEditor createSlowTestWarningCutoffEditor() {
@@ -35,4 +35,11 @@ public abstract class PreferencesConstants {
 
 	public static final String SLOW_TEST_WARNING = "org.infinitest.eclipse.slow-warning";
 
+	/**
+	 * How long class files must stop changing before the tests are run.
+	 */
+	public static final String UPDATE_QUIET_PERIOD = "org.infinitest.eclipse.quiet-period";
+
+	public static final String MAXIMUM_UPDATE_DELAY = "org.infinitest.eclipse.maximum-delay";
+
 }
@@ -24,13 +24,20 @@ package org.infinitest.eclipse.workspace;
 import java.net.*;
 
 import org.infinitest.*;
+import org.infinitest.changedetect.*;
+import org.infinitest.eclipse.*;
 import org.springframework.beans.factory.annotation.*;
 import org.springframework.stereotype.*;
 
+import com.google.common.annotations.*;
+
 @Component
-class CoreFactory implements CoreSettings {
+class CoreFactory implements CoreSettings, UpdateListener {
 	private final EventQueue eventQueue;
 	private final ConcurrencyController concurrencyController;
+	// Projects usually have the output directories of the projects they
+	// depend on in their classpath, so those are only walked once per update
+	private final DirectoryScanService scanService = new DirectoryScanService();
 
 	@Autowired
 	public CoreFactory(EventQueue eventQueue) {
@@ -43,6 +50,7 @@ class CoreFactory implements CoreSettings {
 		InfinitestCoreBuilder coreBuilder = new InfinitestCoreBuilder(environment, eventQueue);
 		coreBuilder.setUpdateSemaphore(concurrencyController);
 		coreBuilder.setName(projectName);
+		coreBuilder.setDirectoryScanService(scanService);
 		core = coreBuilder.createCore();
 		return core;
 	}
@@ -50,4 +58,13 @@ class CoreFactory implements CoreSettings {
 	public void setConcurrentCoreCount(int coreCount) {
 		concurrencyController.setCoreCount(coreCount);
 	}
+
+	public void projectsUpdated() {
+		scanService.startCycle();
+	}
+
+	@VisibleForTesting
+	DirectoryScanService getScanService() {
+		return scanService;
+	}
 }
@@ -52,6 +52,8 @@ class EclipseWorkspace implements WorkspaceFacade {
 		this.projectSet = projectSet;
 		this.coreRegistry = coreRegistry;
 		this.coreFactory = coreFactory;
+		// Each update starts a new cycle of the directory walks the cores share
+		updateEvent.addListener(coreFactory);
 	}
 
 	@Autowired
@@ -47,10 +47,14 @@ public class WhenPluginIsLoaded {
 	public void shouldRestoreSavedPreferences() {
 		when(preferences.getInt(PARALLEL_CORES)).thenReturn(4);
 		when(preferences.getLong(SLOW_TEST_WARNING)).thenReturn(1000L);
+		when(preferences.getLong(UPDATE_QUIET_PERIOD)).thenReturn(400L);
+		when(preferences.getLong(MAXIMUM_UPDATE_DELAY)).thenReturn(3000L);
 
 		plugin.restoreSavedPreferences(preferences, coreSettings);
 
 		verify(coreSettings).setConcurrentCoreCount(4);
 		assertEquals(1000L, InfinitestGlobalSettings.getSlowTestTimeLimit());
+		assertEquals(400L, InfinitestGlobalSettings.getUpdateQuietPeriod());
+		assertEquals(3000L, InfinitestGlobalSettings.getMaximumUpdateDelay());
 	}
 }
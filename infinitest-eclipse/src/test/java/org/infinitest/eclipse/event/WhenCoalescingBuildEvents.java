@@ -0,0 +1,86 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.eclipse.event;
+
+import static org.infinitest.util.InfinitestGlobalSettings.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.eclipse.core.runtime.*;
+import org.infinitest.*;
+import org.infinitest.eclipse.*;
+import org.infinitest.eclipse.workspace.*;
+import org.junit.*;
+import org.mockito.*;
+
+public class WhenCoalescingBuildEvents extends ResourceEventSupport {
+	private ClassFileChangeProcessor processor;
+	private WorkspaceFacade workspace;
+	private EventQueue queue;
+
+	@Before
+	public void inContext() {
+		workspace = mock(WorkspaceFacade.class);
+		queue = mock(EventQueue.class);
+		processor = new ClassFileChangeProcessor(workspace, queue);
+	}
+
+	@After
+	public void cleanup() {
+		processor.destroy();
+		resetToDefaults();
+	}
+
+	@Test
+	public void shouldUpdateTheProjectsOnTheEventQueue() throws CoreException {
+		setUpdateQuietPeriod(0);
+		processor.processEvent(autoBuildEvent());
+		verifyZeroInteractions(workspace);
+
+		ArgumentCaptor<NamedRunnable> update = ArgumentCaptor.forClass(NamedRunnable.class);
+		verify(queue).pushNamed(update.capture());
+		update.getValue().run();
+		verify(workspace).updateProjects();
+	}
+
+	@Test
+	public void shouldUpdateOnceForABurstOfBuilds() throws Exception {
+		setUpdateQuietPeriod(200);
+		for (int i = 0; i < 3; i++) {
+			processor.processEvent(autoBuildEvent());
+		}
+
+		verify(queue, timeout(5000)).pushNamed(any(NamedRunnable.class));
+		Thread.sleep(300);
+		verify(queue, times(1)).pushNamed(any(NamedRunnable.class));
+	}
+
+	@Test
+	public void shouldDropWaitingUpdatesWhenDestroyed() throws Exception {
+		setUpdateQuietPeriod(100);
+		processor.processEvent(autoBuildEvent());
+		processor.destroy();
+
+		Thread.sleep(300);
+		verifyZeroInteractions(queue);
+	}
+}
@@ -29,6 +29,7 @@ import static org.mockito.Mockito.*;
 import org.eclipse.core.internal.events.*;
 import org.eclipse.core.resources.*;
 import org.eclipse.core.runtime.*;
+import org.infinitest.*;
 import org.infinitest.eclipse.*;
 import org.infinitest.eclipse.workspace.*;
 import org.junit.*;
@@ -40,7 +41,7 @@ public class WhenRespondingToBuildEvents extends ResourceEventSupport {
 	@Before
 	public void inContext() {
 		workspace = mock(WorkspaceFacade.class);
-		processor = new ClassFileChangeProcessor(workspace);
+		processor = new ClassFileChangeProcessor(workspace, mock(EventQueue.class));
 	}
 
 	@After
@@ -83,6 +83,20 @@ public class WhenPreferencesAreChanged {
 		assertEquals(100, getSlowTestTimeLimit());
 	}
 
+	@Test
+	public void shouldAdjustQuietPeriod() {
+		when(eventSource.getPreferenceName()).thenReturn(UPDATE_QUIET_PERIOD);
+		changeProperty(VALUE, "250", "1000");
+		assertEquals(1000, getUpdateQuietPeriod());
+	}
+
+	@Test
+	public void shouldAdjustMaximumUpdateDelay() {
+		when(eventSource.getPreferenceName()).thenReturn(MAXIMUM_UPDATE_DELAY);
+		changeProperty(VALUE, "2000", "5000");
+		assertEquals(5000, getMaximumUpdateDelay());
+	}
+
 	@Test
 	public void shouldAdjustSemaphorePermits() {
 		when(eventSource.getPreferenceName()).thenReturn(PARALLEL_CORES);
@@ -46,6 +46,7 @@ public class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport
 	private CoreRegistry coreRegistry;
 	private ProjectSet projectSet;
 	private EclipseWorkspace workspace;
+	private CoreFactory coreFactory;
 	private WorkspaceStatus updatedStatus;
 	private int updates;
 
@@ -55,7 +56,7 @@ public class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport
 		projectSet = mock(ProjectSet.class);
 		projects.add(newFacade(project));
 		coreRegistry = mock(CoreRegistry.class);
-		CoreFactory coreFactory = new CoreFactory(null);
+		coreFactory = new CoreFactory(null);
 
 		when(projectSet.projects()).thenReturn(projects);
 		when(projectSet.hasErrors()).thenReturn(false);
@@ -74,6 +75,16 @@ public class WhenUpdatingTheProjectsInTheWorkspace extends ResourceEventSupport
 		};
 	}
 
+	@Test
+	public void shouldStartANewDirectoryScanCycleForEachUpdate() throws CoreException {
+		prepateCore(projectAUri(), 10);
+
+		workspace.updateProjects();
+		workspace.updateProjects();
+
+		assertEquals(2, coreFactory.getScanService().getCycle());
+	}
+
 	@Test
 	public void shouldCreateACoreOnUpdateIfNoneExists() throws CoreException {
 		URI projectAUri = projectAUri();
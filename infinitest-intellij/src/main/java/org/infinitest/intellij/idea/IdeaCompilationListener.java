@@ -29,11 +29,23 @@ import com.intellij.openapi.compiler.*;
 public class IdeaCompilationListener implements CompilationStatusListener, TestControl {
 	private final InfinitestCore core;
 	private final ModuleSettings moduleSettings;
-	private boolean shouldRunTests = true;
+	private final UpdateCoalescer coalescer;
+	private volatile boolean shouldRunTests = true;
+	private volatile RuntimeEnvironment compiledEnvironment;
 
-	public IdeaCompilationListener(InfinitestCore core, ModuleSettings moduleSettings) {
+	public IdeaCompilationListener(final InfinitestCore core, ModuleSettings moduleSettings) {
 		this.core = core;
 		this.moduleSettings = moduleSettings;
+		coalescer = new UpdateCoalescer(new Runnable() {
+			public void run() {
+				// Applied here rather than on the compile thread, so it can't
+				// change underneath an update that is still running
+				core.setRuntimeEnvironment(compiledEnvironment);
+				if (shouldRunTests) {
+					core.update();
+				}
+			}
+		});
 	}
 
 	public void compilationFinished(boolean aborted, int errors, int warnings, CompileContext compileContext) {
@@ -43,13 +55,18 @@ public class IdeaCompilationListener implements CompilationStatusListener, TestC
 		}
 
 		if (!aborted && (errors == 0)) {
-			core.setRuntimeEnvironment(runtimeEnvironment);
-			if (shouldRunTests) {
-				core.update();
-			}
+			compiledEnvironment = runtimeEnvironment;
+			coalescer.requestUpdate();
 		}
 	}
 
+	/**
+	 * Drops any update that is waiting for compiles to settle.
+	 */
+	public void shutdown() {
+		coalescer.shutdown();
+	}
+
 	public void setRunTests(boolean shouldRunTests) {
 		if (shouldRunTests && !this.shouldRunTests) {
 			core.reload();
@@ -106,6 +106,7 @@ public class InfinitestLauncherImpl implements InfinitestLauncher {
 		toolWindowRegistry.unregisterToolWindow(toolWindowId());
 		infinitestBuilder.removeStatusListener(greenHookListener);
 		compilationNotifier.removeCompilationStatusListener(testControl);
+		testControl.shutdown();
 	}
 
 	private String toolWindowId() {
@@ -21,6 +21,7 @@
  */
 package org.infinitest.intellij;
 
+import static org.infinitest.util.InfinitestGlobalSettings.*;
 import static org.mockito.Mockito.*;
 
 import org.infinitest.*;
@@ -37,6 +38,12 @@ public class WhenCompilationCompletes {
 	@Before
 	public void inContext() {
 		core = mock(InfinitestCore.class);
+		setUpdateQuietPeriod(0);
+	}
+
+	@After
+	public void cleanup() {
+		resetToDefaults();
 	}
 
 	@Test
@@ -65,4 +72,16 @@ public class WhenCompilationCompletes {
 		verify(core, never()).setRuntimeEnvironment(Matchers.any(RuntimeEnvironment.class));
 		verify(core, never()).update();
 	}
+
+	@Test
+	public void shouldChangeTheEnvironmentOnTheUpdateThread() {
+		setUpdateQuietPeriod(100);
+		IdeaCompilationListener listener = new IdeaCompilationListener(core, moduleSettings);
+		listener.compilationFinished(false, 0, 0, null);
+		verify(core, never()).setRuntimeEnvironment(Matchers.any(RuntimeEnvironment.class));
+
+		verify(core, timeout(5000)).update();
+		verify(core).setRuntimeEnvironment(Matchers.any(RuntimeEnvironment.class));
+		listener.shutdown();
+	}
 }
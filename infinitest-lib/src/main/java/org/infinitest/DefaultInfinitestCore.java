@@ -43,7 +43,7 @@ class DefaultInfinitestCore implements InfinitestCore {
 	private ChangeDetector changeDetector;
 	private final Set<Class<? extends Throwable>> caughtExceptions;
 	private final EventNormalizer normalizer;
-	private RuntimeEnvironment currentEnvironment;
+	private volatile RuntimeEnvironment currentEnvironment;
 	private String name;
 	private final List<ReloadListener> reloadListeners;
 	private final List<DisabledTestListener> disabledTestListeners;
@@ -70,8 +70,12 @@ class DefaultInfinitestCore implements InfinitestCore {
 	}
 
 	public synchronized int update(Collection<File> changedFiles) {
+		return update(changedFiles, Collections.<File> emptySet());
+	}
+
+	private int update(Collection<File> changedFiles, Collection<File> removedFiles) {
 		log(CONFIG, "Core Update " + name);
-		int testsRun = runOptimizedTestSet(changedFiles);
+		int testsRun = runOptimizedTestSet(changedFiles, removedFiles);
 		caughtExceptions.clear();
 		return testsRun;
 	}
@@ -80,36 +84,54 @@ class DefaultInfinitestCore implements InfinitestCore {
 	// could warn the user when they make changes that don't trigger tests
 	public synchronized int update() {
 		try {
-			return update(findChangedClassFiles());
+			Collection<File> changedFiles = findChangedClassFiles();
+			int testsRun = update(changedFiles, findRemovedClassFiles());
+			changeDetector.saveState();
+			return testsRun;
 		} catch (IOException e) {
 			checkForFatalError(e);
 		}
 		return 0;
 	}
 
-	public void reload() {
+	public synchronized void reload() {
+		// Every file is still reported as changed, so all the tests are run
+		// again, but the index doesn't have to parse unchanged class files
+		clearAndRestoreIndex();
+		fireReload();
+	}
+
+	private Map<File, Long> clearAndRestoreIndex() {
 		log("Reloading core " + name);
 		testDetector.clear();
 		changeDetector.clear();
-
-		fireReload();
+		return testDetector.restoreIndex();
 	}
 
-	public void setRuntimeEnvironment(RuntimeEnvironment environment) {
+	public synchronized void setRuntimeEnvironment(RuntimeEnvironment environment) {
 		if ((currentEnvironment == null) || !environment.equals(currentEnvironment)) {
+			boolean startingUp = currentEnvironment == null;
 			currentEnvironment = environment;
 			runner.setRuntimeEnvironment(environment);
 			changeDetector.setClasspathProvider(environment);
 			testDetector.setClasspathProvider(environment);
-			reload();
+			Map<File, Long> unchangedFiles = clearAndRestoreIndex();
+			if (startingUp) {
+				// Only run tests for classes that changed since the last session
+				changeDetector.seed(unchangedFiles);
+			}
+			fireReload();
 		}
 	}
 
-	private int runOptimizedTestSet(Collection<File> changedFiles) {
-		Set<String> oldTests = testDetector.getCurrentTests();
-		Collection<JavaClass> testsToRun = testDetector.findTestsToRun(changedFiles);
-		Set<String> newTests = testDetector.getCurrentTests();
-		fireDisabledTestEvents(difference(oldTests, newTests));
+	private int runOptimizedTestSet(Collection<File> changedFiles, Collection<File> removedFiles) {
+		Set<JavaClass> testsToRun = newHashSet(testDetector.findTestsToRun(changedFiles));
+		// Removed after the changes are indexed, so a class that moved to
+		// another class file keeps the classes that depend on it
+		if (!removedFiles.isEmpty()) {
+			testsToRun.addAll(testDetector.removeClasses(removedFiles));
+		}
+		fireDisabledTestEvents(testDetector.findDisabledTests());
 		if (!testsToRun.isEmpty()) {
 			log(name + " Running tests: " + testsToRun);
 			runTests(testsToRun);
@@ -120,13 +142,6 @@ class DefaultInfinitestCore implements InfinitestCore {
 	}
 
 	private Collection<File> findChangedClassFiles() throws IOException {
-		if (changeDetector.filesWereRemoved()) {
-			// Instead of reloading the core when a file is removed,
-			// we should ask the test detector to remove it from the dependency
-			// graph
-			log("Files removed. Reloading " + name);
-			reload();
-		}
 		Collection<File> changedFiles = changeDetector.findChangedFiles();
 		if (!changedFiles.isEmpty()) {
 			log(name + " Files changed: " + changedFiles);
@@ -134,6 +149,14 @@ class DefaultInfinitestCore implements InfinitestCore {
 		return changedFiles;
 	}
 
+	private Collection<File> findRemovedClassFiles() {
+		Collection<File> removedFiles = changeDetector.findRemovedFiles();
+		if (!removedFiles.isEmpty()) {
+			log(name + " Files removed: " + removedFiles);
+		}
+		return removedFiles;
+	}
+
 	public RunStatistics getRunStatistics() {
 		return stats;
 	}
@@ -36,12 +36,26 @@ import org.infinitest.testrunner.*;
  * @author bjrady
  */
 public class InfinitestCoreBuilder {
+	private static final String INDEX_SNAPSHOT_EXTENSION = ".index";
+	private static final String TIMESTAMP_INDEX_EXTENSION = ".timestamps";
+
 	private TestFilter filterList;
 	private final Class<? extends TestRunner> runnerClass;
 	private final RuntimeEnvironment runtimeEnvironment;
 	private final EventQueue eventQueue;
 	private String coreName = "";
 	private ConcurrencyController controller;
+	private ClassParserType parserType = ClassParserType.JAVASSIST;
+	private int parsingThreads = 1;
+	private boolean apiChangeFilter;
+	private boolean innerClassFolding;
+	private UnmatchedResourcePolicy unmatchedResourcePolicy = UnmatchedResourcePolicy.IGNORE;
+	private boolean coverageTracking;
+	private boolean fileWatching;
+	private int scanningThreads;
+	private DirectoryScanService scanService;
+	private boolean indexSnapshots;
+	private File stateDirectory;
 
 	public InfinitestCoreBuilder(RuntimeEnvironment environment, EventQueue eventQueue) {
 		checkNotNull(environment, "No runtime environment is configured. Maybe because the project has no jdk.");
@@ -62,14 +76,66 @@ public class InfinitestCoreBuilder {
 		runner.setConcurrencyController(controller);
 		DefaultInfinitestCore core = new DefaultInfinitestCore(runner, eventQueue);
 		core.setName(coreName);
-		core.setChangeDetector(new FileChangeDetector());
-		core.setTestDetector(createTestDetector(filterList));
+		core.setChangeDetector(createChangeDetector());
+		TestDetector testDetector = createTestDetector(filterList);
+		if (coverageTracking && (testDetector instanceof ClassFileTestDetector)) {
+			TestCoverage coverage = new TestCoverage();
+			runner.addTestResultsListener(coverage);
+			((ClassFileTestDetector) testDetector).setTestCoverage(coverage);
+		}
+		core.setTestDetector(testDetector);
 		core.setRuntimeEnvironment(runtimeEnvironment);
 		return core;
 	}
 
+	private ChangeDetector createChangeDetector() {
+		FileChangeDetector scanner;
+		if (scanningThreads > 0) {
+			scanner = new ParallelFileChangeDetector(scanningThreads);
+		} else {
+			scanner = new FileChangeDetector();
+		}
+		if (indexSnapshots) {
+			scanner.setStateFile(getStateFile(TIMESTAMP_INDEX_EXTENSION));
+		}
+		scanner.setScanService(scanService);
+		if (fileWatching) {
+			return new WatchingChangeDetector(scanner);
+		}
+		return scanner;
+	}
+
 	protected TestDetector createTestDetector(TestFilter testFilterList) {
-		return new ClassFileTestDetector(testFilterList);
+		ClassFileTestDetector testDetector = new ClassFileTestDetector(testFilterList);
+		testDetector.setClassParserType(parserType);
+		testDetector.setParsingThreads(parsingThreads);
+		testDetector.setApiChangeFilter(apiChangeFilter);
+		testDetector.setInnerClassFolding(innerClassFolding);
+		testDetector.setUnmatchedResourcePolicy(unmatchedResourcePolicy);
+		if (indexSnapshots) {
+			testDetector.setIndexSnapshotFile(getStateFile(INDEX_SNAPSHOT_EXTENSION));
+		}
+		return testDetector;
+	}
+
+	// Cores can share a state directory, like IntelliJ modules whose module
+	// files are kept together, so the files are named after the core and its
+	// class directories
+	File getStateFile(String extension) {
+		StringBuilder fileName = new StringBuilder(".infinitest-");
+		if (coreName.length() > 0) {
+			fileName.append(coreName.replaceAll("[^\\w.-]", "_")).append('-');
+		}
+		fileName.append(Integer.toHexString(runtimeEnvironment.getClassOutputDirs().hashCode()));
+		fileName.append(extension);
+		return new File(getStateDirectory(), fileName.toString());
+	}
+
+	private File getStateDirectory() {
+		if (stateDirectory == null) {
+			return runtimeEnvironment.getWorkingDirectory();
+		}
+		return stateDirectory;
 	}
 
 	/**
@@ -82,6 +148,17 @@ public class InfinitestCoreBuilder {
 	}
 
 	private TestRunner createRunner() {
+		TestRunner runner = instantiateRunner();
+		if (coverageTracking) {
+			if (!(runner instanceof MultiProcessRunner)) {
+				throw new IllegalStateException("Coverage tracking needs a runner that runs tests in another process, " + runnerClass + " can't track the classes tests load");
+			}
+			((MultiProcessRunner) runner).setClassLoadingTracked(true);
+		}
+		return runner;
+	}
+
+	private TestRunner instantiateRunner() {
 		try {
 			return runnerClass.newInstance();
 		} catch (InstantiationException e) {
@@ -91,6 +168,113 @@ public class InfinitestCoreBuilder {
 		}
 	}
 
+	/**
+	 * Sets how class files are parsed to find dependencies and tests. The
+	 * default uses Javassist.
+	 */
+	public void setClassParserType(ClassParserType parserType) {
+		this.parserType = parserType;
+	}
+
+	/**
+	 * Sets how many threads parse class files after a clean build. The default
+	 * is 1, which parses everything on the update thread; more threads finish
+	 * large batches sooner, but compete with the IDE's own build for the
+	 * processors.
+	 */
+	public void setParsingThreads(int threadCount) {
+		parsingThreads = threadCount;
+	}
+
+	/**
+	 * When enabled, recompiling a class without changing its public or
+	 * protected API only runs the tests that use it directly. It's off by
+	 * default, because a test can still depend on the changed behavior
+	 * through another class.
+	 */
+	public void setApiChangeFilter(boolean enabled) {
+		apiChangeFilter = enabled;
+	}
+
+	/**
+	 * When enabled, inner, anonymous and synthetic classes are indexed as part
+	 * of their outer class, which keeps the dependency graph small for
+	 * languages like Scala and Groovy that generate lots of them. Changing one
+	 * of them runs the tests that depend on any part of the outer class.
+	 */
+	public void setInnerClassFolding(boolean enabled) {
+		innerClassFolding = enabled;
+	}
+
+	/**
+	 * Sets what happens when a resource in a class directory changes and no
+	 * class refers to it in a string constant. Resources that are referred to
+	 * only run the tests that depend on the classes referring to them. The
+	 * default is to ignore unmatched resources.
+	 */
+	public void setUnmatchedResourcePolicy(UnmatchedResourcePolicy policy) {
+		unmatchedResourcePolicy = policy;
+	}
+
+	/**
+	 * When enabled, the test runner process records which project classes
+	 * each test loads, and a test that has passed with tracking on is only run
+	 * again when one of those classes changes. The process records class
+	 * loading with a java agent, so a test is also credited with the classes
+	 * the tests before it in the same run loaded. Tracking is turned on in the
+	 * configured runner, and creating the core fails if that runner can't
+	 * track classes.
+	 */
+	public void setCoverageTracking(boolean enabled) {
+		coverageTracking = enabled;
+	}
+
+	/**
+	 * When enabled, changed class files are found from file system events
+	 * instead of by listing the class directories on every update, which is
+	 * much cheaper for large projects. It's off by default.
+	 */
+	public void setFileWatching(boolean enabled) {
+		fileWatching = enabled;
+	}
+
+	/**
+	 * Sets how many threads look for changed files in the class directories.
+	 * The default, 0, scans them on the update thread.
+	 */
+	public void setScanningThreads(int threadCount) {
+		scanningThreads = threadCount;
+	}
+
+	/**
+	 * Shares the walks of the class directories with the other cores built
+	 * with the same service, instead of each core walking them itself. Not
+	 * shared by default.
+	 */
+	public void setDirectoryScanService(DirectoryScanService service) {
+		scanService = service;
+	}
+
+	/**
+	 * When enabled, the dependency index and the timestamps of the class files
+	 * are saved between sessions, so class files that haven't changed aren't
+	 * parsed again at startup. Off by default, because the files are written
+	 * to the project's working directory unless a state directory is set.
+	 */
+	public void setIndexSnapshots(boolean enabled) {
+		indexSnapshots = enabled;
+	}
+
+	/**
+	 * Sets the directory the index snapshot and the class file timestamps of
+	 * this core are saved in, which is created if it doesn't exist. The default
+	 * is the working directory of the project. The file names include the core
+	 * name, so cores can share a directory.
+	 */
+	public void setStateDirectory(File directory) {
+		stateDirectory = directory;
+	}
+
 	public void setName(String coreName) {
 		this.coreName = coreName;
 	}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest;
+
+import static java.util.concurrent.TimeUnit.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestGlobalSettings.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Holds back updates until class files stop changing, so that a burst of
+ * compiles (a multi-module build, or a save that touches many files) is tested
+ * once instead of once per compile. The change detector keeps accumulating
+ * changed files between updates, so the coalesced update sees all of them.
+ * 
+ * The quiet period and maximum delay are read from
+ * {@link org.infinitest.util.InfinitestGlobalSettings} on each request. With a
+ * quiet period of zero, updates run immediately on the calling thread.
+ */
+public class UpdateCoalescer {
+	private final Runnable update;
+	private ScheduledExecutorService scheduler;
+	private ScheduledFuture<?> pendingUpdate;
+	private long generation;
+	private long firstPendingRequestTime;
+	private int pendingRequests;
+	private int requestCount;
+	private int updateCount;
+	private int droppedRequestCount;
+
+	public UpdateCoalescer(Runnable update) {
+		this.update = update;
+	}
+
+	public void requestUpdate() {
+		long quietPeriod = getUpdateQuietPeriod();
+		synchronized (this) {
+			requestCount++;
+			pendingRequests++;
+			if (quietPeriod > 0) {
+				scheduleUpdate(quietPeriod);
+				return;
+			}
+			cancelPendingUpdate();
+		}
+		runUpdate(generation());
+	}
+
+	private void scheduleUpdate(long quietPeriod) {
+		long now = System.currentTimeMillis();
+		if (pendingRequests == 1) {
+			firstPendingRequestTime = now;
+		}
+		long deadline = firstPendingRequestTime + getMaximumUpdateDelay();
+		long delay = Math.max(0, Math.min(quietPeriod, deadline - now));
+		cancelPendingUpdate();
+		final long scheduledGeneration = generation;
+		pendingUpdate = scheduler().schedule(new Runnable() {
+			public void run() {
+				runUpdate(scheduledGeneration);
+			}
+		}, delay, MILLISECONDS);
+	}
+
+	private void cancelPendingUpdate() {
+		generation++;
+		if (pendingUpdate != null) {
+			pendingUpdate.cancel(false);
+			pendingUpdate = null;
+		}
+	}
+
+	private synchronized long generation() {
+		return generation;
+	}
+
+	private void runUpdate(long scheduledGeneration) {
+		int coalescedRequests;
+		synchronized (this) {
+			if ((scheduledGeneration != generation) || (pendingRequests == 0)) {
+				// A later request superseded this one
+				return;
+			}
+			coalescedRequests = pendingRequests;
+			pendingRequests = 0;
+			pendingUpdate = null;
+			updateCount++;
+		}
+		if (coalescedRequests > 1) {
+			log(CONFIG, "Coalesced " + coalescedRequests + " update requests into one test run");
+		}
+		try {
+			update.run();
+		} catch (RuntimeException e) {
+			log("Error while running a coalesced update", e);
+		}
+	}
+
+	/**
+	 * Drops any update that is still waiting for the quiet period to end and
+	 * stops the scheduling thread. A later request starts a new one.
+	 */
+	public synchronized void shutdown() {
+		cancelPendingUpdate();
+		droppedRequestCount += pendingRequests;
+		pendingRequests = 0;
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	private ScheduledExecutorService scheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new CoalescerThreadFactory());
+		}
+		return scheduler;
+	}
+
+	/**
+	 * The number of times an update has been requested.
+	 */
+	public synchronized int getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * The number of updates that have actually been run.
+	 */
+	public synchronized int getUpdateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * The number of requests that were folded into another request's update,
+	 * rather than causing an update of their own.
+	 */
+	public synchronized int getCoalescedRequestCount() {
+		return requestCount - pendingRequests - droppedRequestCount - updateCount;
+	}
+
+	/**
+	 * The number of requests that were still waiting when the coalescer was
+	 * shut down, and never got an update.
+	 */
+	public synchronized int getDroppedRequestCount() {
+		return droppedRequestCount;
+	}
+
+	private static class CoalescerThreadFactory implements ThreadFactory {
+		private static final AtomicInteger threadCount = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Infinitest update coalescer " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -31,7 +31,24 @@ public interface ChangeDetector {
 
 	void clear();
 
-	boolean filesWereRemoved();
+	/**
+	 * Finds the class files that have been deleted since they were last
+	 * reported as changed. Each removed file is only reported once.
+	 */
+	Set<File> findRemovedFiles();
 
 	void setClasspathProvider(ClasspathProvider classpath);
+
+	/**
+	 * Treats the given files as already seen at the given timestamps, so they
+	 * are only reported once they change again.
+	 */
+	void seed(Map<File, Long> timestamps);
+
+	/**
+	 * Saves what has been seen so far, if this detector is set up to, so the
+	 * next session only reports the files that change after this. Called after
+	 * each update whose changes have been handled.
+	 */
+	void saveState();
 }
\ No newline at end of file
@@ -24,11 +24,32 @@ package org.infinitest.changedetect;
 import java.io.*;
 
 class ClassFileFilter implements FileFilter {
+	private static final String CLASS_SUFFIX = ".class";
+
+	private final boolean includeResources;
+
+	ClassFileFilter() {
+		this(false);
+	}
+
+	/**
+	 * @param includeResources
+	 *            Whether to accept the other files in class directories too,
+	 *            like properties files and XML configuration
+	 */
+	ClassFileFilter(boolean includeResources) {
+		this.includeResources = includeResources;
+	}
+
 	public boolean accept(File pathname) {
-		return isClassFile(pathname) || pathname.isDirectory();
+		return isClassFile(pathname) || pathname.isDirectory() || (includeResources && pathname.isFile());
 	}
 
 	public static boolean isClassFile(File pathname) {
-		return pathname.getAbsolutePath().matches(".*\\.[Cc][Ll][Aa][Ss][Ss]\\z");
+		return isClassFileName(pathname.getName());
+	}
+
+	static boolean isClassFileName(String fileName) {
+		return fileName.regionMatches(true, fileName.length() - CLASS_SUFFIX.length(), CLASS_SUFFIX, 0, CLASS_SUFFIX.length());
 	}
 }
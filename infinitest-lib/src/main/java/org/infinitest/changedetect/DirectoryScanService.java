@@ -0,0 +1,158 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import java.io.*;
+import java.util.*;
+
+import com.google.common.collect.*;
+
+/**
+ * Walks class directories on behalf of several change detectors, so a
+ * directory that's on the classpath of many cores (like the output directory
+ * of a module the others depend on) is walked once per update, rather than
+ * once per core.
+ * 
+ * Each directory is walked at most once per cycle, and a detector is never
+ * given the same walk twice, so it can't miss changes made since it last
+ * looked. Whoever drives the updates of the cores should call
+ * {@link #startCycle()} before each round of updates.
+ */
+public class DirectoryScanService {
+	private final Map<File, ScannedDirectory> directories = new HashMap<File, ScannedDirectory>();
+	private int cycle;
+	private int scanCount;
+
+	public synchronized void startCycle() {
+		cycle++;
+	}
+
+	/**
+	 * The number of update cycles that have been started.
+	 */
+	public synchronized int getCycle() {
+		return cycle;
+	}
+
+	/**
+	 * The number of times a directory has been walked.
+	 */
+	public synchronized int getScanCount() {
+		return scanCount;
+	}
+
+	Snapshot snapshotOf(File classDirectory, Object subscriber) throws IOException {
+		File root = classDirectory.getCanonicalFile();
+		ScannedDirectory directory;
+		int currentCycle;
+		synchronized (this) {
+			directory = directories.get(root);
+			if (directory == null) {
+				directory = new ScannedDirectory(root);
+				directories.put(root, directory);
+			}
+			currentCycle = cycle;
+		}
+		return directory.snapshotFor(subscriber, currentCycle);
+	}
+
+	private synchronized void scanned() {
+		scanCount++;
+	}
+
+	private class ScannedDirectory {
+		private final File root;
+		private final Set<Object> subscribersGivenSnapshot = Sets.newSetFromMap(new WeakHashMap<Object, Boolean>());
+		private Snapshot snapshot;
+		private int scannedInCycle;
+
+		ScannedDirectory(File root) {
+			this.root = root;
+		}
+
+		synchronized Snapshot snapshotFor(Object subscriber, int currentCycle) throws IOException {
+			if ((snapshot == null) || (scannedInCycle != currentCycle) || subscribersGivenSnapshot.contains(subscriber)) {
+				snapshot = scan();
+				scannedInCycle = currentCycle;
+				subscribersGivenSnapshot.clear();
+			}
+			subscribersGivenSnapshot.add(subscriber);
+			return snapshot;
+		}
+
+		private Snapshot scan() throws IOException {
+			final Map<File, Long> timestamps = new HashMap<File, Long>();
+			final boolean[] complete = { true };
+			FileChangeDetector walker = new FileChangeDetector() {
+				@Override
+				boolean fileFound(File file, long lastModified) {
+					timestamps.put(file, lastModified);
+					return false;
+				}
+
+				@Override
+				void walkFailedAt(File path) {
+					complete[0] = false;
+				}
+			};
+			walker.findChangedFilesIn(new File[] { root });
+			scanned();
+			return new Snapshot(root, timestamps, complete[0]);
+		}
+	}
+
+	/**
+	 * The tracked files that were found in one walk of a class directory, with
+	 * their timestamps. Resources are always included.
+	 */
+	static class Snapshot {
+		private final File root;
+		private final Map<File, Long> timestamps;
+		private final boolean complete;
+
+		Snapshot(File root, Map<File, Long> timestamps, boolean complete) {
+			this.root = root;
+			this.timestamps = timestamps;
+			this.complete = complete;
+		}
+
+		/**
+		 * The files found in the walk, as paths under the given directory, which
+		 * may be a different path to the one that was walked.
+		 */
+		Map<File, Long> timestampsUnder(File classDirectory) {
+			if (classDirectory.equals(root)) {
+				return timestamps;
+			}
+			Map<File, Long> rebased = new HashMap<File, Long>();
+			int rootLength = root.getPath().length();
+			for (Map.Entry<File, Long> each : timestamps.entrySet()) {
+				rebased.put(new File(classDirectory, each.getKey().getPath().substring(rootLength)), each.getValue());
+			}
+			return rebased;
+		}
+
+		boolean isComplete() {
+			return complete;
+		}
+	}
+}
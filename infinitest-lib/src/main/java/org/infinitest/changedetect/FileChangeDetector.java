@@ -31,76 +31,468 @@ import org.infinitest.*;
 import org.infinitest.util.*;
 
 public class FileChangeDetector implements ChangeDetector {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
 	private Map<File, Long> timestampIndex;
+	// Content hashes of the files in the timestamp index, so a file that's
+	// rewritten with the same bytes isn't reported as changed
+	private Map<File, Long> contentHashes;
+	// Lengths of the files that were hashed, saved so the next session can
+	// tell files that changed without their timestamp changing
+	private Map<File, Long> fileLengths;
+	// The walk that last found each file, so files that weren't found by the
+	// latest complete walk can be reported as removed without asking the file
+	// system about each of them again
+	private Map<File, Integer> lastSeenInWalk;
+	private int walkGeneration;
+	private Integer currentWalk;
+	private volatile boolean walkComplete;
+	private boolean removalsKnown;
 	private File[] classDirectories;
+	private File[] classpathJars;
+	private byte[] buffer = new byte[8192];
+	private int unchangedRewriteCount;
+	private boolean resourceTracking = true;
+	private boolean jarTracking = true;
+	private TimestampIndexFile stateFile;
+	private long classpathFingerprint;
+	private boolean stateChanged;
+	private DirectoryScanService scanService;
 
 	public FileChangeDetector() {
 		classDirectories = new File[0];
+		classpathJars = new File[0];
 		clear();
 	}
 
+	/**
+	 * Whether resources in the class directories, like properties files, are
+	 * reported along with class files. On by default.
+	 */
+	public void setResourceTracking(boolean resourceTracking) {
+		this.resourceTracking = resourceTracking;
+	}
+
+	/**
+	 * Whether the jars on the classpath are reported when they change. On by
+	 * default. Jars are compared by their timestamps only.
+	 */
+	public void setJarTracking(boolean jarTracking) {
+		this.jarTracking = jarTracking;
+	}
+
+	/**
+	 * Saves the timestamps, lengths and content hashes of the files in the class
+	 * directories to the given file whenever {@link #saveState()} is called, and
+	 * restores them when the detector is seeded at startup.
+	 */
+	public void setStateFile(File file) {
+		stateFile = new TimestampIndexFile(file);
+	}
+
+	/**
+	 * Takes the contents of the class directories from the given service, which
+	 * shares each walk of a directory among all the detectors that use it.
+	 */
+	public void setScanService(DirectoryScanService scanService) {
+		this.scanService = scanService;
+	}
+
 	public void setClasspathProvider(ClasspathProvider classpath) {
 		clear();
 		List<File> classDirs = classpath.classDirectoriesInClasspath();
 		classDirectories = classDirs.toArray(new File[classDirs.size()]);
+		String completeClasspath = classpath.getCompleteClasspath();
+		List<File> jars = jarsIn(completeClasspath);
+		classpathJars = jars.toArray(new File[jars.size()]);
+		classpathFingerprint = fingerprintOf(completeClasspath);
+	}
+
+	private static long fingerprintOf(String classpath) {
+		if (classpath == null) {
+			return 0;
+		}
+		return ((long) classpath.length() << 32) | (classpath.hashCode() & 0xFFFFFFFFL);
+	}
+
+	private static List<File> jarsIn(String classpath) {
+		List<File> jars = new ArrayList<File>();
+		if (classpath != null) {
+			for (String each : classpath.split(File.pathSeparator)) {
+				if (each.toLowerCase().endsWith(".jar")) {
+					jars.add(new File(each));
+				}
+			}
+		}
+		return jars;
 	}
 
 	public synchronized Set<File> findChangedFiles() throws IOException {
+		int previousUnchangedRewrites = unchangedRewriteCount;
+		startWalk();
+		Set<File> changedFiles = (scanService == null) ? findChangedFilesIn(classDirectories) : findChangedFilesFromService();
+		if (jarTracking) {
+			changedFiles.addAll(findChangedJars());
+		}
+		removalsKnown = walkComplete;
+		if (unchangedRewriteCount > previousUnchangedRewrites) {
+			InfinitestUtils.log(Level.FINE, "Ignored " + (unchangedRewriteCount - previousUnchangedRewrites) + " class files rewritten with the same contents");
+		}
+		return changedFiles;
+	}
+
+	/**
+	 * Like {@link #findChangedFiles()}, but only looks in the given class
+	 * directories and at the given files and directories inside them, for
+	 * detectors that already know where the changes are.
+	 */
+	synchronized Set<File> findChangedFiles(Collection<File> classDirectoriesToScan, Collection<File> filesInClassDirectories) throws IOException {
+		// Only part of the tree is walked, so what wasn't found says nothing
+		// about what was removed
+		removalsKnown = false;
+		Set<File> changedFiles = findChangedFilesIn(classDirectoriesToScan.toArray(new File[classDirectoriesToScan.size()]));
+		changedFiles.addAll(findFiles(filesInClassDirectories.toArray(new File[filesInClassDirectories.size()]), true));
+		if (jarTracking) {
+			changedFiles.addAll(findChangedJars());
+		}
+		return changedFiles;
+	}
+
+	/**
+	 * The number of class files that were touched but not reported as changed
+	 * because their contents were the same, since this detector was created.
+	 */
+	public synchronized int getUnchangedRewriteCount() {
+		return unchangedRewriteCount;
+	}
+
+	// Hashing whole jars would cost more than it saves, the test detector
+	// compares their entries instead
+	private Set<File> findChangedJars() {
+		Set<File> changedJars = new HashSet<File>();
+		for (File each : classpathJars) {
+			if (each.isFile()) {
+				markSeen(each);
+				Long timestamp = timestampIndex.get(each);
+				long lastModified = getModificationTimestamp(each);
+				if ((timestamp == null) || (timestamp != lastModified)) {
+					timestampIndex.put(each, lastModified);
+					stateChanged = true;
+					changedJars.add(each);
+				}
+			}
+		}
+		return changedJars;
+	}
+
+	/**
+	 * Walks the given class directories, calling {@link #fileFound} for each
+	 * tracked file in them.
+	 */
+	Set<File> findChangedFilesIn(File[] classDirectories) throws IOException {
 		return findFiles(classDirectories, false);
 	}
 
+	private Set<File> findChangedFilesFromService() throws IOException {
+		Set<File> changedFiles = new HashSet<File>();
+		for (File each : classDirectories) {
+			if (!each.isDirectory()) {
+				changedFiles.addAll(findFiles(new File[] { each }, false));
+				continue;
+			}
+			DirectoryScanService.Snapshot snapshot = scanService.snapshotOf(each, this);
+			if (!snapshot.isComplete()) {
+				walkFailedAt(each);
+			}
+			for (Map.Entry<File, Long> found : snapshot.timestampsUnder(each).entrySet()) {
+				File file = found.getKey();
+				if (isTrackedFileName(file.getName()) && fileFound(file, found.getValue())) {
+					changedFiles.add(file);
+				}
+			}
+		}
+		return changedFiles;
+	}
+
 	private Set<File> findFiles(File[] classesOrDirectories, boolean isPackage) throws IOException {
 		Set<File> changedFiles = new HashSet<File>();
 		for (File classFileOrDirectory : classesOrDirectories) {
 			if (classFileOrDirectory.isDirectory() && hasValidName(classFileOrDirectory, isPackage)) {
 				findChildren(changedFiles, classFileOrDirectory);
-			} else if (ClassFileFilter.isClassFile(classFileOrDirectory)) {
-				File classFile = classFileOrDirectory;
-				Long timestamp = timestampIndex.get(classFile);
-				if ((timestamp == null) || (getModificationTimestamp(classFile) != timestamp)) {
-					timestampIndex.put(classFile, getModificationTimestamp(classFile));
-					changedFiles.add(classFile);
-					InfinitestUtils.log(Level.FINEST, "Class file added to changelist " + classFile);
+			} else if (isTracked(classFileOrDirectory, isPackage)) {
+				if (fileFound(classFileOrDirectory, getModificationTimestamp(classFileOrDirectory))) {
+					changedFiles.add(classFileOrDirectory);
 				}
 			}
 		}
 		return changedFiles;
 	}
 
+	/**
+	 * Records the timestamp of a tracked file.
+	 * 
+	 * @return true if the file is new, or its contents changed since it was
+	 *         last seen
+	 */
+	boolean fileFound(File file, long lastModified) {
+		markSeen(file);
+		Long timestamp = timestampIndex.get(file);
+		if ((timestamp != null) && (timestamp == lastModified)) {
+			return false;
+		}
+		timestampIndex.put(file, lastModified);
+		stateChanged = true;
+		if (contentsChanged(file)) {
+			InfinitestUtils.log(Level.FINEST, "Class file added to changelist " + file);
+			return true;
+		}
+		unchangedRewriteCount++;
+		return false;
+	}
+
 	private void findChildren(Set<File> changedFiles, File classFileOrDirectory) throws IOException {
 		File[] children = childrenOf(classFileOrDirectory);
 		if (children != null) {
 			changedFiles.addAll(findFiles(children, true));
+		} else {
+			walkFailedAt(classFileOrDirectory);
+		}
+	}
+
+	private void startWalk() {
+		walkGeneration++;
+		currentWalk = Integer.valueOf(walkGeneration);
+		walkComplete = true;
+	}
+
+	private void markSeen(File file) {
+		if (currentWalk != null) {
+			lastSeenInWalk.put(file, currentWalk);
+		}
+	}
+
+	/**
+	 * Called when part of the tree couldn't be walked. The files under it
+	 * weren't found, but may still be there, so the next call to
+	 * {@link #findRemovedFiles()} checks each file instead.
+	 */
+	void walkFailedAt(File path) {
+		walkComplete = false;
+	}
+
+	private boolean isTracked(File file, boolean isPackage) {
+		if (ClassFileFilter.isClassFile(file)) {
+			return true;
 		}
+		// Resources are only looked for inside class directories
+		return resourceTracking && isPackage && file.isFile();
+	}
+
+	/**
+	 * Whether a regular file with the given name, inside a class directory, is
+	 * tracked.
+	 */
+	boolean isTrackedFileName(String fileName) {
+		return resourceTracking || ClassFileFilter.isClassFileName(fileName);
 	}
 
 	protected File[] childrenOf(File directory) {
-		return directory.listFiles(new ClassFileFilter());
+		return directory.listFiles(new ClassFileFilter(resourceTracking));
 	}
 
 	private boolean hasValidName(File classfileOrDirectory, boolean isPackage) {
-		return !isPackage || isLetter(classfileOrDirectory.getName().charAt(0));
+		return !isPackage || isPackageName(classfileOrDirectory.getName());
+	}
+
+	static boolean isPackageName(String directoryName) {
+		return isLetter(directoryName.charAt(0));
 	}
 
 	protected long getModificationTimestamp(File classFile) {
 		return classFile.lastModified();
 	}
 
+	private boolean contentsChanged(File classFile) {
+		Long oldHash = contentHashes.remove(classFile);
+		try {
+			long newHash = getContentHash(classFile);
+			contentHashes.put(classFile, newHash);
+			fileLengths.put(classFile, classFile.length());
+			return (oldHash == null) || (oldHash != newHash);
+		} catch (IOException e) {
+			// Let the parser deal with files we can't read
+			return true;
+		}
+	}
+
+	/**
+	 * A 64 bit FNV-1a hash of the file's contents.
+	 */
+	protected long getContentHash(File classFile) throws IOException {
+		long hash = FNV_OFFSET_BASIS;
+		InputStream input = new FileInputStream(classFile);
+		try {
+			int count;
+			while ((count = input.read(buffer)) != -1) {
+				for (int i = 0; i < count; i++) {
+					hash ^= buffer[i] & 0xFF;
+					hash *= FNV_PRIME;
+				}
+			}
+		} finally {
+			input.close();
+		}
+		return hash;
+	}
+
 	public synchronized void clear() {
 		timestampIndex = new HashMap<File, Long>();
+		contentHashes = new HashMap<File, Long>();
+		fileLengths = new HashMap<File, Long>();
+		lastSeenInWalk = new HashMap<File, Integer>();
+		removalsKnown = false;
+		stateChanged = true;
+	}
+
+	public synchronized void seed(Map<File, Long> timestamps) {
+		timestampIndex.putAll(timestamps);
+		removalsKnown = false;
+		stateChanged = true;
+		if (stateFile != null) {
+			restoreState(timestamps);
+		}
 	}
 
-	private Set<File> findRemovedFiles() {
+	// Jars aren't restored. The test detector only learns what's in a jar when
+	// the jar is reported, so it has to be reported once in every session
+	// before a later change to it can be narrowed down to the classes that
+	// changed.
+	//
+	// Class files are only restored if the index knows about them, otherwise
+	// they would never be reported and parsed. They also have to have the
+	// timestamp the index was seeded with. The state can be saved after a
+	// change the index snapshot never got to record, and then the change has
+	// to be reported again. Files whose length has changed aren't restored,
+	// so they're reported even if their timestamps haven't changed.
+	private void restoreState(Map<File, Long> indexedClassFiles) {
+		int restoredCount = 0;
+		for (Map.Entry<File, TimestampIndexFile.SeenFile> each : stateFile.read(classpathFingerprint).entrySet()) {
+			File file = each.getKey();
+			TimestampIndexFile.SeenFile seenFile = each.getValue();
+			if (isClasspathJar(file)) {
+				continue;
+			}
+			if (ClassFileFilter.isClassFile(file) && !Long.valueOf(seenFile.getLastModified()).equals(indexedClassFiles.get(file))) {
+				continue;
+			}
+			if ((seenFile.getLength() != TimestampIndexFile.UNKNOWN) && (file.length() != seenFile.getLength()) && file.exists()) {
+				timestampIndex.remove(file);
+				continue;
+			}
+			timestampIndex.put(file, seenFile.getLastModified());
+			if (seenFile.getLength() != TimestampIndexFile.UNKNOWN) {
+				fileLengths.put(file, seenFile.getLength());
+			}
+			if (seenFile.getContentHash() != TimestampIndexFile.UNKNOWN) {
+				contentHashes.put(file, seenFile.getContentHash());
+			}
+			restoredCount++;
+		}
+		InfinitestUtils.log(Level.CONFIG, "Restored " + restoredCount + " file timestamps from " + stateFile.getFile());
+	}
+
+	public synchronized void saveState() {
+		if ((stateFile == null) || !stateChanged) {
+			return;
+		}
+		try {
+			stateFile.write(withoutClasspathJars(timestampIndex), fileLengths, contentHashes, classpathFingerprint);
+			stateChanged = false;
+		} catch (IOException e) {
+			InfinitestUtils.log(Level.WARNING, "Could not save timestamp index " + stateFile.getFile() + ": " + e.getMessage());
+		}
+	}
+
+	private boolean isClasspathJar(File file) {
+		for (File each : classpathJars) {
+			if (each.equals(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Map<File, Long> withoutClasspathJars(Map<File, Long> timestamps) {
+		Map<File, Long> classDirectoryFiles = new HashMap<File, Long>(timestamps);
+		for (File each : classpathJars) {
+			classDirectoryFiles.remove(each);
+		}
+		return classDirectoryFiles;
+	}
+
+	/**
+	 * Like {@link #findRemovedFiles()}, but only checks the given paths. A path
+	 * that was a directory removes everything that was found under it.
+	 */
+	synchronized Set<File> findRemovedFiles(Collection<File> deletedPaths) {
 		Set<File> removedFiles = new HashSet<File>();
-		for (File key : timestampIndex.keySet()) {
-			if (!key.exists()) {
-				removedFiles.add(key);
+		Set<File> removedDirectories = new HashSet<File>();
+		for (File each : deletedPaths) {
+			if (timestampIndex.containsKey(each)) {
+				if (!each.exists()) {
+					removedFiles.add(each);
+				}
+			} else if (!each.exists()) {
+				removedDirectories.add(each);
+			}
+		}
+		if (!removedDirectories.isEmpty()) {
+			for (File file : timestampIndex.keySet()) {
+				if (isInside(file, removedDirectories)) {
+					removedFiles.add(file);
+				}
 			}
 		}
+		for (File each : removedFiles) {
+			forget(each);
+		}
 		return removedFiles;
 	}
 
-	public synchronized boolean filesWereRemoved() {
-		return !findRemovedFiles().isEmpty();
+	private void forget(File file) {
+		timestampIndex.remove(file);
+		contentHashes.remove(file);
+		fileLengths.remove(file);
+		lastSeenInWalk.remove(file);
+		stateChanged = true;
+	}
+
+	private static boolean isInside(File file, Set<File> directories) {
+		for (File parent = file.getParentFile(); parent != null; parent = parent.getParentFile()) {
+			if (directories.contains(parent)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Right after a complete walk by {@link #findChangedFiles()}, the removed
+	 * files are the ones that walk didn't find. Otherwise each file that was
+	 * seen before is checked.
+	 */
+	public synchronized Set<File> findRemovedFiles() {
+		Set<File> removedFiles = new HashSet<File>();
+		for (File file : timestampIndex.keySet()) {
+			if (removalsKnown ? !currentWalk.equals(lastSeenInWalk.get(file)) : !file.exists()) {
+				removedFiles.add(file);
+			}
+		}
+		removalsKnown = false;
+		for (File each : removedFiles) {
+			forget(each);
+		}
+		return removedFiles;
 	}
 }
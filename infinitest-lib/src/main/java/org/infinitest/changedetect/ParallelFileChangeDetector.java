@@ -0,0 +1,184 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static java.nio.file.FileVisitOption.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Walks the class directories with the Java 7 file API, which reads the
+ * attributes of each entry once, instead of listing each directory and then
+ * asking every file whether it's a directory and when it was modified. The
+ * packages at the top of each class directory are walked on several threads.
+ * Comparing what was found with the timestamps that were seen before is left
+ * to the calling thread.
+ */
+public class ParallelFileChangeDetector extends FileChangeDetector {
+	private final int threadCount;
+
+	public ParallelFileChangeDetector(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	@Override
+	Set<File> findChangedFilesIn(File[] classDirectories) throws IOException {
+		List<FoundFile> foundFiles = new ArrayList<FoundFile>();
+		List<Path> packages = new ArrayList<Path>();
+		for (File each : classDirectories) {
+			if (each.isDirectory()) {
+				listClassDirectory(each.toPath(), foundFiles, packages);
+			} else {
+				foundFiles.addAll(walk(Collections.singletonList(each.toPath()), true));
+			}
+		}
+		foundFiles.addAll(walkInParallel(packages));
+
+		Set<File> changedFiles = new HashSet<File>();
+		for (FoundFile each : foundFiles) {
+			if (fileFound(each.file, each.lastModified)) {
+				changedFiles.add(each.file);
+			}
+		}
+		return changedFiles;
+	}
+
+	private void listClassDirectory(Path classDirectory, final List<FoundFile> foundFiles, final List<Path> packages) throws IOException {
+		Files.walkFileTree(classDirectory, EnumSet.of(FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+				// Entries at the maximum depth are visited as files, even
+				// when they are directories
+				if (attributes.isDirectory()) {
+					if (FileChangeDetector.isPackageName(file.getFileName().toString())) {
+						packages.add(file);
+					}
+				} else if (attributes.isRegularFile() && isTrackedFileName(file.getFileName().toString())) {
+					foundFiles.add(new FoundFile(file, attributes));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				walkFailedAt(file.toFile());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private List<FoundFile> walkInParallel(final List<Path> packages) throws IOException {
+		if ((threadCount < 2) || (packages.size() < 2)) {
+			return walk(packages, false);
+		}
+		int threads = Math.min(threadCount, packages.size());
+		final AtomicInteger nextPackage = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ScannerThreadFactory());
+		try {
+			List<Future<List<FoundFile>>> results = new ArrayList<Future<List<FoundFile>>>();
+			for (int thread = 0; thread < threads; thread++) {
+				results.add(executor.submit(new Callable<List<FoundFile>>() {
+					public List<FoundFile> call() throws IOException {
+						List<FoundFile> foundFiles = new ArrayList<FoundFile>();
+						for (int i = nextPackage.getAndIncrement(); i < packages.size(); i = nextPackage.getAndIncrement()) {
+							foundFiles.addAll(walk(Collections.singletonList(packages.get(i)), false));
+						}
+						return foundFiles;
+					}
+				}));
+			}
+			List<FoundFile> foundFiles = new ArrayList<FoundFile>();
+			for (Future<List<FoundFile>> each : results) {
+				foundFiles.addAll(each.get());
+			}
+			return foundFiles;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while scanning class directories", e);
+		} catch (ExecutionException e) {
+			Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+			Throwables.propagateIfPossible(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<FoundFile> walk(List<Path> starts, final boolean onlyClassFiles) throws IOException {
+		final List<FoundFile> foundFiles = new ArrayList<FoundFile>();
+		for (Path each : starts) {
+			Files.walkFileTree(each, EnumSet.of(FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+					if (FileChangeDetector.isPackageName(dir.getFileName().toString())) {
+						return FileVisitResult.CONTINUE;
+					}
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+					String fileName = file.getFileName().toString();
+					boolean tracked = onlyClassFiles ? ClassFileFilter.isClassFileName(fileName) : isTrackedFileName(fileName);
+					if (attributes.isRegularFile() && tracked) {
+						foundFiles.add(new FoundFile(file, attributes));
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					walkFailedAt(file.toFile());
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		return foundFiles;
+	}
+
+	private static class FoundFile {
+		private final File file;
+		private final long lastModified;
+
+		FoundFile(Path path, BasicFileAttributes attributes) {
+			file = path.toFile();
+			lastModified = attributes.lastModifiedTime().toMillis();
+		}
+	}
+
+	private static class ScannerThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Infinitest class directory scanner " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static java.util.Collections.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.infinitest.util.StateFiles.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Saves what a {@link FileChangeDetector} has seen of each file, its
+ * timestamp, length and content hash, so the next session only reports the
+ * files that changed in between. Like the index snapshot, the file records a
+ * fingerprint of the classpath, and is ignored if the classpath changes, if
+ * it was written by a different version of the format, or if it can't be
+ * read. It's written to a temporary file and then moved over the old one in
+ * one step, so a session that ends halfway through a write leaves the previous
+ * file behind.
+ * ends halfway through a write leaves the previous file behind.
+ */
+class TimestampIndexFile {
+	private static final int MAGIC = 0x494e4654;
+	private static final int VERSION = 1;
+	static final long UNKNOWN = -1;
+
+	private final File indexFile;
+
+	TimestampIndexFile(File indexFile) {
+		this.indexFile = indexFile;
+	}
+
+	File getFile() {
+		return indexFile;
+	}
+
+	Map<File, SeenFile> read(long classpathFingerprint) {
+		if (!indexFile.isFile()) {
+			return emptyMap();
+		}
+		try {
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(readFully(indexFile)));
+			if ((input.readInt() != MAGIC) || (input.readInt() != VERSION) || (input.readLong() != classpathFingerprint)) {
+				log(CONFIG, "Ignoring out of date timestamp index " + indexFile);
+				return emptyMap();
+			}
+			int fileCount = input.readInt();
+			Map<File, SeenFile> files = new HashMap<File, SeenFile>();
+			for (int i = 0; i < fileCount; i++) {
+				File file = new File(input.readUTF());
+				files.put(file, new SeenFile(input.readLong(), input.readLong(), input.readLong()));
+			}
+			return files;
+		} catch (IOException e) {
+			log(WARNING, "Could not read timestamp index " + indexFile + ": " + e.getMessage());
+			return emptyMap();
+		}
+	}
+
+	/**
+	 * @param lengths
+	 *            May leave out files whose lengths aren't known
+	 * @param contentHashes
+	 *            May leave out files that weren't hashed
+	 */
+	void write(Map<File, Long> timestamps, Map<File, Long> lengths, Map<File, Long> contentHashes, long classpathFingerprint) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeLong(classpathFingerprint);
+		output.writeInt(timestamps.size());
+		for (Map.Entry<File, Long> each : timestamps.entrySet()) {
+			output.writeUTF(each.getKey().getPath());
+			output.writeLong(each.getValue());
+			output.writeLong(valueOrUnknown(lengths.get(each.getKey())));
+			output.writeLong(valueOrUnknown(contentHashes.get(each.getKey())));
+		}
+		output.flush();
+		replace(indexFile, bytes.toByteArray());
+	}
+
+	private static long valueOrUnknown(Long value) {
+		return value == null ? UNKNOWN : value;
+	}
+
+	static class SeenFile {
+		private final long lastModified;
+		private final long length;
+		private final long contentHash;
+
+		SeenFile(long lastModified, long length, long contentHash) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.contentHash = contentHash;
+		}
+
+		long getLastModified() {
+			return lastModified;
+		}
+
+		long getLength() {
+			return length;
+		}
+
+		long getContentHash() {
+			return contentHash;
+		}
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static java.nio.file.LinkOption.*;
+import static java.nio.file.StandardWatchEventKinds.*;
+import static java.util.concurrent.TimeUnit.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+import org.infinitest.*;
+
+import com.google.common.annotations.*;
+
+/**
+ * Finds changed files from the events of a {@link WatchService}, instead of
+ * listing every class directory and checking the timestamp of every file on
+ * each update. The class directories are scanned in full the first time, and
+ * again whenever the watch service drops events. After that only the files
+ * and new directories named by events are looked at, by a
+ * {@link FileChangeDetector}, so the timestamps and content hashes behave
+ * the same as they do when polling.
+ * 
+ * If the JDK has no native watch service for the platform it watches by
+ * polling on a timer, which would report changes late, so the class
+ * directories are scanned in full on every update instead.
+ */
+public class WatchingChangeDetector implements ChangeDetector {
+	private static final long EVENT_DELIVERY_WAIT = 20;
+	// Events still on their way are only worth waiting for while files are
+	// being written
+	private static final long RECENT_EVENT_WINDOW = 1000;
+
+	private final FileChangeDetector scanner;
+	private final Map<WatchKey, Path> watchedDirectories = new HashMap<WatchKey, Path>();
+	private final Set<File> unwatchedClassDirectories = new HashSet<File>();
+	private final Set<File> classDirectoriesToScan = new HashSet<File>();
+	private final Set<File> changedPaths = new HashSet<File>();
+	private final Set<File> deletedPaths = new HashSet<File>();
+	private WatchService watchService;
+	private List<File> classDirectories = Collections.emptyList();
+	private boolean fullScanNeeded = true;
+	private boolean fullRemovalCheckNeeded = true;
+	private long lastEventTime;
+	private int deliveryWaitCount;
+
+	public WatchingChangeDetector() {
+		this(new FileChangeDetector());
+	}
+
+	/**
+	 * @param scanner
+	 *            Used to scan the class directories, and to check the files
+	 *            named by events
+	 */
+	public WatchingChangeDetector(FileChangeDetector scanner) {
+		this.scanner = scanner;
+	}
+
+	/**
+	 * @see FileChangeDetector#setResourceTracking(boolean)
+	 */
+	public void setResourceTracking(boolean resourceTracking) {
+		scanner.setResourceTracking(resourceTracking);
+	}
+
+	/**
+	 * @see FileChangeDetector#setJarTracking(boolean)
+	 */
+	public void setJarTracking(boolean jarTracking) {
+		scanner.setJarTracking(jarTracking);
+	}
+
+	public synchronized void setClasspathProvider(ClasspathProvider classpath) {
+		scanner.setClasspathProvider(classpath);
+		classDirectories = new ArrayList<File>(classpath.classDirectoriesInClasspath());
+		closeWatchService();
+		watchService = openWatchService();
+		unwatchedClassDirectories.addAll(classDirectories);
+		forgetEvents();
+	}
+
+	private WatchService openWatchService() {
+		try {
+			WatchService service = FileSystems.getDefault().newWatchService();
+			if (service.getClass().getName().endsWith("PollingWatchService")) {
+				log(INFO, "No native file watching on this platform, class directories will be scanned on every update");
+				service.close();
+				return null;
+			}
+			return service;
+		} catch (IOException e) {
+			log("Cannot watch class directories, they will be scanned on every update", e);
+			return null;
+		}
+	}
+
+	private void closeWatchService() {
+		watchedDirectories.clear();
+		unwatchedClassDirectories.clear();
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				log(INFO, "Error closing watch service: " + e);
+			}
+			watchService = null;
+		}
+	}
+
+	public synchronized Set<File> findChangedFiles() throws IOException {
+		collectEvents(0);
+		if (eventSeenRecently()) {
+			deliveryWaitCount++;
+			collectEvents(EVENT_DELIVERY_WAIT);
+		}
+		watchNewClassDirectories();
+		if (fullScanNeeded || (watchService == null)) {
+			fullScanNeeded = false;
+			classDirectoriesToScan.clear();
+			changedPaths.clear();
+			return scanner.findChangedFiles();
+		}
+		Set<File> changedFiles = scanner.findChangedFiles(classDirectoriesToScan, existing(changedPaths));
+		classDirectoriesToScan.clear();
+		changedPaths.clear();
+		return changedFiles;
+	}
+
+	public synchronized Set<File> findRemovedFiles() {
+		// Changes are looked for first, so there's no need to wait again
+		collectEvents(0);
+		if (fullRemovalCheckNeeded || (watchService == null)) {
+			fullRemovalCheckNeeded = false;
+			Set<File> removedFiles = scanner.findRemovedFiles();
+			// The scanner only knows what was gone when it last walked the
+			// class directories, so files deleted since then come from events
+			if (watchService != null) {
+				removedFiles.addAll(scanner.findRemovedFiles(deletedPaths));
+			}
+			deletedPaths.clear();
+			return removedFiles;
+		}
+		Set<File> removedFiles = scanner.findRemovedFiles(deletedPaths);
+		deletedPaths.clear();
+		return removedFiles;
+	}
+
+	public synchronized void clear() {
+		scanner.clear();
+		forgetEvents();
+	}
+
+	public synchronized void seed(Map<File, Long> timestamps) {
+		scanner.seed(timestamps);
+	}
+
+	public synchronized void saveState() {
+		scanner.saveState();
+	}
+
+	private void forgetEvents() {
+		classDirectoriesToScan.clear();
+		changedPaths.clear();
+		deletedPaths.clear();
+		fullScanNeeded = true;
+		fullRemovalCheckNeeded = true;
+	}
+
+	private boolean eventSeenRecently() {
+		return (lastEventTime != 0) && ((System.currentTimeMillis() - lastEventTime) < RECENT_EVENT_WINDOW);
+	}
+
+	@VisibleForTesting
+	int getDeliveryWaitCount() {
+		return deliveryWaitCount;
+	}
+
+	private void collectEvents(long wait) {
+		WatchKey key = firstKey(wait);
+		while (key != null) {
+			lastEventTime = System.currentTimeMillis();
+			Path directory = watchedDirectories.get(key);
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					log(FINE, "File events were dropped, class directories will be scanned");
+					fullScanNeeded = true;
+					fullRemovalCheckNeeded = true;
+				} else if (directory != null) {
+					collectEvent(directory.resolve((Path) event.context()), event.kind());
+				}
+			}
+			if (!key.reset()) {
+				directoryNoLongerWatched(key);
+			}
+			// Watching stops if a new directory can't be watched
+			key = (watchService == null) ? null : watchService.poll();
+		}
+	}
+
+	// Events are handed over by a JDK thread, so ones for files written just
+	// before an update may not have arrived yet. If files were being written
+	// moments ago, the update waits a little for them. They're picked up by
+	// the next update if they take longer than this.
+	private WatchKey firstKey(long wait) {
+		if (watchService == null) {
+			return null;
+		}
+		try {
+			return watchService.poll(wait, MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private void collectEvent(Path path, WatchEvent.Kind<?> kind) {
+		if (kind == ENTRY_DELETE) {
+			deletedPaths.add(path.toFile());
+		} else if (Files.isDirectory(path, NOFOLLOW_LINKS)) {
+			// Files can be written to a new directory before it's watched, so
+			// it's scanned as well
+			if ((kind == ENTRY_CREATE) && watchTree(path, false)) {
+				changedPaths.add(path.toFile());
+			}
+		} else {
+			changedPaths.add(path.toFile());
+		}
+	}
+
+	private void directoryNoLongerWatched(WatchKey key) {
+		Path directory = watchedDirectories.remove(key);
+		if ((directory != null) && classDirectories.contains(directory.toFile())) {
+			// The whole class directory went away, e.g. after a clean, and
+			// may not have said what was in it
+			unwatchedClassDirectories.add(directory.toFile());
+			fullRemovalCheckNeeded = true;
+		}
+	}
+
+	private void watchNewClassDirectories() {
+		for (File each : new ArrayList<File>(unwatchedClassDirectories)) {
+			if (each.isDirectory() && watchTree(each.toPath(), true)) {
+				unwatchedClassDirectories.remove(each);
+				classDirectoriesToScan.add(each);
+			}
+		}
+	}
+
+	private boolean watchTree(final Path start, final boolean isClassDirectory) {
+		if (watchService == null) {
+			return false;
+		}
+		try {
+			Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+					if (!isPackageName(dir) && !(isClassDirectory && dir.equals(start))) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					watchedDirectories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+			return true;
+		} catch (IOException e) {
+			// Usually the limit on the number of watches, polling still works
+			log("Cannot watch " + start + ", class directories will be scanned on every update", e);
+			closeWatchService();
+			return false;
+		}
+	}
+
+	// Matches the directories the polling detector looks in
+	private static boolean isPackageName(Path directory) {
+		Path name = directory.getFileName();
+		return (name != null) && FileChangeDetector.isPackageName(name.toString());
+	}
+
+	private static Set<File> existing(Set<File> files) {
+		Set<File> existingFiles = new HashSet<File>();
+		for (File each : files) {
+			if (each.exists()) {
+				existingFiles.add(each);
+			}
+		}
+		return existingFiles;
+	}
+}
@@ -21,6 +21,8 @@
  */
 package org.infinitest.parser;
 
+import java.util.*;
+
 public abstract class AbstractJavaClass implements JavaClass {
 	@Override
 	public boolean equals(Object obj) {
@@ -34,4 +36,21 @@ public abstract class AbstractJavaClass implements JavaClass {
 
 	public void dispose() {
 	}
+
+	/**
+	 * A hash of the API other classes compile against, or
+	 * {@link ApiFingerprint#UNKNOWN} if the parser didn't compute one.
+	 */
+	long getApiFingerprint() {
+		return ApiFingerprint.UNKNOWN;
+	}
+
+	/**
+	 * The string constants in the class that look like the paths of
+	 * resources it loads, as normalized by
+	 * {@link ResourceReferences#toResourcePath(String)}.
+	 */
+	Collection<String> getResourceReferences() {
+		return Collections.emptyList();
+	}
 }
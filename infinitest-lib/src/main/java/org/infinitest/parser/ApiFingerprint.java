@@ -0,0 +1,137 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import java.util.*;
+
+/**
+ * Builds a 64 bit hash of the parts of a class that other classes compile
+ * against: its modifiers, supertypes and annotation types, and the signatures,
+ * constant values and annotation types of its non-private, non-synthetic
+ * members. Method bodies and private members don't change it, so a class whose
+ * fingerprint is the same after a recompile can't have changed the behavior
+ * of its dependents through anything but the code they call.
+ * 
+ * Each parser feeds the same values in the same order, so fingerprints from
+ * different parsers of the same class file match.
+ */
+class ApiFingerprint {
+	/**
+	 * The fingerprint of a class whose API wasn't read. It never matches,
+	 * even itself.
+	 */
+	static final long UNKNOWN = 0;
+
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_SYNTHETIC = 0x1000;
+	// Public, private, protected, static, final, interface, abstract,
+	// annotation and enum. The others (like synchronized) don't affect callers
+	private static final int API_ACCESS_MASK = 0x0001 | 0x0002 | 0x0004 | 0x0008 | 0x0010 | 0x0200 | 0x0400 | 0x2000 | 0x4000;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private long classHash = FNV_OFFSET_BASIS;
+	private long memberHash = FNV_OFFSET_BASIS;
+
+	void addClass(int access, String name, String superName, List<String> interfaces, String signature, Collection<String> annotations) {
+		classHash = hash(classHash, access & API_ACCESS_MASK);
+		classHash = hash(classHash, name);
+		classHash = hash(classHash, superName);
+		for (String each : interfaces) {
+			classHash = hash(classHash, each);
+		}
+		classHash = hash(classHash, signature);
+		classHash = hashAnnotations(classHash, annotations);
+	}
+
+	void addField(int access, String name, String descriptor, String signature, Object constantValue, Collection<String> annotations) {
+		if (isApi(access)) {
+			memberHash = hash(memberHash, 'F');
+			memberHash = hashMember(memberHash, access, name, descriptor, signature);
+			memberHash = hash(memberHash, constantValue == null ? null : constantValue.toString());
+			memberHash = hashAnnotations(memberHash, annotations);
+		}
+	}
+
+	void addMethod(int access, String name, String descriptor, String signature, List<String> exceptions, Collection<String> annotations) {
+		if (isApi(access)) {
+			memberHash = hash(memberHash, 'M');
+			memberHash = hashMember(memberHash, access, name, descriptor, signature);
+			for (String each : exceptions) {
+				memberHash = hash(memberHash, each);
+			}
+			memberHash = hashAnnotations(memberHash, annotations);
+		}
+	}
+
+	long get() {
+		long fingerprint = hash(classHash, memberHash);
+		// Keep clear of the value that means unknown
+		return fingerprint == UNKNOWN ? 1 : fingerprint;
+	}
+
+	static boolean isApi(int access) {
+		return (access & (ACC_PRIVATE | ACC_SYNTHETIC)) == 0;
+	}
+
+	static boolean sameApi(long fingerprint, long otherFingerprint) {
+		return (fingerprint != UNKNOWN) && (fingerprint == otherFingerprint);
+	}
+
+	private static long hashMember(long hash, int access, String name, String descriptor, String signature) {
+		long result = hash(hash, access & API_ACCESS_MASK);
+		result = hash(result, name);
+		result = hash(result, descriptor);
+		return hash(result, signature);
+	}
+
+	private static long hashAnnotations(long hash, Collection<String> annotations) {
+		// Parsers don't all report annotations in class file order
+		long result = hash;
+		for (String each : new TreeSet<String>(annotations)) {
+			result = hash(result, each);
+		}
+		return hash(result, ';');
+	}
+
+	private static long hash(long hash, String value) {
+		if (value == null) {
+			return hash(hash, 0xFFFF);
+		}
+		long result = hash;
+		for (int i = 0; i < value.length(); i++) {
+			result = hash(result, value.charAt(i));
+		}
+		// Terminate each value so "ab","c" and "a","bc" hash differently
+		return hash(result, 0xFFFE);
+	}
+
+	private static long hash(long hash, long value) {
+		long result = hash;
+		for (int i = 0; i < 8; i++) {
+			result ^= (value >>> (i * 8)) & 0xFF;
+			result *= FNV_PRIME;
+		}
+		return result;
+	}
+}
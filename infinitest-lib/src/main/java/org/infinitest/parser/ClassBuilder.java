@@ -29,4 +29,6 @@ interface ClassBuilder {
 	JavaClass loadClass(File file);
 
 	void clear();
+
+	void close();
 }
\ No newline at end of file
@@ -21,42 +21,154 @@
  */
 package org.infinitest.parser;
 
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
 import static com.google.common.collect.Sets.*;
-import static org.jgrapht.Graphs.*;
 
 import java.io.*;
 import java.util.*;
 
 import org.infinitest.*;
-import org.jgrapht.*;
-import org.jgrapht.graph.*;
 
 import com.google.common.annotations.*;
-import com.google.common.collect.*;
+import com.google.common.base.*;
 
 public class ClassFileIndex {
+	// Below this many files, starting threads costs more than it saves
+	private static final int PARALLEL_THRESHOLD = 64;
+
+	private final Supplier<ClassBuilder> builderFactory;
 	private final ClassBuilder builder;
-	private DirectedGraph<JavaClass, DefaultEdge> graph;
+	private ParallelClassLoader parallelLoader;
+	private DependencyGraph graph;
+	private Map<String, ClassFileStamp> stamps;
+	private Map<File, SnapshotClass> restoredClasses;
+	private Set<String> classesWithSameApi;
+	// Imported classes that turned out not to be in a class directory, so
+	// they don't have to be looked up again
+	private Set<String> externalClasses;
+	private long avoidedLookupCount;
+	private boolean innerClassFolding;
+	// Resource paths found in the string constants of each class
+	private ReferenceMap resourceReferences;
+	// Classes outside the class directories that each class imports, so a
+	// changed library jar can be traced back to the classes using it
+	private ReferenceMap libraryReferences;
 
 	public ClassFileIndex(ClasspathProvider classpath) {
-		this(new JavaClassBuilder(classpath));
+		this(classpath, ClassParserType.JAVASSIST);
+	}
+
+	public ClassFileIndex(final ClasspathProvider classpath, final ClassParserType parserType) {
+		this(new Supplier<ClassBuilder>() {
+			public ClassBuilder get() {
+				return new JavaClassBuilder(classpath, parserType);
+			}
+		});
 	}
 
 	@VisibleForTesting
 	ClassFileIndex(ClassBuilder classBuilder) {
-		builder = classBuilder;
-		graph = new DefaultDirectedGraph<JavaClass, DefaultEdge>(DefaultEdge.class);
+		this(Suppliers.ofInstance(classBuilder));
+	}
+
+	@VisibleForTesting
+	ClassFileIndex(Supplier<ClassBuilder> builderFactory) {
+		this.builderFactory = builderFactory;
+		builder = builderFactory.get();
+		clear();
+	}
+
+	/**
+	 * Parses large batches of class files, like the ones after a clean build,
+	 * on the given number of threads. With one thread (the default) every
+	 * class is parsed on the calling thread.
+	 */
+	public void setParsingThreads(int threadCount) {
+		if (parallelLoader != null) {
+			parallelLoader.close();
+		}
+		if (threadCount > 1) {
+			parallelLoader = new ParallelClassLoader(builderFactory, threadCount);
+		} else {
+			parallelLoader = null;
+		}
+	}
+
+	/**
+	 * Indexes inner, anonymous and synthetic classes as part of their outer
+	 * class, so the graph has one node per source-level class. Nested tests
+	 * still get their own node. Must be set before any class is indexed.
+	 */
+	public void setInnerClassFolding(boolean innerClassFolding) {
+		this.innerClassFolding = innerClassFolding;
 	}
 
 	public Set<JavaClass> findClasses(Collection<File> changedFiles) {
+		classesWithSameApi.clear();
+		Set<JavaClass> changedClasses;
+		if ((parallelLoader != null) && (changedFiles.size() >= PARALLEL_THRESHOLD)) {
+			changedClasses = loadClassesInParallel(changedFiles);
+		} else {
+			changedClasses = newHashSet();
+			for (File file : changedFiles) {
+				JavaClass javaClass = loadClassFromFile(file);
+				if (javaClass != null) {
+					changedClasses.add(javaClass);
+				}
+			}
+		}
+		builder.clear();
+		restoredClasses.clear();
+		return changedClasses;
+	}
+
+	private Set<JavaClass> loadClassesInParallel(Collection<File> files) {
 		Set<JavaClass> changedClasses = newHashSet();
-		for (File file : changedFiles) {
-			JavaClass javaClass = loadClassFromFile(file);
+		List<File> filesToParse = newArrayList();
+		List<ClassFileStamp> fileStamps = newArrayList();
+		for (File file : files) {
+			ClassFileStamp stamp = ClassFileStamp.of(file);
+			JavaClass restoredClass = findRestoredClass(file, stamp);
+			if (restoredClass != null) {
+				changedClasses.add(restoredClass);
+			} else {
+				filesToParse.add(file);
+				fileStamps.add(stamp);
+			}
+		}
+
+		// If two files contain the same class, the last one wins, as it does
+		// when they're loaded one at a time
+		Map<String, JavaClass> parsedClasses = newLinkedHashMap();
+		List<JavaClass> loadedClasses = parallelLoader.loadClasses(filesToParse);
+		for (int i = 0; i < loadedClasses.size(); i++) {
+			JavaClass javaClass = loadedClasses.get(i);
 			if (javaClass != null) {
-				changedClasses.add(javaClass);
+				stamps.put(javaClass.getName(), fileStamps.get(i));
+				parsedClasses.remove(javaClass.getName());
+				parsedClasses.put(javaClass.getName(), javaClass);
 			}
 		}
-		builder.clear();
+
+		// Put every class in the graph before linking them, so classes that
+		// import each other aren't parsed again on this thread
+		Set<String> vertexNames = newLinkedHashSet();
+		for (JavaClass each : parsedClasses.values()) {
+			checkApi(each);
+			vertexNames.add(putInGraph(each).getName());
+		}
+		// Several inner classes may have been folded into the same vertex, so
+		// link the latest version of each one
+		for (String each : vertexNames) {
+			JavaClass vertex = graph.get(each);
+			updateParentReferences(vertex);
+			changedClasses.remove(vertex);
+			changedClasses.add(vertex);
+		}
+		for (JavaClass each : parsedClasses.values()) {
+			each.dispose();
+		}
 		return changedClasses;
 	}
 
@@ -65,99 +177,460 @@ public class ClassFileIndex {
 		if (clazz == null) {
 			clazz = builder.createClass(classname);
 			if (clazz.locatedInClassFile()) {
-				addToIndex(clazz);
+				return addToIndex(clazz);
 			}
 		}
 		return clazz;
 	}
 
 	private JavaClass findClass(String classname) {
-		for (JavaClass jClass : graph.vertexSet()) {
-			if (jClass.getName().equals(classname)) {
-				return jClass;
+		JavaClass javaClass = graph.get(classname);
+		if ((javaClass == null) && innerClassFolding) {
+			JavaClass outerClass = graph.get(FoldedClass.outerClassName(classname));
+			if ((outerClass instanceof FoldedClass) && ((FoldedClass) outerClass).containsInnerClass(classname)) {
+				return outerClass;
 			}
 		}
-		return null;
+		return javaClass;
 	}
 
-	private void addToIndex(JavaClass newClass) {
-		addToGraph(newClass);
-		updateParentReferences(newClass);
+	/**
+	 * @return The class as it is in the graph, which is the class it was
+	 *         folded into if it's an inner class
+	 */
+	private JavaClass addToIndex(JavaClass newClass) {
+		// Replacing a class keeps the edges of classes that depend on it
+		JavaClass vertex = putInGraph(newClass);
+		updateParentReferences(vertex);
 		newClass.dispose();
+		return vertex;
 	}
 
-	private void addToGraph(JavaClass newClass) {
-		if (!graph.addVertex(newClass)) {
-			replaceVertex(newClass);
+	private JavaClass putInGraph(JavaClass javaClass) {
+		// A class that was missing may have been compiled since
+		externalClasses.remove(javaClass.getName());
+		resourceReferences.put(javaClass.getName(), resourceReferencesOf(javaClass));
+		if (!innerClassFolding) {
+			graph.put(javaClass);
+			return javaClass;
 		}
+
+		String outerClassName = FoldedClass.outerClassName(javaClass.getName());
+
+		JavaClass outerVertex = graph.get(outerClassName);
+		if (outerClassName.equals(javaClass.getName())) {
+			if (outerVertex instanceof FoldedClass) {
+				return putFoldedClass(((FoldedClass) outerVertex).withOuterClass(javaClass));
+			}
+			graph.put(javaClass);
+			return javaClass;
+		}
+		if (javaClass.isATest()) {
+			unfold(outerVertex, javaClass.getName());
+			graph.put(javaClass);
+			return javaClass;
+		}
+		return fold(outerVertex, outerClassName, javaClass);
+	}
+
+	private FoldedClass fold(JavaClass outerVertex, String outerClassName, JavaClass innerClass) {
+		externalClasses.remove(outerClassName);
+		classesWithSameApi.remove(outerClassName);
+		FoldedClass foldedClass;
+		if (outerVertex instanceof FoldedClass) {
+			foldedClass = (FoldedClass) outerVertex;
+		} else if (outerVertex != null) {
+			// The outer class has been disposed, so its dependencies have to
+			// be read back from the graph
+			foldedClass = new FoldedClass(outerClassName, outerVertex, namesOf(graph.getChildren(outerVertex)));
+		} else {
+			foldedClass = new FoldedClass(outerClassName, null, Collections.<String> emptyList());
+		}
+		foldedClass = putFoldedClass(foldedClass.withInnerClass(innerClass));
+
+		// An inner class that used to be a test had a vertex of its own
+		JavaClass innerVertex = graph.get(innerClass.getName());
+		if (innerVertex != null) {
+			List<JavaClass> parents = graph.getParents(innerVertex);
+			graph.remove(innerVertex);
+			for (JavaClass parent : parents) {
+				if (!parent.equals(foldedClass)) {
+					graph.addEdge(parent, foldedClass);
+				}
+			}
+		}
+		return foldedClass;
 	}
 
-	private List<JavaClass> getParents(JavaClass childClass) {
-		return predecessorListOf(graph, childClass);
+	private void unfold(JavaClass outerVertex, String innerClassName) {
+		if ((outerVertex instanceof FoldedClass) && ((FoldedClass) outerVertex).containsInnerClass(innerClassName)) {
+			FoldedClass remaining = ((FoldedClass) outerVertex).withoutInnerClass(innerClassName);
+			if (remaining.isEmpty()) {
+				graph.remove(outerVertex);
+			} else {
+				putFoldedClass(remaining);
+				updateParentReferences(remaining);
+			}
+		}
 	}
 
-	private void replaceVertex(JavaClass newClass) {
-		List<JavaClass> incomingEdges = getParents(newClass);
+	private FoldedClass putFoldedClass(FoldedClass foldedClass) {
+		graph.put(foldedClass);
+		return foldedClass;
+	}
 
-		graph.removeVertex(newClass);
-		graph.addVertex(newClass);
-		for (JavaClass each : incomingEdges) {
-			graph.addEdge(each, newClass);
+	private static List<String> namesOf(Collection<JavaClass> classes) {
+		List<String> names = newArrayList();
+		for (JavaClass each : classes) {
+			names.add(each.getName());
 		}
+		return names;
 	}
 
 	private void updateParentReferences(JavaClass parentClass) {
+		List<String> libraryClasses = newArrayList();
 		for (String child : parentClass.getImports()) {
-			JavaClass childClass = findJavaClass(child);
-			if ((childClass != null) && !childClass.equals(parentClass)) {
-				if (graph.containsVertex(childClass)) {
-					graph.addEdge(parentClass, childClass);
+			boolean external;
+			if (externalClasses.contains(child)) {
+				avoidedLookupCount++;
+				external = true;
+			} else {
+				external = addEdgeTo(parentClass, child);
+			}
+			if (external && isLibraryClass(child)) {
+				libraryClasses.add(child);
+			}
+		}
+		libraryReferences.put(parentClass.getName(), libraryClasses);
+	}
+
+	/**
+	 * @return true if the child is outside the class directories
+	 */
+	private boolean addEdgeTo(JavaClass parentClass, String child) {
+		JavaClass childClass = findJavaClass(child);
+		if (childClass != null) {
+			if (!childClass.locatedInClassFile()) {
+				externalClasses.add(child);
+				return true;
+			} else if (!childClass.equals(parentClass) && graph.contains(childClass.getName())) {
+				graph.addEdge(parentClass, childClass);
+			}
+		}
+		return false;
+	}
+
+	// The JDK can't change without the runtime environment changing, which
+	// clears the index anyway
+	private static boolean isLibraryClass(String className) {
+		return !className.startsWith("java.");
+	}
+
+	static Collection<String> resourceReferencesOf(JavaClass javaClass) {
+		if (javaClass instanceof AbstractJavaClass) {
+			return ((AbstractJavaClass) javaClass).getResourceReferences();
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Finds the indexed classes that import any of the given classes from
+	 * outside the class directories, like classes in a library jar.
+	 */
+	public Set<JavaClass> findClassesUsingLibraryClasses(Collection<String> libraryClassNames) {
+		Set<JavaClass> classes = newHashSet();
+		for (String each : libraryClassNames) {
+			for (String className : libraryReferences.getReferringClasses(each)) {
+				JavaClass javaClass = findClass(className);
+				if (javaClass != null) {
+					classes.add(javaClass);
 				}
 			}
 		}
+		return classes;
+	}
+
+	/**
+	 * Finds the classes that refer to a resource through a string constant,
+	 * either by its full path or, for classes in the same package, by its
+	 * file name.
+	 * 
+	 * @param resourcePath
+	 *            The path of the resource relative to its class directory,
+	 *            separated by forward slashes
+	 */
+	public Set<JavaClass> findClassesUsingResource(String resourcePath) {
+		Set<String> classNames = newHashSet();
+		for (String each : ResourceReferences.pathsFor(resourcePath)) {
+			classNames.addAll(resourceReferences.getReferringClasses(each));
+		}
+		String directory = ResourceReferences.directoryOf(resourcePath);
+		for (String each : resourceReferences.getReferringClasses(ResourceReferences.relativePathFor(resourcePath))) {
+			if (ResourceReferences.packagePathOf(each).equals(directory)) {
+				classNames.add(each);
+			}
+		}
+
+		Set<JavaClass> classes = newHashSet();
+		for (String each : classNames) {
+			JavaClass javaClass = findClass(each);
+			if (javaClass != null) {
+				classes.add(javaClass);
+			}
+		}
+		return classes;
 	}
 
 	JavaClass loadClassFromFile(File file) {
+		// Stamp the file before reading it, so a write that races with the
+		// parse makes the stamp out of date rather than the index
+		ClassFileStamp stamp = ClassFileStamp.of(file);
+		JavaClass restoredClass = findRestoredClass(file, stamp);
+		if (restoredClass != null) {
+			return restoredClass;
+		}
 		JavaClass javaClass = builder.loadClass(file);
 		if (javaClass != null) {
-			addToIndex(javaClass);
+			stamps.put(javaClass.getName(), stamp);
+			checkApi(javaClass);
+			return addToIndex(javaClass);
 		}
-		return javaClass;
+		return null;
+	}
+
+	// Must be called before the new class replaces the old one in the graph
+	private void checkApi(JavaClass newClass) {
+		JavaClass oldClass = graph.get(newClass.getName());
+		if ((oldClass != null) && ApiFingerprint.sameApi(apiFingerprintOf(oldClass), apiFingerprintOf(newClass))) {
+			classesWithSameApi.add(newClass.getName());
+		} else {
+			classesWithSameApi.remove(newClass.getName());
+		}
+	}
+
+	static long apiFingerprintOf(JavaClass javaClass) {
+		if (javaClass instanceof AbstractJavaClass) {
+			return ((AbstractJavaClass) javaClass).getApiFingerprint();
+		}
+		return ApiFingerprint.UNKNOWN;
+	}
+
+	/**
+	 * The timestamps the class files added by {@link #restore(Collection)} had
+	 * when the snapshot was taken, including the ones that have changed since.
+	 * Only valid until the next call to {@link #findClasses(Collection)}.
+	 */
+	Map<File, Long> getRestoredTimestamps() {
+		Map<File, Long> timestamps = newHashMap();
+		for (Map.Entry<File, SnapshotClass> each : restoredClasses.entrySet()) {
+			timestamps.put(each.getKey(), each.getValue().getStamp().getLastModified());
+		}
+		return timestamps;
+	}
+
+	private JavaClass findRestoredClass(File file, ClassFileStamp stamp) {
+		SnapshotClass restoredClass = restoredClasses.remove(file);
+		if ((restoredClass != null) && restoredClass.getStamp().equals(stamp)) {
+			return restoredClass;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds classes from a snapshot to the index without parsing them. The
+	 * next call to {@link #findClasses(Collection)} will reuse them, instead
+	 * of parsing their class files again, if the files haven't changed.
+	 * 
+	 * @return The timestamps of the class files that haven't changed since
+	 *         the snapshot was taken
+	 */
+	Map<File, Long> restore(Collection<SnapshotClass> classes) {
+		Map<File, Long> unchangedFiles = newHashMap();
+		List<SnapshotClass> restored = newArrayList();
+		for (SnapshotClass each : classes) {
+			File classFile = each.getClassFile();
+			// Changed classes are restored too, so the classes that depend on
+			// them keep their edges until they are parsed again
+			if (classFile.exists() && !graph.contains(each.getName())) {
+				putInGraph(each);
+				stamps.put(each.getName(), each.getStamp());
+				libraryReferences.put(each.getName(), each.getLibraryReferences());
+				restoredClasses.put(classFile, each);
+				restored.add(each);
+				if (each.getStamp().matches(classFile)) {
+					unchangedFiles.put(classFile, each.getStamp().getLastModified());
+				}
+			}
+		}
+		for (SnapshotClass each : restored) {
+			for (String child : each.getImports()) {
+				JavaClass childClass = graph.get(child);
+				if ((childClass != null) && !childClass.equals(each)) {
+					graph.addEdge(each, childClass);
+				}
+			}
+			each.dispose();
+		}
+		return unchangedFiles;
+	}
+
+	/**
+	 * Removes the classes loaded from the given files, and their edges, from
+	 * the index.
+	 * 
+	 * @return The classes that depended on the removed classes, directly or
+	 *         transitively
+	 */
+	public Set<JavaClass> removeClasses(Collection<File> removedFiles) {
+		Set<File> files = newHashSet();
+		for (File each : removedFiles) {
+			files.add(each.getAbsoluteFile());
+		}
+		Set<JavaClass> removedClasses = newHashSet();
+		Set<FoldedClass> shrunkClasses = newHashSet();
+		for (JavaClass each : graph.getClasses()) {
+			if (each instanceof FoldedClass) {
+				FoldedClass remaining = ((FoldedClass) each).withoutClassesIn(files);
+				if (remaining.isEmpty()) {
+					removedClasses.add(each);
+				} else if (remaining != each) {
+					shrunkClasses.add(remaining);
+				}
+				for (String className : ((FoldedClass) each).getClassNames()) {
+					if (!remaining.getClassNames().contains(className)) {
+						stamps.remove(className);
+						resourceReferences.remove(className);
+					}
+				}
+			} else if (each.locatedInClassFile() && files.contains(each.getClassFile().getAbsoluteFile())) {
+				removedClasses.add(each);
+			}
+		}
+		for (JavaClass each : removedClasses) {
+			resourceReferences.remove(each.getName());
+			libraryReferences.remove(each.getName());
+		}
+
+		Set<JavaClass> changedClasses = newHashSet(removedClasses);
+		changedClasses.addAll(shrunkClasses);
+		Set<JavaClass> dependentClasses = graph.findTransitiveParents(changedClasses);
+		dependentClasses.removeAll(removedClasses);
+		for (JavaClass each : removedClasses) {
+			graph.remove(each);
+			stamps.remove(each.getName());
+		}
+		// What's left of a folded class has changed too, so it replaces the
+		// old version in the result
+		dependentClasses.removeAll(shrunkClasses);
+		for (FoldedClass each : shrunkClasses) {
+			putFoldedClass(each);
+			updateParentReferences(each);
+			dependentClasses.add(each);
+		}
+		return dependentClasses;
 	}
 
 	// Loop through all changed classes, adding their parents (and their
 	// parents)
 	// to another set of changed classes
 	public Set<JavaClass> findChangedParents(Set<JavaClass> classes) {
-		Set<JavaClass> changedParents = Sets.newHashSet(classes);
-		for (JavaClass jclass : classes) {
-			findParents(jclass, changedParents);
-		}
-		return changedParents;
+		return graph.findTransitiveParents(classes);
+	}
+
+	/**
+	 * Finds the tests among the given classes and their parents, and their
+	 * parents' parents. The same as picking the tests out of
+	 * {@link #findChangedParents(Set)}, but cached between updates.
+	 */
+	public Set<JavaClass> findChangedTests(Set<JavaClass> classes) {
+		return graph.findTransitiveParentTests(classes);
 	}
 
-	private void findParents(JavaClass jclass, Set<JavaClass> changedParents) {
-		for (JavaClass parent : getParents(jclass)) {
-			if (changedParents.add(parent)) {
-				findParents(parent, changedParents);
+	/**
+	 * Like {@link #findChangedParents(Set)}, but a class that the last call to
+	 * {@link #findClasses(Collection)} reloaded with the same API fingerprint
+	 * only adds its direct parents, not their parents.
+	 */
+	public Set<JavaClass> findParentsAffectedByApiChanges(Set<JavaClass> classes) {
+		Set<JavaClass> apiChangedClasses = newHashSet();
+		Set<JavaClass> affectedClasses = newHashSet(classes);
+		for (JavaClass each : classes) {
+			if (classesWithSameApi.contains(each.getName()) && graph.contains(each.getName())) {
+				affectedClasses.addAll(graph.getParents(each));
+			} else {
+				apiChangedClasses.add(each);
 			}
 		}
+		affectedClasses.addAll(graph.findTransitiveParents(apiChangedClasses));
+		return affectedClasses;
+	}
+
+	/**
+	 * Releases the jars and other resources held by the class parsers. The
+	 * index can't be updated afterwards.
+	 */
+	public void close() {
+		builder.close();
+		if (parallelLoader != null) {
+			parallelLoader.close();
+		}
 	}
 
 	public void clear() {
-		graph = new DefaultDirectedGraph<JavaClass, DefaultEdge>(DefaultEdge.class);
+		graph = new DependencyGraph();
+		stamps = newHashMap();
+		restoredClasses = newHashMap();
+		classesWithSameApi = newHashSet();
+		externalClasses = newHashSet();
+		resourceReferences = new ReferenceMap();
+		libraryReferences = new ReferenceMap();
+	}
+
+	/**
+	 * The number of times a class was known to be outside the class
+	 * directories, so it didn't have to be looked up on the classpath.
+	 */
+	public long getAvoidedLookupCount() {
+		return avoidedLookupCount;
 	}
 
 	public boolean isIndexed(Class<Object> clazz) {
-		return getIndexedClasses().contains(clazz.getName());
+		return graph.contains(clazz.getName());
 	}
 
 	public Set<String> getIndexedClasses() {
-		Set<String> classes = newHashSet();
-		Set<JavaClass> vertexSet = graph.vertexSet();
-		for (JavaClass each : vertexSet) {
-			classes.add(each.getName());
+		return graph.getClassNames();
+	}
+
+	/**
+	 * The names of the indexed classes that are tests. The set is kept up to
+	 * date as the index changes, so it's cheap to ask for after every update.
+	 */
+	public Set<String> getTestNames() {
+		return graph.getTestNames();
+	}
+
+	List<JavaClass> getClasses() {
+		return graph.getClasses();
+	}
+
+	List<JavaClass> getDependencies(JavaClass javaClass) {
+		return graph.getChildren(javaClass);
+	}
+
+	Collection<String> getResourceReferences(JavaClass javaClass) {
+		return resourceReferences.getReferences(javaClass.getName());
+	}
+
+	Collection<String> getLibraryReferences(JavaClass javaClass) {
+		return libraryReferences.getReferences(javaClass.getName());
+	}
+
+	ClassFileStamp getStamp(JavaClass javaClass) {
+		ClassFileStamp stamp = stamps.get(javaClass.getName());
+		if (stamp == null) {
+			return ClassFileStamp.UNKNOWN;
 		}
-		return classes;
+		return stamp;
 	}
 }
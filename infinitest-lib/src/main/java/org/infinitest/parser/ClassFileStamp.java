@@ -0,0 +1,74 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import java.io.*;
+
+/**
+ * The modification time and size of a class file at the moment it was read.
+ */
+class ClassFileStamp {
+	static final ClassFileStamp UNKNOWN = new ClassFileStamp(-1, -1);
+
+	private final long lastModified;
+	private final long length;
+
+	ClassFileStamp(long lastModified, long length) {
+		this.lastModified = lastModified;
+		this.length = length;
+	}
+
+	static ClassFileStamp of(File classFile) {
+		return new ClassFileStamp(classFile.lastModified(), classFile.length());
+	}
+
+	long getLastModified() {
+		return lastModified;
+	}
+
+	long getLength() {
+		return length;
+	}
+
+	boolean matches(File classFile) {
+		return (this != UNKNOWN) && equals(of(classFile));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof ClassFileStamp) {
+			ClassFileStamp other = (ClassFileStamp) obj;
+			return (lastModified == other.lastModified) && (length == other.length);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (lastModified ^ (lastModified >>> 32) ^ length);
+	}
+
+	@Override
+	public String toString() {
+		return lastModified + ":" + length;
+	}
+}
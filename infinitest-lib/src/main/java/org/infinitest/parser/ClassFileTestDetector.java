@@ -21,11 +21,15 @@
  */
 package org.infinitest.parser;
 
+import static com.google.common.collect.Lists.*;
 import static com.google.common.collect.Sets.*;
+import static java.util.concurrent.TimeUnit.*;
 import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.logging.*;
 
 import org.infinitest.*;
@@ -35,16 +39,117 @@ import org.infinitest.filter.*;
  * @author <a href="mailto:benrady@gmail.com"Ben Rady</a>
  */
 public class ClassFileTestDetector implements TestDetector {
+	private static final long SNAPSHOT_WRITE_DELAY = 2000;
+	// One thread writes the snapshots of every core, so a save that updates
+	// many cores doesn't write all their snapshots at once
+	private static final ScheduledExecutorService snapshotWriter = Executors.newSingleThreadScheduledExecutor(new SnapshotWriterThreadFactory());
+
 	private final TestFilter filters;
 	private ClassFileIndex index;
 	private ClasspathProvider classpath;
+	private IndexSnapshot snapshot;
+	private long snapshotWriteDelay = SNAPSHOT_WRITE_DELAY;
+	private ScheduledFuture<?> pendingSnapshotWrite;
+	private Long classpathFingerprint;
+	private ClassParserType parserType = ClassParserType.JAVASSIST;
+	private int parsingThreads = 1;
+	private boolean apiChangeFilter;
+	private boolean innerClassFolding;
+	private UnmatchedResourcePolicy unmatchedResourcePolicy = UnmatchedResourcePolicy.IGNORE;
+	private int lastPrunedTestCount;
+	private long totalPrunedTestCount;
+	private TestCoverage coverage;
+	private final JarContentIndex jarContents = new JarContentIndex();
+	private Set<String> currentTests = newHashSet();
+	private final Set<String> disabledTests = newHashSet();
 
 	public ClassFileTestDetector(TestFilter testFilterList) {
 		filters = testFilterList;
 	}
 
-	public void clear() {
+	/**
+	 * Chooses how class files are parsed. Takes effect the next time the
+	 * classpath is set.
+	 */
+	public void setClassParserType(ClassParserType parserType) {
+		this.parserType = parserType;
+	}
+
+	/**
+	 * Sets how many threads parse class files when a large number of them
+	 * change at once. Takes effect the next time the classpath is set.
+	 */
+	public void setParsingThreads(int threadCount) {
+		parsingThreads = threadCount;
+	}
+
+	/**
+	 * Indexes inner, anonymous and synthetic classes as part of their outer
+	 * class. Index snapshots aren't used in this mode. Takes effect the next
+	 * time the classpath is set.
+	 */
+	public void setInnerClassFolding(boolean enabled) {
+		innerClassFolding = enabled;
+	}
+
+	/**
+	 * Chooses what to do when a resource that no class refers to changes.
+	 */
+	public void setUnmatchedResourcePolicy(UnmatchedResourcePolicy policy) {
+		unmatchedResourcePolicy = policy;
+	}
+
+	/**
+	 * When enabled, a class that's recompiled without changing its API only
+	 * causes the tests that depend on it directly to run, instead of every
+	 * test that depends on it transitively.
+	 */
+	public void setApiChangeFilter(boolean enabled) {
+		apiChangeFilter = enabled;
+	}
+
+	/**
+	 * Only runs tests that loaded one of the changed classes the last time
+	 * they ran, as long as that's known. Other tests are selected from the
+	 * dependency graph as usual.
+	 */
+	public void setTestCoverage(TestCoverage coverage) {
+		this.coverage = coverage;
+	}
+
+	/**
+	 * The number of tests the API change filter kept from running in the last
+	 * call to {@link #findTestsToRun(Collection)}.
+	 */
+	public synchronized int getLastPrunedTestCount() {
+		return lastPrunedTestCount;
+	}
+
+	/**
+	 * The number of tests the API change filter has kept from running since
+	 * this detector was created.
+	 */
+	public synchronized long getTotalPrunedTestCount() {
+		return totalPrunedTestCount;
+	}
+
+	/**
+	 * Saves the index to the given file shortly after updates that change it,
+	 * and restores it from there when the index is cleared, so class files
+	 * don't have to be parsed again unless they've changed. The snapshot is
+	 * written in the background, at most once every couple of seconds.
+	 */
+	public void setIndexSnapshotFile(File snapshotFile) {
+		snapshot = new IndexSnapshot(snapshotFile);
+	}
+
+	void setSnapshotWriteDelay(long delayInMillis) {
+		snapshotWriteDelay = delayInMillis;
+	}
+
+	public synchronized void clear() {
 		index.clear();
+		currentTests = newHashSet();
 	}
 
 	/**
@@ -53,17 +158,205 @@ public class ClassFileTestDetector implements TestDetector {
 	 */
 	public synchronized Set<JavaClass> findTestsToRun(Collection<File> changedFiles) {
 		filters.updateFilterList();
+		List<File> classFiles = newArrayList();
+		List<File> jars = newArrayList();
+		List<File> resources = newArrayList();
+		separateFiles(changedFiles, classFiles, jars, resources);
 
-		// Find changed classes
-		Set<JavaClass> changedClasses = index.findClasses(changedFiles);
-		Set<JavaClass> changedParents = index.findChangedParents(changedClasses);
-
-		// combine two sets
-		changedClasses.addAll(changedParents);
+		// Find changed classes, and the classes that use changed library
+		// classes or resources
+		Set<JavaClass> changedClasses = index.findClasses(classFiles);
+		changedClasses.addAll(findClassesUsingChangedJars(jars));
+		changedClasses.addAll(findClassesUsingResources(resources));
+		Set<JavaClass> changedParents;
+		if (apiChangeFilter) {
+			changedParents = index.findParentsAffectedByApiChanges(changedClasses);
+		} else {
+			changedParents = index.findChangedTests(changedClasses);
+		}
 
 		// run through total set, and pick out tests to run
 		log(Level.FINE, "Total changeset: " + changedParents);
-		return filterTests(changedClasses);
+		Set<JavaClass> testsToRun = filterTests(union(changedClasses, changedParents));
+		if (apiChangeFilter) {
+			countPrunedTests(changedClasses, testsToRun);
+		}
+		if (coverage != null) {
+			testsToRun = filterByCoverage(testsToRun, changedClasses);
+		}
+		if (!classFiles.isEmpty()) {
+			saveSnapshot();
+		}
+		updateCurrentTests();
+		return testsToRun;
+	}
+
+	private void separateFiles(Collection<File> files, List<File> classFiles, List<File> jars, List<File> resources) {
+		for (File each : files) {
+			String name = each.getName().toLowerCase();
+			if (name.endsWith(".class")) {
+				classFiles.add(each);
+			} else if (name.endsWith(".jar") && (resourcePathOf(each) == null)) {
+				jars.add(each);
+			} else {
+				resources.add(each);
+			}
+		}
+	}
+
+	// The first time a jar is seen only its contents are recorded, later
+	// changes are compared with them
+	private Set<JavaClass> findClassesUsingChangedJars(Collection<File> jars) {
+		Set<String> changedLibraryClasses = newHashSet();
+		for (File each : jars) {
+			Set<String> changedClasses = jarContents.findChangedClasses(each);
+			if (!changedClasses.isEmpty()) {
+				log(Level.FINE, changedClasses.size() + " classes changed in " + each);
+				changedLibraryClasses.addAll(changedClasses);
+			}
+		}
+		return index.findClassesUsingLibraryClasses(changedLibraryClasses);
+	}
+
+	private Set<JavaClass> findClassesUsingResources(Collection<File> resources) {
+		Set<JavaClass> classes = newHashSet();
+		for (File each : resources) {
+			String resourcePath = resourcePathOf(each);
+			Set<JavaClass> referringClasses = Collections.emptySet();
+			if (resourcePath != null) {
+				referringClasses = index.findClassesUsingResource(resourcePath);
+			}
+			if (!referringClasses.isEmpty()) {
+				log(Level.FINE, "Classes using resource " + resourcePath + ": " + referringClasses);
+				classes.addAll(referringClasses);
+			} else if (unmatchedResourcePolicy == UnmatchedResourcePolicy.RUN_ALL_TESTS) {
+				log(Level.FINE, "No class refers to resource " + each + ", running all tests");
+				for (String test : index.getTestNames()) {
+					classes.add(index.findJavaClass(test));
+				}
+			}
+		}
+		return classes;
+	}
+
+	// The path a class would load the resource with, or null if it isn't in
+	// a class directory
+	private String resourcePathOf(File resource) {
+		String path = resource.getAbsolutePath();
+		for (File each : classpath.classDirectoriesInClasspath()) {
+			String directory = each.getAbsolutePath() + File.separator;
+			if (path.startsWith(directory)) {
+				return path.substring(directory.length()).replace(File.separatorChar, '/');
+			}
+		}
+		return null;
+	}
+
+	private Set<JavaClass> filterByCoverage(Set<JavaClass> tests, Set<JavaClass> changedClasses) {
+		Set<JavaClass> coveredTests = coverage.filterTests(tests, changedClasses);
+		if (coveredTests.size() < tests.size()) {
+			log(Level.FINE, "Skipped " + (tests.size() - coveredTests.size()) + " tests that didn't load any changed class");
+		}
+		return coveredTests;
+	}
+
+	private void countPrunedTests(Set<JavaClass> changedClasses, Set<JavaClass> testsToRun) {
+		Set<JavaClass> unfilteredTests = filterTests(index.findChangedTests(changedClasses));
+		lastPrunedTestCount = unfilteredTests.size() - testsToRun.size();
+		totalPrunedTestCount += lastPrunedTestCount;
+		if (lastPrunedTestCount > 0) {
+			log(Level.CONFIG, "Skipped " + lastPrunedTestCount + " of " + unfilteredTests.size() + " tests that only depend on unchanged APIs (" + totalPrunedTestCount + " in total)");
+		}
+	}
+
+	public synchronized Set<JavaClass> removeClasses(Collection<File> removedFiles) {
+		filters.updateFilterList();
+		List<File> classFiles = newArrayList();
+		List<File> jars = newArrayList();
+		List<File> resources = newArrayList();
+		separateFiles(removedFiles, classFiles, jars, resources);
+		Set<JavaClass> dependentClasses = index.removeClasses(classFiles);
+		log(Level.FINE, "Classes depending on removed files: " + dependentClasses);
+		Set<String> removedLibraryClasses = newHashSet();
+		for (File each : jars) {
+			removedLibraryClasses.addAll(jarContents.removeJar(each));
+		}
+		Set<JavaClass> classesUsingRemovedFiles = index.findClassesUsingLibraryClasses(removedLibraryClasses);
+		classesUsingRemovedFiles.addAll(findClassesUsingResources(resources));
+		dependentClasses.addAll(classesUsingRemovedFiles);
+		dependentClasses.addAll(index.findChangedTests(classesUsingRemovedFiles));
+		if (!classFiles.isEmpty()) {
+			saveSnapshot();
+		}
+		updateCurrentTests();
+		return filterTests(dependentClasses);
+	}
+
+	public synchronized Set<String> findDisabledTests() {
+		Set<String> tests = newHashSet(disabledTests);
+		disabledTests.clear();
+		return tests;
+	}
+
+	// Tests that were removed, stopped being tests or were filtered out since
+	// the last update are disabled
+	private void updateCurrentTests() {
+		Set<String> newTests = getCurrentTests();
+		disabledTests.addAll(difference(currentTests, newTests));
+		disabledTests.removeAll(newTests);
+		currentTests = newTests;
+	}
+
+	public synchronized Map<File, Long> restoreIndex() {
+		if ((snapshot == null) || innerClassFolding) {
+			return Collections.emptyMap();
+		}
+		index.restore(snapshot.read(getClasspathFingerprint()));
+		currentTests = getCurrentTests();
+		return index.getRestoredTimestamps();
+	}
+
+	// Updates made while a write is pending are saved by that write
+	private void saveSnapshot() {
+		if ((snapshot == null) || innerClassFolding || (pendingSnapshotWrite != null)) {
+			return;
+		}
+		pendingSnapshotWrite = snapshotWriter.schedule(new Runnable() {
+			public void run() {
+				writeSnapshot();
+			}
+		}, snapshotWriteDelay, MILLISECONDS);
+	}
+
+	private void writeSnapshot() {
+		IndexSnapshot target;
+		byte[] contents;
+		synchronized (this) {
+			pendingSnapshotWrite = null;
+			if ((snapshot == null) || innerClassFolding) {
+				return;
+			}
+			target = snapshot;
+			try {
+				contents = target.encode(index, getClasspathFingerprint());
+			} catch (IOException e) {
+				log(Level.WARNING, "Could not save index snapshot " + target.getFile() + ": " + e.getMessage());
+				return;
+			}
+		}
+		try {
+			target.write(contents);
+		} catch (IOException e) {
+			log(Level.WARNING, "Could not save index snapshot " + target.getFile() + ": " + e.getMessage());
+		}
+	}
+
+	private long getClasspathFingerprint() {
+		if (classpathFingerprint == null) {
+			String completeClasspath = classpath.getCompleteClasspath();
+			classpathFingerprint = ((long) completeClasspath.length() << 32) | (completeClasspath.hashCode() & 0xFFFFFFFFL);
+		}
+		return classpathFingerprint;
 	}
 
 	private Set<JavaClass> filterTests(Set<JavaClass> changedClasses) {
@@ -111,16 +404,35 @@ public class ClassFileTestDetector implements TestDetector {
 
 	public void setClasspathProvider(ClasspathProvider classpath) {
 		this.classpath = classpath;
-		index = new ClassFileIndex(classpath);
+		classpathFingerprint = null;
+		if (index != null) {
+			index.close();
+		}
+		index = new ClassFileIndex(classpath, parserType);
+		index.setParsingThreads(parsingThreads);
+		index.setInnerClassFolding(innerClassFolding);
+		currentTests = newHashSet();
 	}
 
-	public Set<String> getCurrentTests() {
+	public synchronized Set<String> getCurrentTests() {
+		// Only the filters have to be checked, the index keeps track of which
+		// classes are tests
 		Set<String> tests = newHashSet();
-		for (String each : getIndexedClasses()) {
-			if (isATest(index.findJavaClass(each))) {
+		for (String each : index.getTestNames()) {
+			if (!filters.match(each)) {
 				tests.add(each);
 			}
 		}
 		return tests;
 	}
+
+	private static class SnapshotWriterThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Infinitest index snapshot writer " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
@@ -0,0 +1,156 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Maps.*;
+
+import java.util.*;
+
+/**
+ * Decides whether a class is a test from the outlines of the classes in its
+ * hierarchy, and remembers what it found out about each superclass, so test
+ * classes that share a deep hierarchy don't each walk it again. What's known
+ * about library classes is kept until a jar on the classpath changes, what's
+ * known about project classes only until they might have changed.
+ */
+class ClassHierarchyCache {
+	private static final String OBJECT = "java.lang.Object";
+	private static final String TEST_CASE = "junit.framework.TestCase";
+
+	private final ProjectClasses projectClasses;
+	private final ClasspathClassLocator locator;
+	private final Map<String, Hierarchy> libraryHierarchies;
+	private final Map<String, Hierarchy> projectHierarchies;
+
+	/**
+	 * @param locator
+	 *            Finds the library classes, or null if only the project
+	 *            classes should be looked at
+	 */
+	ClassHierarchyCache(ProjectClasses projectClasses, ClasspathClassLocator locator) {
+		this.projectClasses = projectClasses;
+		this.locator = locator;
+		libraryHierarchies = newHashMap();
+		projectHierarchies = newHashMap();
+	}
+
+	boolean isATest(ClassOutline outline) {
+		if (outline.isAbstract()) {
+			return false;
+		}
+		Hierarchy hierarchy = new Hierarchy(outline, hierarchyOf(outline.getSuperName(), false));
+		boolean canInstantiate = outline.hasJUnitConstructor() || (hierarchy.usesCustomRunner && outline.hasNonPrivateConstructor());
+		return (hierarchy.hasTestMethods || hierarchy.usesCustomRunner) && canInstantiate;
+	}
+
+	/**
+	 * Forgets the classes that didn't come from a library.
+	 */
+	void forgetProjectClasses() {
+		projectHierarchies.clear();
+	}
+
+	void forgetLibraryClasses() {
+		libraryHierarchies.clear();
+	}
+
+	int size() {
+		return libraryHierarchies.size() + projectHierarchies.size();
+	}
+
+	private Hierarchy hierarchyOf(String className, boolean inLibrary) {
+		if ((className == null) || className.equals(OBJECT)) {
+			return Hierarchy.NONE;
+		}
+		// Library classes can't extend project classes, and project classes
+		// hide library classes with the same name
+		Hierarchy hierarchy = inLibrary ? null : projectHierarchies.get(className);
+		if (hierarchy != null) {
+			return hierarchy;
+		}
+		ClassOutline outline = inLibrary ? null : projectClasses.find(className);
+		if (outline != null) {
+			// Guards against a hierarchy that loops back on itself
+			projectHierarchies.put(className, Hierarchy.NONE);
+			hierarchy = new Hierarchy(outline, hierarchyOf(outline.getSuperName(), false));
+		} else {
+			hierarchy = findLibraryHierarchy(className);
+		}
+		if (!inLibrary) {
+			projectHierarchies.put(className, hierarchy);
+		}
+		return hierarchy;
+	}
+
+	private Hierarchy findLibraryHierarchy(String className) {
+		Hierarchy hierarchy = libraryHierarchies.get(className);
+		if (hierarchy == null) {
+			libraryHierarchies.put(className, Hierarchy.NONE);
+			ClassOutline outline = locator == null ? null : locator.findLibraryClass(className);
+			if (outline == null) {
+				// If we can't find the superclass it's not on the classpath,
+				// and we don't care
+				hierarchy = Hierarchy.NONE;
+			} else {
+				hierarchy = new Hierarchy(outline, hierarchyOf(outline.getSuperName(), true));
+			}
+			libraryHierarchies.put(className, hierarchy);
+		}
+		return hierarchy;
+	}
+
+	/**
+	 * The classes in the class directories of a project.
+	 */
+	interface ProjectClasses {
+		/**
+		 * @return The outline of the class, or null if it's not in the class
+		 *         directories
+		 */
+		ClassOutline find(String className);
+	}
+
+	/**
+	 * What a class inherits from the classes above it.
+	 */
+	private static class Hierarchy {
+		// The hierarchy above java.lang.Object, or a class we can't find
+		private static final Hierarchy NONE = new Hierarchy();
+
+		private final boolean extendsTestCase;
+		private final boolean usesCustomRunner;
+		private final boolean hasTestMethods;
+
+		private Hierarchy() {
+			extendsTestCase = false;
+			usesCustomRunner = false;
+			hasTestMethods = false;
+		}
+
+		private Hierarchy(ClassOutline outline, Hierarchy superclass) {
+			extendsTestCase = TEST_CASE.equals(outline.getSuperName()) || superclass.extendsTestCase;
+			usesCustomRunner = outline.usesRunWith() || superclass.usesCustomRunner;
+			// Methods named like tests only count in subclasses of TestCase
+			hasTestMethods = outline.hasAnnotatedTestMethod() || (outline.hasTestNamedMethod() && extendsTestCase) || superclass.hasTestMethods;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+/**
+ * The parts of a class that decide whether the classes extending it are tests:
+ * its superclass, and whether it declares test methods, constructors a test
+ * runner can use, or a custom runner. Outlines are immutable, so the outlines
+ * of library classes can be shared by the parsers of every core.
+ */
+final class ClassOutline {
+	private static final int ABSTRACT = 0x01;
+	private static final int RUN_WITH = 0x02;
+	private static final int ANNOTATED_TEST_METHOD = 0x04;
+	private static final int TEST_NAMED_METHOD = 0x08;
+	private static final int NON_PRIVATE_CONSTRUCTOR = 0x10;
+	private static final int JUNIT_CONSTRUCTOR = 0x20;
+
+	private final String name;
+	private final String superName;
+	private final int flags;
+
+	ClassOutline(String name, String superName, boolean isAbstract, boolean runWith, boolean hasAnnotatedTestMethod, boolean hasTestNamedMethod,
+			boolean hasNonPrivateConstructor, boolean hasJUnitConstructor) {
+		this.name = name;
+		this.superName = superName;
+		flags = flag(isAbstract, ABSTRACT) | flag(runWith, RUN_WITH) | flag(hasAnnotatedTestMethod, ANNOTATED_TEST_METHOD)
+				| flag(hasTestNamedMethod, TEST_NAMED_METHOD) | flag(hasNonPrivateConstructor, NON_PRIVATE_CONSTRUCTOR)
+				| flag(hasJUnitConstructor, JUNIT_CONSTRUCTOR);
+	}
+
+	private static int flag(boolean value, int flag) {
+		return value ? flag : 0;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * @return The name of the superclass, or null for java.lang.Object
+	 */
+	String getSuperName() {
+		return superName;
+	}
+
+	/**
+	 * @return true for interfaces and abstract classes
+	 */
+	boolean isAbstract() {
+		return (flags & ABSTRACT) != 0;
+	}
+
+	/**
+	 * @return true if the class is annotated with RunWith
+	 */
+	boolean usesRunWith() {
+		return (flags & RUN_WITH) != 0;
+	}
+
+	/**
+	 * @return true if a non-private method is annotated with a JUnit or TestNG
+	 *         Test annotation
+	 */
+	boolean hasAnnotatedTestMethod() {
+		return (flags & ANNOTATED_TEST_METHOD) != 0;
+	}
+
+	/**
+	 * @return true if the name of a non-private method starts with "test"
+	 */
+	boolean hasTestNamedMethod() {
+		return (flags & TEST_NAMED_METHOD) != 0;
+	}
+
+	boolean hasNonPrivateConstructor() {
+		return (flags & NON_PRIVATE_CONSTRUCTOR) != 0;
+	}
+
+	/**
+	 * @return true if there's a public constructor that takes no arguments, or
+	 *         just the name of the test
+	 */
+	boolean hasJUnitConstructor() {
+		return (flags & JUNIT_CONSTRUCTOR) != 0;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
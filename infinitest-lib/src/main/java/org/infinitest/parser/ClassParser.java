@@ -29,4 +29,10 @@ interface ClassParser {
 	JavaClass parse(File file) throws IOException;
 
 	void clear();
+
+	/**
+	 * Releases everything the parser holds on to. It's not used again
+	 * afterwards.
+	 */
+	void close();
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+/**
+ * The ways class files can be parsed when building the dependency index.
+ */
+public enum ClassParserType {
+	/**
+	 * Builds a Javassist class model for each class. This is the default.
+	 */
+	JAVASSIST {
+		@Override
+		ClassParser createParser(String classpath) {
+			return new JavaAssistClassParser(classpath);
+		}
+	},
+
+	/**
+	 * Scans the constant pool and attributes of each class file directly,
+	 * which is faster and allocates much less.
+	 */
+	CONSTANT_POOL {
+		@Override
+		ClassParser createParser(String classpath) {
+			return new ConstantPoolClassParser(classpath);
+		}
+	};
+
+	abstract ClassParser createParser(String classpath);
+}
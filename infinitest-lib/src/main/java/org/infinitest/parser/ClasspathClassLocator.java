@@ -0,0 +1,135 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.base.Splitter.*;
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static java.io.File.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.parser.LibraryClassCache.LibraryJar;
+
+/**
+ * Finds class files in the directories of a classpath, and the outlines of
+ * classes in its jars and the JDK.
+ */
+class ClasspathClassLocator {
+	private final List<File> directories;
+	private final List<File> jarFiles;
+	private final LibraryClassCache libraryCache;
+	private final Map<File, Long> jarTimestamps;
+	private List<LibraryJar> openJars;
+
+	ClasspathClassLocator(String classpath) {
+		this(classpath, LibraryClassCache.getSharedCache());
+	}
+
+	ClasspathClassLocator(String classpath, LibraryClassCache libraryCache) {
+		this.libraryCache = libraryCache;
+		directories = newArrayList();
+		jarFiles = newArrayList();
+		jarTimestamps = newHashMap();
+		for (String each : on(pathSeparator).omitEmptyStrings().split(classpath)) {
+			File entry = new File(each);
+			if (entry.isDirectory()) {
+				directories.add(entry);
+			} else {
+				// Missing entries are remembered too, so they're noticed when
+				// they show up
+				jarFiles.add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Finds the class file for a class in one of the classpath directories.
+	 * 
+	 * @return The class file, or null if the class is in a jar or can't be
+	 *         found.
+	 */
+	File findClassFile(String className) {
+		String path = className.replace('.', separatorChar) + ".class";
+		for (File each : directories) {
+			File classFile = new File(each, path);
+			if (classFile.isFile()) {
+				return classFile;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds a class in the jars on the classpath, or failing that on the
+	 * classpath of the JDK. Outlines are shared with other locators through the
+	 * {@link LibraryClassCache}.
+	 * 
+	 * @return The outline of the class, or null if it can't be found
+	 */
+	ClassOutline findLibraryClass(String className) {
+		for (LibraryJar each : getOpenJars()) {
+			ClassOutline outline = libraryCache.find(each, className);
+			if (outline != null) {
+				return outline;
+			}
+		}
+		return libraryCache.findSystemClass(className);
+	}
+
+	private List<LibraryJar> getOpenJars() {
+		if (openJars == null) {
+			openJars = newArrayList();
+			for (File each : jarFiles) {
+				jarTimestamps.put(each, each.lastModified());
+				if (each.isFile()) {
+					openJars.add(libraryCache.acquire(each));
+				}
+			}
+		}
+		return openJars;
+	}
+
+	/**
+	 * @return true if a jar has changed, been added or been removed since
+	 *         the jars were opened
+	 */
+	boolean librariesChanged() {
+		for (Map.Entry<File, Long> each : jarTimestamps.entrySet()) {
+			if (each.getKey().lastModified() != each.getValue()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void close() {
+		if (openJars != null) {
+			for (LibraryJar each : openJars) {
+				libraryCache.release(each);
+			}
+			openJars = null;
+			jarTimestamps.clear();
+		}
+	}
+}
@@ -0,0 +1,499 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Sets.*;
+
+import java.util.*;
+
+/**
+ * The strongly connected components of a {@link DependencyGraph}, with the
+ * set of test classes that depend on each component cached as a bit set over
+ * dense test indexes.
+ * 
+ * It's kept up to date as the graph changes rather than rebuilt. Components
+ * that lose a class or an edge between their own classes are split again,
+ * new edges that close a cycle merge the components on it, and only the
+ * components whose tests or parents changed forget their cached tests, along
+ * with the components they depend on, since those include the same tests.
+ */
+class CondensedGraph {
+	private static final Component[] NO_COMPONENTS = new Component[0];
+
+	private Component[] componentOf;
+	private int[] testIndexOf;
+	private int[] testIds;
+	private int testIndexCount;
+	private int[] freeTestIndexes;
+	private int freeTestIndexCount;
+	private int[] localIndex;
+	private int traversal;
+
+	CondensedGraph(int idCount, JavaClass[] vertices, int[][] parents, int[] parentCounts) {
+		componentOf = new Component[0];
+		testIndexOf = new int[0];
+		localIndex = new int[0];
+		testIds = new int[16];
+		freeTestIndexes = new int[16];
+		ensureCapacity(idCount);
+
+		Component everything = new Component();
+		int[] ids = new int[idCount];
+		int count = 0;
+		for (int id = 0; id < idCount; id++) {
+			if (vertices[id] != null) {
+				componentOf[id] = everything;
+				ids[count++] = id;
+				updateTestIndex(id, vertices[id]);
+			}
+		}
+		for (Component each : findComponents(ids, count, everything, parents, parentCounts)) {
+			rebuildParents(each, parents, parentCounts);
+		}
+	}
+
+	static long edge(int parentId, int childId) {
+		return ((long) parentId << 32) | childId;
+	}
+
+	/**
+	 * Brings the components up to date with the graph.
+	 * 
+	 * @param changedClasses
+	 *            The ids of the classes that were added, removed or became or
+	 *            stopped being tests
+	 * @param edgeChanges
+	 *            The net number of times each edge was added, keyed by
+	 *            {@link #edge(int, int)}; negative for removed edges
+	 */
+	void update(int idCount, JavaClass[] vertices, int[][] parents, int[] parentCounts, BitSet changedClasses, Map<Long, Integer> edgeChanges) {
+		ensureCapacity(idCount);
+		Set<Component> split = newLinkedHashSet();
+		Set<Component> changed = newLinkedHashSet();
+		for (int id = changedClasses.nextSetBit(0); id >= 0; id = changedClasses.nextSetBit(id + 1)) {
+			Component component = componentOf[id];
+			if ((component == null) && (vertices[id] != null)) {
+				Component added = new Component();
+				added.addMember(id);
+				componentOf[id] = added;
+				changed.add(added);
+			} else if ((component != null) && (vertices[id] == null)) {
+				split.add(component);
+			} else if (component != null) {
+				changed.add(component);
+			}
+			updateTestIndex(id, vertices[id]);
+		}
+		List<Long> addedEdges = new ArrayList<Long>();
+		for (Map.Entry<Long, Integer> each : edgeChanges.entrySet()) {
+			if (each.getValue() != 0) {
+				Component parentComponent = componentOf[parentOf(each.getKey())];
+				Component childComponent = componentOf[childOf(each.getKey())];
+				if ((parentComponent == childComponent) && (each.getValue() < 0)) {
+					split.add(childComponent);
+				} else if (childComponent != null) {
+					changed.add(childComponent);
+				}
+				if (each.getValue() > 0) {
+					addedEdges.add(each.getKey());
+				}
+			}
+		}
+
+		for (Component each : split) {
+			changed.addAll(splitComponent(each, vertices, parents, parentCounts));
+		}
+		for (Component each : changed) {
+			if (!each.isRemoved()) {
+				rebuildParents(each, parents, parentCounts);
+			}
+		}
+		for (long each : addedEdges) {
+			Component parentComponent = componentOf[parentOf(each)];
+			Component childComponent = componentOf[childOf(each)];
+			if ((parentComponent != null) && (childComponent != null) && (parentComponent != childComponent)) {
+				changed.addAll(mergeCycle(parentComponent, childComponent, parents, parentCounts));
+			}
+		}
+		forgetReachableTests(changed);
+	}
+
+	private static int parentOf(long edge) {
+		return (int) (edge >>> 32);
+	}
+
+	private static int childOf(long edge) {
+		return (int) edge;
+	}
+
+	private void ensureCapacity(int idCount) {
+		if (idCount > componentOf.length) {
+			int capacity = Math.max(idCount, componentOf.length * 2);
+			Component[] newComponentOf = new Component[capacity];
+			System.arraycopy(componentOf, 0, newComponentOf, 0, componentOf.length);
+			componentOf = newComponentOf;
+			int[] newTestIndexOf = copyOf(testIndexOf, capacity);
+			Arrays.fill(newTestIndexOf, testIndexOf.length, capacity, -1);
+			testIndexOf = newTestIndexOf;
+			localIndex = new int[capacity];
+		}
+	}
+
+	private void updateTestIndex(int id, JavaClass javaClass) {
+		boolean isATest = (javaClass != null) && javaClass.isATest();
+		if (isATest && (testIndexOf[id] == -1)) {
+			int testIndex;
+			if (freeTestIndexCount > 0) {
+				testIndex = freeTestIndexes[--freeTestIndexCount];
+			} else {
+				testIndex = testIndexCount++;
+				testIds = push(testIds, testIndex, 0);
+			}
+			testIds[testIndex] = id;
+			testIndexOf[id] = testIndex;
+		} else if (!isATest && (testIndexOf[id] != -1)) {
+			// Every cached set that has this index belongs to the class's
+			// component or one it depends on, and those are forgotten
+			freeTestIndexes = push(freeTestIndexes, freeTestIndexCount++, testIndexOf[id]);
+			testIndexOf[id] = -1;
+		}
+	}
+
+	// Splits a component that lost a class or an internal edge into the
+	// components of what's left of it. Returns the new components and the
+	// ones whose parents included it.
+	private List<Component> splitComponent(Component component, JavaClass[] vertices, int[][] parents, int[] parentCounts) {
+		int[] ids = new int[component.memberCount];
+		int count = 0;
+		for (int i = 0; i < component.memberCount; i++) {
+			int id = component.members[i];
+			if (vertices[id] == null) {
+				componentOf[id] = null;
+			} else {
+				ids[count++] = id;
+			}
+		}
+		List<Component> changed = new ArrayList<Component>(findComponents(ids, count, component, parents, parentCounts));
+		changed.addAll(remove(component));
+		return changed;
+	}
+
+	// Tarjan's algorithm over the given classes, with an explicit stack so long
+	// dependency chains can't overflow the call stack. Only follows edges to
+	// classes that are still in the scope component.
+	private List<Component> findComponents(int[] ids, int count, Component scope, int[][] parents, int[] parentCounts) {
+		for (int i = 0; i < count; i++) {
+			localIndex[ids[i]] = i;
+		}
+		int[] index = new int[count];
+		Arrays.fill(index, -1);
+		int[] lowLink = new int[count];
+		int[] edgePosition = new int[count];
+		boolean[] onStack = new boolean[count];
+		int[] componentStack = new int[count];
+		int componentStackSize = 0;
+		int[] callStack = new int[count];
+		int callStackSize = 0;
+		int nextIndex = 0;
+		List<Component> components = new ArrayList<Component>();
+
+		for (int root = 0; root < count; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+			index[root] = lowLink[root] = nextIndex++;
+			componentStack[componentStackSize++] = root;
+			onStack[root] = true;
+			callStack[callStackSize++] = root;
+			while (callStackSize > 0) {
+				int vertex = callStack[callStackSize - 1];
+				int id = ids[vertex];
+				if (edgePosition[vertex] < parentCounts[id]) {
+					int parentId = parents[id][edgePosition[vertex]++];
+					if (componentOf[parentId] != scope) {
+						continue;
+					}
+					int parent = localIndex[parentId];
+					if (index[parent] == -1) {
+						index[parent] = lowLink[parent] = nextIndex++;
+						componentStack[componentStackSize++] = parent;
+						onStack[parent] = true;
+						callStack[callStackSize++] = parent;
+					} else if (onStack[parent]) {
+						lowLink[vertex] = Math.min(lowLink[vertex], index[parent]);
+					}
+				} else {
+					callStackSize--;
+					if (lowLink[vertex] == index[vertex]) {
+						Component component = new Component();
+						int member;
+						do {
+							member = componentStack[--componentStackSize];
+							onStack[member] = false;
+							component.addMember(ids[member]);
+							componentOf[ids[member]] = component;
+						} while (member != vertex);
+						components.add(component);
+					}
+					if (callStackSize > 0) {
+						int caller = callStack[callStackSize - 1];
+						lowLink[caller] = Math.min(lowLink[caller], lowLink[vertex]);
+					}
+				}
+			}
+		}
+		return components;
+	}
+
+	// If the edge from a class in the parent component to a class in the child
+	// component closed a cycle, merges every component on it. Returns the
+	// changed components.
+	private List<Component> mergeCycle(Component parentComponent, Component childComponent, int[][] parents, int[] parentCounts) {
+		// The cycle goes from the parent component up through the classes that
+		// depend on it and back to the child component
+		int dependents = ++traversal;
+		List<Component> stack = new ArrayList<Component>();
+		parentComponent.visited = dependents;
+		stack.add(parentComponent);
+		while (!stack.isEmpty()) {
+			Component component = stack.remove(stack.size() - 1);
+			for (int i = 0; i < component.parentCount; i++) {
+				Component parent = component.parents[i];
+				if (parent.visited != dependents) {
+					parent.visited = dependents;
+					stack.add(parent);
+				}
+			}
+		}
+		if (childComponent.visited != dependents) {
+			return Collections.emptyList();
+		}
+
+		int onCycle = ++traversal;
+		List<Component> cycle = new ArrayList<Component>();
+		childComponent.visited = onCycle;
+		stack.add(childComponent);
+		while (!stack.isEmpty()) {
+			Component component = stack.remove(stack.size() - 1);
+			cycle.add(component);
+			for (int i = 0; i < component.childCount; i++) {
+				Component child = component.children[i];
+				if (child.visited == dependents) {
+					child.visited = onCycle;
+					stack.add(child);
+				}
+			}
+		}
+
+		Component merged = new Component();
+		for (Component each : cycle) {
+			for (int i = 0; i < each.memberCount; i++) {
+				merged.addMember(each.members[i]);
+				componentOf[each.members[i]] = merged;
+			}
+		}
+		Set<Component> changed = newLinkedHashSet();
+		changed.add(merged);
+		for (Component each : cycle) {
+			changed.addAll(remove(each));
+		}
+		for (Component each : changed) {
+			if (!each.isRemoved()) {
+				rebuildParents(each, parents, parentCounts);
+			}
+		}
+		return new ArrayList<Component>(changed);
+	}
+
+	// Unlinks a component that has been split or merged, and returns the
+	// components whose parents included it
+	private List<Component> remove(Component component) {
+		for (int i = 0; i < component.parentCount; i++) {
+			component.parents[i].removeChild(component);
+		}
+		List<Component> children = new ArrayList<Component>(component.childCount);
+		for (int i = 0; i < component.childCount; i++) {
+			children.add(component.children[i]);
+		}
+		component.memberCount = 0;
+		component.parentCount = 0;
+		component.childCount = 0;
+		return children;
+	}
+
+	private void rebuildParents(Component component, int[][] parents, int[] parentCounts) {
+		for (int i = 0; i < component.parentCount; i++) {
+			component.parents[i].removeChild(component);
+		}
+		component.parentCount = 0;
+		int seen = ++traversal;
+		for (int i = 0; i < component.memberCount; i++) {
+			int id = component.members[i];
+			for (int j = 0; j < parentCounts[id]; j++) {
+				Component parent = componentOf[parents[id][j]];
+				if ((parent != component) && (parent.visited != seen)) {
+					parent.visited = seen;
+					component.addParent(parent);
+					parent.addChild(component);
+				}
+			}
+		}
+	}
+
+	// A cached set is only kept while the sets of all the components it was
+	// built from are, so the walk can stop at components that have none
+	private void forgetReachableTests(Collection<Component> changed) {
+		List<Component> stack = new ArrayList<Component>();
+		for (Component each : changed) {
+			if (!each.isRemoved()) {
+				each.reachableTests = null;
+				stack.add(each);
+			}
+		}
+		while (!stack.isEmpty()) {
+			Component component = stack.remove(stack.size() - 1);
+			for (int i = 0; i < component.childCount; i++) {
+				Component child = component.children[i];
+				if (child.reachableTests != null) {
+					child.reachableTests = null;
+					stack.add(child);
+				}
+			}
+		}
+	}
+
+	int testId(int testIndex) {
+		return testIds[testIndex];
+	}
+
+	/**
+	 * Finds the tests that depend on any of the given classes, directly or
+	 * transitively, including the classes themselves if they're tests.
+	 * 
+	 * @return The dense indexes of the tests; see {@link #testId(int)}
+	 */
+	BitSet findReachableTests(int[] classIds, int classCount) {
+		BitSet tests = new BitSet(testIndexCount);
+		for (int i = 0; i < classCount; i++) {
+			tests.or(reachableTestsOf(componentOf[classIds[i]]));
+		}
+		return tests;
+	}
+
+	// Fills in the uncached components the given one depends on, each after
+	// all of its parents. The components form a DAG, so a component can't be
+	// reached again while it's still on the stack.
+	private BitSet reachableTestsOf(Component root) {
+		if (root.reachableTests == null) {
+			List<Component> stack = new ArrayList<Component>();
+			root.nextParent = 0;
+			stack.add(root);
+			while (!stack.isEmpty()) {
+				Component component = stack.get(stack.size() - 1);
+				if (component.nextParent < component.parentCount) {
+					Component parent = component.parents[component.nextParent++];
+					if (parent.reachableTests == null) {
+						parent.nextParent = 0;
+						stack.add(parent);
+					}
+				} else {
+					stack.remove(stack.size() - 1);
+					BitSet tests = new BitSet();
+					for (int i = 0; i < component.memberCount; i++) {
+						int testIndex = testIndexOf[component.members[i]];
+						if (testIndex != -1) {
+							tests.set(testIndex);
+						}
+					}
+					for (int i = 0; i < component.parentCount; i++) {
+						tests.or(component.parents[i].reachableTests);
+					}
+					component.reachableTests = tests;
+				}
+			}
+		}
+		return root.reachableTests;
+	}
+
+	private static int[] push(int[] stack, int index, int value) {
+		int[] result = stack;
+		if (index >= stack.length) {
+			result = copyOf(stack, stack.length * 2);
+		}
+		result[index] = value;
+		return result;
+	}
+
+	private static int[] copyOf(int[] array, int length) {
+		int[] result = new int[length];
+		System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+		return result;
+	}
+
+	private static class Component {
+		int[] members = new int[1];
+		int memberCount;
+		Component[] parents = NO_COMPONENTS;
+		int parentCount;
+		Component[] children = NO_COMPONENTS;
+		int childCount;
+		BitSet reachableTests;
+		int nextParent;
+		int visited;
+
+		void addMember(int id) {
+			members = push(members, memberCount++, id);
+		}
+
+		void addParent(Component parent) {
+			parents = append(parents, parentCount++, parent);
+		}
+
+		void addChild(Component child) {
+			children = append(children, childCount++, child);
+		}
+
+		void removeChild(Component child) {
+			for (int i = 0; i < childCount; i++) {
+				if (children[i] == child) {
+					children[i] = children[--childCount];
+					children[childCount] = null;
+					return;
+				}
+			}
+		}
+
+		boolean isRemoved() {
+			return memberCount == 0;
+		}
+
+		private static Component[] append(Component[] array, int index, Component value) {
+			Component[] result = array;
+			if (index >= array.length) {
+				result = new Component[Math.max(2, array.length * 2)];
+				System.arraycopy(array, 0, result, 0, array.length);
+			}
+			result[index] = value;
+			return result;
+		}
+	}
+}
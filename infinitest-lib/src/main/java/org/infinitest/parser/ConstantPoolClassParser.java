@@ -0,0 +1,573 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Sets.*;
+import static org.infinitest.parser.DescriptorParser.*;
+import static org.infinitest.util.ClassNames.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reads the dependencies and test-ness of a class straight from the bytes of
+ * its class file, in a single pass, without building a class model. The bytes
+ * are read into a buffer that is reused from one class to the next, so
+ * instances are not thread safe.
+ */
+public class ConstantPoolClassParser implements ClassParser {
+	private static final int MAGIC = 0xCAFEBABE;
+
+	private static final int ACC_PUBLIC = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_INTERFACE = 0x0200;
+	private static final int ACC_ABSTRACT = 0x0400;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_HANDLE = 15;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+
+	private static final String VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+	private static final String INVISIBLE_ANNOTATIONS = "RuntimeInvisibleAnnotations";
+	private static final String VISIBLE_PARAMETER_ANNOTATIONS = "RuntimeVisibleParameterAnnotations";
+	private static final String INVISIBLE_PARAMETER_ANNOTATIONS = "RuntimeInvisibleParameterAnnotations";
+	private static final String SIGNATURE = "Signature";
+	private static final String CONSTANT_VALUE = "ConstantValue";
+	private static final String EXCEPTIONS = "Exceptions";
+
+	private static final String RUN_WITH = "org.junit.runner.RunWith";
+	private static final String JUNIT_TEST = "org.junit.Test";
+	private static final String TESTNG_TEST = "org.testng.annotations.Test";
+
+	private final ClasspathClassLocator locator;
+	private final ClassHierarchyCache hierarchy;
+
+	private byte[] buffer = new byte[8192];
+	private int length;
+	private int position;
+	private int[] constantOffsets = new int[256];
+	private String[] utf8Cache = new String[256];
+	private char[] charBuffer = new char[256];
+
+	public ConstantPoolClassParser(String classpath) {
+		this(new ClasspathClassLocator(classpath));
+	}
+
+	private ConstantPoolClassParser(final ClasspathClassLocator locator) {
+		this.locator = locator;
+		hierarchy = new ClassHierarchyCache(new ClassHierarchyCache.ProjectClasses() {
+			public ClassOutline find(String className) {
+				return readProjectClass(className);
+			}
+		}, locator);
+	}
+
+	/**
+	 * Reads the outline of a class file, for classes outside the class
+	 * directories.
+	 */
+	static ClassOutline readOutline(InputStream input, String source) throws IOException {
+		ConstantPoolClassParser parser = new ConstantPoolClassParser((ClasspathClassLocator) null);
+		parser.read(input, -1, source);
+		return parser.scan(null, source).outline();
+	}
+
+	public JavaClass getClass(String className) {
+		File classFile = locator.findClassFile(className);
+		if (classFile == null) {
+			// Classes outside the class directories never make it into the
+			// index, so there's no point parsing them
+			return new UnparsableClass(className);
+		}
+		try {
+			return parse(classFile);
+		} catch (IOException e) {
+			return new UnparsableClass(className);
+		}
+	}
+
+	public JavaClass parse(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			read(input, (int) file.length(), file.getPath());
+		} finally {
+			input.close();
+		}
+		ClassSummary summary = scan(new HashSet<String>(), file.getPath());
+		return new ScannedClass(canonicalName(summary.name), canonicalNames(summary.imports), isATest(summary), file, summary.fingerprint.get(), summary.resourceReferences);
+	}
+
+	public void clear() {
+		hierarchy.forgetProjectClasses();
+		if (locator.librariesChanged()) {
+			hierarchy.forgetLibraryClasses();
+			locator.close();
+		}
+	}
+
+	public void close() {
+		hierarchy.forgetProjectClasses();
+		hierarchy.forgetLibraryClasses();
+		locator.close();
+	}
+
+	private boolean isATest(ClassSummary summary) {
+		return hierarchy.isATest(summary.outline());
+	}
+
+	private ClassOutline readProjectClass(String className) {
+		File classFile = locator.findClassFile(className);
+		if (classFile == null) {
+			return null;
+		}
+		try {
+			InputStream input = new FileInputStream(classFile);
+			try {
+				read(input, (int) classFile.length(), classFile.getPath());
+			} finally {
+				input.close();
+			}
+			return scan(null, classFile.getPath()).outline();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void read(InputStream input, int expectedLength, String source) throws IOException {
+		if (expectedLength > buffer.length) {
+			buffer = new byte[expectedLength];
+		}
+		length = 0;
+		int count;
+		while ((count = input.read(buffer, length, buffer.length - length)) != -1) {
+			length += count;
+			if (length == buffer.length) {
+				byte[] larger = new byte[buffer.length * 2];
+				System.arraycopy(buffer, 0, larger, 0, length);
+				buffer = larger;
+			}
+		}
+		if (length < 10) {
+			throw new MalformedClassFileException(source);
+		}
+	}
+
+	/**
+	 * Scans the class in the buffer. Dependencies and the API fingerprint are
+	 * only collected if imports is not null.
+	 */
+	private ClassSummary scan(Set<String> imports, String source) throws IOException {
+		try {
+			position = 0;
+			if (readInt() != MAGIC) {
+				throw new MalformedClassFileException(source);
+			}
+			position += 4; // minor and major version
+			List<String> stringConstants = readConstantPool(imports);
+
+			ClassSummary summary = new ClassSummary();
+			summary.imports = imports;
+			summary.resourceReferences = ResourceReferences.findResourcePaths(stringConstants);
+			if (imports != null) {
+				summary.fingerprint = new ApiFingerprint();
+			}
+			int access = readUnsignedShort();
+			summary.isAbstract = (access & (ACC_ABSTRACT | ACC_INTERFACE)) != 0;
+			summary.name = className(readUnsignedShort());
+			int superIndex = readUnsignedShort();
+			summary.superName = superIndex == 0 ? null : className(superIndex);
+			int interfaceCount = readUnsignedShort();
+			List<String> interfaces = new ArrayList<String>(interfaceCount);
+			for (int i = 0; i < interfaceCount; i++) {
+				interfaces.add(className(readUnsignedShort()));
+			}
+
+			readFields(summary);
+			readMethods(summary);
+			readClassAttributes(summary, access, interfaces);
+			if (position > length) {
+				throw new MalformedClassFileException(source);
+			}
+			return summary;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new MalformedClassFileException(source);
+		}
+	}
+
+	/**
+	 * @return The string constants, if imports are being collected
+	 */
+	private List<String> readConstantPool(Set<String> imports) throws IOException {
+		int count = readUnsignedShort();
+		if (count > constantOffsets.length) {
+			constantOffsets = new int[count];
+			utf8Cache = new String[count];
+		} else {
+			Arrays.fill(utf8Cache, 0, count, null);
+		}
+		int[] classIndexes = new int[count];
+		int classCount = 0;
+		int[] stringIndexes = new int[count];
+		int stringCount = 0;
+		for (int i = 1; i < count; i++) {
+			int tag = buffer[position++];
+			constantOffsets[i] = position;
+			switch (tag) {
+			case CONSTANT_UTF8:
+				int utf8Length = readUnsignedShort();
+				position += utf8Length;
+				break;
+			case CONSTANT_CLASS:
+				classIndexes[classCount++] = readUnsignedShort();
+				break;
+			case CONSTANT_STRING:
+				stringIndexes[stringCount++] = readUnsignedShort();
+				break;
+			case CONSTANT_METHOD_TYPE:
+			case CONSTANT_MODULE:
+			case CONSTANT_PACKAGE:
+				position += 2;
+				break;
+			case CONSTANT_METHOD_HANDLE:
+				position += 3;
+				break;
+			case CONSTANT_INTEGER:
+			case CONSTANT_FLOAT:
+			case CONSTANT_FIELDREF:
+			case CONSTANT_METHODREF:
+			case CONSTANT_INTERFACE_METHODREF:
+			case CONSTANT_NAME_AND_TYPE:
+			case CONSTANT_DYNAMIC:
+			case CONSTANT_INVOKE_DYNAMIC:
+				position += 4;
+				break;
+			case CONSTANT_LONG:
+			case CONSTANT_DOUBLE:
+				position += 8;
+				i++;
+				break;
+			default:
+				throw new IOException("Invalid constant pool tag " + tag + " at " + i);
+			}
+		}
+		List<String> strings = new ArrayList<String>();
+		if (imports != null) {
+			for (int i = 0; i < classCount; i++) {
+				addClassReference(utf8(classIndexes[i]), imports);
+			}
+			for (int i = 0; i < stringCount; i++) {
+				strings.add(utf8(stringIndexes[i]));
+			}
+		}
+		return strings;
+	}
+
+	private void addClassReference(String internalName, Set<String> imports) {
+		if (internalName.charAt(0) != '[') {
+			imports.add(internalName.replace('/', '.'));
+		} else {
+			// Arrays depend on their element type, unless it's primitive
+			int elementStart = internalName.lastIndexOf('[') + 1;
+			if (internalName.charAt(elementStart) == 'L') {
+				imports.add(internalName.substring(elementStart + 1, internalName.length() - 1).replace('/', '.'));
+			}
+		}
+	}
+
+	private void readFields(ClassSummary summary) {
+		int fieldCount = readUnsignedShort();
+		for (int i = 0; i < fieldCount; i++) {
+			int access = readUnsignedShort();
+			int nameIndex = readUnsignedShort();
+			String descriptor = utf8(readUnsignedShort());
+			if (summary.imports != null) {
+				summary.imports.add(parseClassNameFromConstantPoolDescriptor(descriptor));
+			}
+			String signature = null;
+			Object constantValue = null;
+			Set<String> annotations = newHashSet();
+			int attributeCount = readUnsignedShort();
+			for (int j = 0; j < attributeCount; j++) {
+				String attributeName = utf8(readUnsignedShort());
+				int end = readInt() + position;
+				if (isAnnotations(attributeName)) {
+					annotations.addAll(readAnnotations(summary.imports));
+				} else if (attributeName.equals(SIGNATURE)) {
+					signature = utf8(readUnsignedShort());
+				} else if (attributeName.equals(CONSTANT_VALUE)) {
+					constantValue = constantValue(readUnsignedShort());
+				}
+				position = end;
+			}
+			if (summary.fingerprint != null) {
+				summary.fingerprint.addField(access, utf8(nameIndex), descriptor, signature, constantValue, annotations);
+			}
+		}
+	}
+
+	private void readMethods(ClassSummary summary) {
+		int methodCount = readUnsignedShort();
+		for (int i = 0; i < methodCount; i++) {
+			int access = readUnsignedShort();
+			String name = utf8(readUnsignedShort());
+			String descriptor = utf8(readUnsignedShort());
+			boolean nonPrivate = (access & ACC_PRIVATE) == 0;
+			if (name.equals("<init>")) {
+				summary.hasNonPrivateConstructor |= nonPrivate;
+				summary.hasJUnitConstructor |= ((access & ACC_PUBLIC) != 0) && isJUnitConstructor(descriptor);
+			} else if (nonPrivate && name.startsWith("test")) {
+				summary.hasTestNamedMethod = true;
+			}
+
+			String signature = null;
+			List<String> exceptions = new ArrayList<String>();
+			Set<String> annotations = newHashSet();
+			int attributeCount = readUnsignedShort();
+			for (int j = 0; j < attributeCount; j++) {
+				String attributeName = utf8(readUnsignedShort());
+				int end = readInt() + position;
+				if (isAnnotations(attributeName)) {
+					annotations.addAll(readAnnotations(summary.imports));
+				} else if (isParameterAnnotations(attributeName)) {
+					int parameterCount = buffer[position++] & 0xFF;
+					for (int k = 0; k < parameterCount; k++) {
+						readAnnotations(summary.imports);
+					}
+				} else if (attributeName.equals(SIGNATURE)) {
+					signature = utf8(readUnsignedShort());
+				} else if (attributeName.equals(EXCEPTIONS)) {
+					int exceptionCount = readUnsignedShort();
+					for (int k = 0; k < exceptionCount; k++) {
+						exceptions.add(className(readUnsignedShort()));
+					}
+				}
+				position = end;
+			}
+			if (nonPrivate && !name.startsWith("<") && isTestAnnotation(annotations)) {
+				summary.hasAnnotatedTestMethod = true;
+			}
+			if (summary.fingerprint != null) {
+				summary.fingerprint.addMethod(access, name, descriptor, signature, exceptions, annotations);
+			}
+		}
+	}
+
+	private void readClassAttributes(ClassSummary summary, int access, List<String> interfaces) {
+		String signature = null;
+		Set<String> classAnnotations = newHashSet();
+		int attributeCount = readUnsignedShort();
+		for (int i = 0; i < attributeCount; i++) {
+			String attributeName = utf8(readUnsignedShort());
+			int end = readInt() + position;
+			if (isAnnotations(attributeName)) {
+				Set<String> annotations = readAnnotations(summary.imports);
+				classAnnotations.addAll(annotations);
+				if (attributeName.equals(VISIBLE_ANNOTATIONS) && annotations.contains(RUN_WITH)) {
+					summary.runWith = true;
+				}
+			} else if (attributeName.equals(SIGNATURE)) {
+				signature = utf8(readUnsignedShort());
+			}
+			position = end;
+		}
+		if (summary.fingerprint != null) {
+			summary.fingerprint.addClass(access, summary.name, summary.superName, interfaces, signature, classAnnotations);
+		}
+	}
+
+	/**
+	 * Reads a constant the same way Javassist's ConstPool.getLdcValue() does,
+	 * so both parsers fingerprint constant fields alike.
+	 */
+	private Object constantValue(int index) {
+		int offset = constantOffsets[index];
+		switch (buffer[offset - 1]) {
+		case CONSTANT_INTEGER:
+			return readInt(offset);
+		case CONSTANT_FLOAT:
+			return Float.intBitsToFloat(readInt(offset));
+		case CONSTANT_LONG:
+			return ((long) readInt(offset) << 32) | (readInt(offset + 4) & 0xFFFFFFFFL);
+		case CONSTANT_DOUBLE:
+			return Double.longBitsToDouble(((long) readInt(offset) << 32) | (readInt(offset + 4) & 0xFFFFFFFFL));
+		case CONSTANT_STRING:
+			return utf8(readUnsignedShort(offset));
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Reads an annotations table, adding the type of each annotation to
+	 * imports (if it isn't null).
+	 * 
+	 * @return The types of the annotations
+	 */
+	private Set<String> readAnnotations(Set<String> imports) {
+		Set<String> annotations = newHashSet();
+		int annotationCount = readUnsignedShort();
+		for (int i = 0; i < annotationCount; i++) {
+			String type = readAnnotation();
+			annotations.add(type);
+			if (imports != null) {
+				imports.add(type);
+			}
+		}
+		return annotations;
+	}
+
+	private String readAnnotation() {
+		String descriptor = utf8(readUnsignedShort());
+		int pairCount = readUnsignedShort();
+		for (int i = 0; i < pairCount; i++) {
+			position += 2; // element name
+			skipElementValue();
+		}
+		return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+	}
+
+	private void skipElementValue() {
+		char tag = (char) buffer[position++];
+		switch (tag) {
+		case 'e':
+			position += 4;
+			break;
+		case '@':
+			readAnnotation();
+			break;
+		case '[':
+			int valueCount = readUnsignedShort();
+			for (int i = 0; i < valueCount; i++) {
+				skipElementValue();
+			}
+			break;
+		default:
+			// Constants and class literals are a single index
+			position += 2;
+		}
+	}
+
+	private boolean isJUnitConstructor(String descriptor) {
+		return descriptor.equals("()V") || descriptor.equals("(Ljava/lang/String;)V");
+	}
+
+	private boolean isTestAnnotation(Set<String> annotations) {
+		return annotations.contains(JUNIT_TEST) || annotations.contains(TESTNG_TEST);
+	}
+
+	private boolean isAnnotations(String attributeName) {
+		return attributeName.equals(VISIBLE_ANNOTATIONS) || attributeName.equals(INVISIBLE_ANNOTATIONS);
+	}
+
+	private boolean isParameterAnnotations(String attributeName) {
+		return attributeName.equals(VISIBLE_PARAMETER_ANNOTATIONS) || attributeName.equals(INVISIBLE_PARAMETER_ANNOTATIONS);
+	}
+
+	private String className(int classIndex) {
+		int nameIndex = readUnsignedShort(constantOffsets[classIndex]);
+		return utf8(nameIndex).replace('/', '.');
+	}
+
+	private String utf8(int index) {
+		String value = utf8Cache[index];
+		if (value == null) {
+			value = decodeUtf8(constantOffsets[index]);
+			utf8Cache[index] = value;
+		}
+		return value;
+	}
+
+	// Class files use "modified" UTF-8, which java.nio won't decode
+	private String decodeUtf8(int offset) {
+		int byteCount = readUnsignedShort(offset);
+		if (byteCount > charBuffer.length) {
+			charBuffer = new char[byteCount];
+		}
+		int index = offset + 2;
+		int end = index + byteCount;
+		int charCount = 0;
+		while (index < end) {
+			int b = buffer[index++] & 0xFF;
+			if (b < 0x80) {
+				charBuffer[charCount++] = (char) b;
+			} else if (b < 0xE0) {
+				charBuffer[charCount++] = (char) (((b & 0x1F) << 6) | (buffer[index++] & 0x3F));
+			} else {
+				int c = ((b & 0x0F) << 12) | ((buffer[index++] & 0x3F) << 6);
+				charBuffer[charCount++] = (char) (c | (buffer[index++] & 0x3F));
+			}
+		}
+		return new String(charBuffer, 0, charCount);
+	}
+
+	private int readUnsignedShort() {
+		int value = readUnsignedShort(position);
+		position += 2;
+		return value;
+	}
+
+	private int readUnsignedShort(int offset) {
+		return ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+	}
+
+	private int readInt() {
+		int value = readInt(position);
+		position += 4;
+		return value;
+	}
+
+	private int readInt(int offset) {
+		return (readUnsignedShort(offset) << 16) | readUnsignedShort(offset + 2);
+	}
+
+	private static class ClassSummary {
+		String name;
+		String superName;
+		Set<String> imports;
+		Collection<String> resourceReferences;
+		ApiFingerprint fingerprint;
+		boolean isAbstract;
+		boolean runWith;
+		boolean hasAnnotatedTestMethod;
+		boolean hasTestNamedMethod;
+		boolean hasNonPrivateConstructor;
+		boolean hasJUnitConstructor;
+
+		ClassOutline outline() {
+			return new ClassOutline(name, superName, isAbstract, runWith, hasAnnotatedTestMethod, hasTestNamedMethod, hasNonPrivateConstructor, hasJUnitConstructor);
+		}
+	}
+}
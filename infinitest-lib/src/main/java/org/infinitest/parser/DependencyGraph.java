@@ -0,0 +1,395 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+
+import java.util.*;
+
+/**
+ * A directed graph of class dependencies. Class names are interned to int ids,
+ * and edges in both directions are stored in growable int arrays, one per
+ * class, so a dependency costs two array slots instead of an edge object and
+ * several set entries.
+ * 
+ * An edge goes from a parent (the class that has the import) to a child (the
+ * imported class).
+ * 
+ * Test lookups go through a {@link CondensedGraph}, which is brought up to date
+ * with the classes, tests and edges that have actually changed since the last
+ * lookup. Reloading a class drops and re-adds its edges, so edge changes are
+ * logged and only count if they don't cancel out.
+ * 
+ * The names of the test classes are kept up to date as classes are added,
+ * replaced and removed, once they have been asked for.
+ */
+class DependencyGraph {
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int[] NO_EDGES = new int[0];
+
+	private final Map<String, Integer> ids;
+	private JavaClass[] vertices;
+	private int[][] children;
+	private int[] childCounts;
+	private int[][] parents;
+	private int[] parentCounts;
+	private int idCount;
+	private int vertexCount;
+	private CondensedGraph condensation;
+	private final Map<Long, Integer> pendingEdgeChanges;
+	private final BitSet changedClasses;
+	private boolean rebuildCondensation;
+	private Set<String> testNames;
+
+	DependencyGraph() {
+		ids = newHashMap();
+		pendingEdgeChanges = newHashMap();
+		changedClasses = new BitSet();
+		vertices = new JavaClass[INITIAL_CAPACITY];
+		children = new int[INITIAL_CAPACITY][];
+		childCounts = new int[INITIAL_CAPACITY];
+		parents = new int[INITIAL_CAPACITY][];
+		parentCounts = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Adds a class to the graph. If a class with the same name is already
+	 * present it is replaced: edges from classes that depend on it are kept,
+	 * but its own dependencies are dropped so they can be rebuilt.
+	 */
+	void put(JavaClass javaClass) {
+		int id = intern(javaClass.getName());
+		if (vertices[id] == null) {
+			vertexCount++;
+			logClassChange(id);
+		} else {
+			if (vertices[id].isATest() != javaClass.isATest()) {
+				logClassChange(id);
+			}
+			removeChildEdges(id);
+		}
+		vertices[id] = javaClass;
+		if (testNames != null) {
+			if (javaClass.isATest()) {
+				testNames.add(javaClass.getName());
+			} else {
+				testNames.remove(javaClass.getName());
+			}
+		}
+	}
+
+	/**
+	 * Removes a class along with the edges to and from it. Its id stays
+	 * interned, so the class can be added again later.
+	 */
+	void remove(JavaClass javaClass) {
+		Integer id = ids.get(javaClass.getName());
+		if ((id != null) && (vertices[id] != null)) {
+			removeChildEdges(id);
+			removeParentEdges(id);
+			vertices[id] = null;
+			vertexCount--;
+			logClassChange(id);
+			if (testNames != null) {
+				testNames.remove(javaClass.getName());
+			}
+		}
+	}
+
+	JavaClass get(String className) {
+		Integer id = ids.get(className);
+		if (id == null) {
+			return null;
+		}
+		return vertices[id];
+	}
+
+	boolean contains(String className) {
+		return get(className) != null;
+	}
+
+	int size() {
+		return vertexCount;
+	}
+
+	Set<String> getClassNames() {
+		Set<String> names = newHashSetWithExpectedSize(vertexCount);
+		for (int id = 0; id < idCount; id++) {
+			if (vertices[id] != null) {
+				names.add(vertices[id].getName());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * The names of the classes in the graph that are tests. The first call
+	 * looks at every class, later calls just return the maintained set.
+	 */
+	Set<String> getTestNames() {
+		if (testNames == null) {
+			testNames = newHashSet();
+			for (int id = 0; id < idCount; id++) {
+				if ((vertices[id] != null) && vertices[id].isATest()) {
+					testNames.add(vertices[id].getName());
+				}
+			}
+		}
+		return Collections.unmodifiableSet(testNames);
+	}
+
+	List<JavaClass> getClasses() {
+		List<JavaClass> classes = new ArrayList<JavaClass>(vertexCount);
+		for (int id = 0; id < idCount; id++) {
+			if (vertices[id] != null) {
+				classes.add(vertices[id]);
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * Records that parent depends on child. Both classes must already be in
+	 * the graph.
+	 */
+	void addEdge(JavaClass parent, JavaClass child) {
+		int parentId = idOf(parent);
+		int childId = idOf(child);
+		if (!containsEdge(parentId, childId)) {
+			children[parentId] = append(children[parentId], childCounts[parentId]++, childId);
+			parents[childId] = append(parents[childId], parentCounts[childId]++, parentId);
+			logEdgeChange(parentId, childId, 1);
+		}
+	}
+
+	List<JavaClass> getParents(JavaClass child) {
+		int childId = idOf(child);
+		return toClasses(parents[childId], parentCounts[childId]);
+	}
+
+	List<JavaClass> getChildren(JavaClass parent) {
+		int parentId = idOf(parent);
+		return toClasses(children[parentId], childCounts[parentId]);
+	}
+
+	private List<JavaClass> toClasses(int[] classIds, int count) {
+		List<JavaClass> result = new ArrayList<JavaClass>(count);
+		for (int i = 0; i < count; i++) {
+			result.add(vertices[classIds[i]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the given classes and every class that depends on them, directly
+	 * or transitively.
+	 */
+	Set<JavaClass> findTransitiveParents(Collection<JavaClass> classes) {
+		BitSet visited = new BitSet(idCount);
+		int[] stack = new int[Math.max(classes.size(), INITIAL_CAPACITY)];
+		int stackSize = 0;
+		Set<JavaClass> result = newHashSet(classes);
+		for (JavaClass each : classes) {
+			Integer id = ids.get(each.getName());
+			if ((id != null) && (vertices[id] != null) && !visited.get(id)) {
+				visited.set(id);
+				stack = append(stack, stackSize++, id);
+			}
+		}
+		while (stackSize > 0) {
+			int id = stack[--stackSize];
+			int[] parentIds = parents[id];
+			for (int i = 0; i < parentCounts[id]; i++) {
+				int parentId = parentIds[i];
+				if (!visited.get(parentId)) {
+					visited.set(parentId);
+					result.add(vertices[parentId]);
+					stack = append(stack, stackSize++, parentId);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the test classes among the given classes and the classes that
+	 * depend on them, directly or transitively. Unlike
+	 * {@link #findTransitiveParents(Collection)} the answer comes from cached
+	 * bit sets, so its cost depends on the number of changed classes rather
+	 * than the size of the graph.
+	 */
+	Set<JavaClass> findTransitiveParentTests(Collection<JavaClass> classes) {
+		if ((condensation == null) || rebuildCondensation) {
+			condensation = new CondensedGraph(idCount, vertices, parents, parentCounts);
+			rebuildCondensation = false;
+		} else if (hasPendingChanges()) {
+			condensation.update(idCount, vertices, parents, parentCounts, changedClasses, pendingEdgeChanges);
+		}
+		pendingEdgeChanges.clear();
+		changedClasses.clear();
+		int[] classIds = new int[classes.size()];
+		int classCount = 0;
+		for (JavaClass each : classes) {
+			Integer id = ids.get(each.getName());
+			if ((id != null) && (vertices[id] != null)) {
+				classIds[classCount++] = id;
+			}
+		}
+		BitSet testIndexes = condensation.findReachableTests(classIds, classCount);
+		Set<JavaClass> tests = newHashSetWithExpectedSize(testIndexes.cardinality());
+		for (int i = testIndexes.nextSetBit(0); i >= 0; i = testIndexes.nextSetBit(i + 1)) {
+			tests.add(vertices[condensation.testId(i)]);
+		}
+		return tests;
+	}
+
+	private boolean hasPendingChanges() {
+		if (!changedClasses.isEmpty()) {
+			return true;
+		}
+		for (int each : pendingEdgeChanges.values()) {
+			if (each != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// Once the condensation is going to be rebuilt there's no point logging
+	private boolean isTracking() {
+		return (condensation != null) && !rebuildCondensation;
+	}
+
+	private void logClassChange(int id) {
+		if (isTracking()) {
+			changedClasses.set(id);
+		}
+	}
+
+	private void logEdgeChange(int parentId, int childId, int change) {
+		if (isTracking()) {
+			Long edge = CondensedGraph.edge(parentId, childId);
+			Integer count = pendingEdgeChanges.get(edge);
+			pendingEdgeChanges.put(edge, count == null ? change : count + change);
+			// A log this big means most of the graph is changing anyway
+			if (pendingEdgeChanges.size() > idCount) {
+				rebuildCondensation = true;
+				pendingEdgeChanges.clear();
+				changedClasses.clear();
+			}
+		}
+	}
+
+	private int idOf(JavaClass javaClass) {
+		Integer id = ids.get(javaClass.getName());
+		if ((id == null) || (vertices[id] == null)) {
+			throw new IllegalArgumentException(javaClass.getName() + " is not in the dependency graph");
+		}
+		return id;
+	}
+
+	private int intern(String className) {
+		Integer id = ids.get(className);
+		if (id == null) {
+			id = idCount++;
+			ensureCapacity(idCount);
+			ids.put(className, id);
+			children[id] = NO_EDGES;
+			parents[id] = NO_EDGES;
+		}
+		return id;
+	}
+
+	private boolean containsEdge(int parentId, int childId) {
+		int[] childIds = children[parentId];
+		for (int i = 0; i < childCounts[parentId]; i++) {
+			if (childIds[i] == childId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void removeChildEdges(int parentId) {
+		for (int i = 0; i < childCounts[parentId]; i++) {
+			int childId = children[parentId][i];
+			parentCounts[childId] = remove(parents[childId], parentCounts[childId], parentId);
+			logEdgeChange(parentId, childId, -1);
+		}
+		childCounts[parentId] = 0;
+		children[parentId] = NO_EDGES;
+	}
+
+	private void removeParentEdges(int childId) {
+		for (int i = 0; i < parentCounts[childId]; i++) {
+			int parentId = parents[childId][i];
+			childCounts[parentId] = remove(children[parentId], childCounts[parentId], childId);
+			logEdgeChange(parentId, childId, -1);
+		}
+		parentCounts[childId] = 0;
+		parents[childId] = NO_EDGES;
+	}
+
+	private static int remove(int[] array, int size, int value) {
+		for (int i = 0; i < size; i++) {
+			if (array[i] == value) {
+				array[i] = array[size - 1];
+				return size - 1;
+			}
+		}
+		return size;
+	}
+
+	private static int[] append(int[] array, int index, int value) {
+		int[] result = array;
+		if (index >= array.length) {
+			result = new int[Math.max(4, array.length * 2)];
+			System.arraycopy(array, 0, result, 0, array.length);
+		}
+		result[index] = value;
+		return result;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > vertices.length) {
+			int newCapacity = vertices.length * 2;
+			JavaClass[] newVertices = new JavaClass[newCapacity];
+			System.arraycopy(vertices, 0, newVertices, 0, vertices.length);
+			vertices = newVertices;
+			int[][] newChildren = new int[newCapacity][];
+			System.arraycopy(children, 0, newChildren, 0, children.length);
+			children = newChildren;
+			int[][] newParents = new int[newCapacity][];
+			System.arraycopy(parents, 0, newParents, 0, parents.length);
+			parents = newParents;
+			childCounts = grow(childCounts, newCapacity);
+			parentCounts = grow(parentCounts, newCapacity);
+		}
+	}
+
+	private static int[] grow(int[] array, int newCapacity) {
+		int[] result = new int[newCapacity];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+}
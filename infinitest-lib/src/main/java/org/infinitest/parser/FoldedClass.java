@@ -0,0 +1,172 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A class indexed together with the inner, anonymous and synthetic classes
+ * compiled alongside it, like {@code Outer$Inner}, {@code Outer$1} or
+ * Scala's {@code Outer$$anonfun$1}. It depends on everything they depend on.
+ * 
+ * Folded classes are immutable, so the dependency graph can tell when one has
+ * been replaced. Unlike other classes they keep their imports after being
+ * disposed, because the imports of every member are needed to rebuild the
+ * node's edges when one of them changes.
+ */
+class FoldedClass extends AbstractJavaClass {
+	private final String name;
+	private final JavaClass outerClass;
+	private final Map<String, JavaClass> innerClasses;
+	private final Map<String, Collection<String>> importsByClass;
+
+	/**
+	 * @param outerClass
+	 *            The outer class, or null if it hasn't been indexed
+	 * @param outerImports
+	 *            The imports of the outer class
+	 */
+	FoldedClass(String name, JavaClass outerClass, Collection<String> outerImports) {
+		this(name, outerClass, new LinkedHashMap<String, JavaClass>(), new HashMap<String, Collection<String>>());
+		if (outerClass != null) {
+			importsByClass.put(name, outerImports);
+		}
+	}
+
+	private FoldedClass(String name, JavaClass outerClass, Map<String, JavaClass> innerClasses, Map<String, Collection<String>> importsByClass) {
+		this.name = name;
+		this.outerClass = outerClass;
+		this.innerClasses = innerClasses;
+		this.importsByClass = importsByClass;
+	}
+
+	/**
+	 * The name a class is folded into: everything up to the first {@code $}
+	 * in its simple name.
+	 */
+	static String outerClassName(String className) {
+		int simpleNameStart = className.lastIndexOf('.') + 1;
+		int separator = className.indexOf('$', simpleNameStart);
+		if (separator > simpleNameStart) {
+			return className.substring(0, separator);
+		}
+		return className;
+	}
+
+	FoldedClass withOuterClass(JavaClass newOuterClass) {
+		Map<String, Collection<String>> imports = newHashMap(importsByClass);
+		imports.put(name, newArrayList(newOuterClass.getImports()));
+		return new FoldedClass(name, newOuterClass, innerClasses, imports);
+	}
+
+	FoldedClass withInnerClass(JavaClass innerClass) {
+		Map<String, JavaClass> classes = new LinkedHashMap<String, JavaClass>(innerClasses);
+		classes.put(innerClass.getName(), innerClass);
+		Map<String, Collection<String>> imports = newHashMap(importsByClass);
+		imports.put(innerClass.getName(), newArrayList(innerClass.getImports()));
+		return new FoldedClass(name, outerClass, classes, imports);
+	}
+
+	FoldedClass withoutInnerClass(String innerClassName) {
+		Map<String, JavaClass> classes = new LinkedHashMap<String, JavaClass>(innerClasses);
+		classes.remove(innerClassName);
+		Map<String, Collection<String>> imports = newHashMap(importsByClass);
+		imports.remove(innerClassName);
+		return new FoldedClass(name, outerClass, classes, imports);
+	}
+
+	/**
+	 * @return The classes left after removing the ones in the given files, or
+	 *         this class if none of them were in those files
+	 */
+	FoldedClass withoutClassesIn(Set<File> classFiles) {
+		FoldedClass remaining = this;
+		if ((outerClass != null) && classFiles.contains(outerClass.getClassFile().getAbsoluteFile())) {
+			Map<String, Collection<String>> imports = newHashMap(importsByClass);
+			imports.remove(name);
+			remaining = new FoldedClass(name, null, innerClasses, imports);
+		}
+		for (JavaClass each : innerClasses.values()) {
+			if (classFiles.contains(each.getClassFile().getAbsoluteFile())) {
+				remaining = remaining.withoutInnerClass(each.getName());
+			}
+		}
+		return remaining;
+	}
+
+	boolean isEmpty() {
+		return (outerClass == null) && innerClasses.isEmpty();
+	}
+
+	boolean containsInnerClass(String className) {
+		return innerClasses.containsKey(className);
+	}
+
+	/**
+	 * The names of the outer class, if it's been indexed, and the classes
+	 * folded into it.
+	 */
+	Set<String> getClassNames() {
+		Set<String> names = newHashSet(innerClasses.keySet());
+		if (outerClass != null) {
+			names.add(name);
+		}
+		return names;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Collection<String> getImports() {
+		Set<String> imports = newHashSet();
+		for (Collection<String> each : importsByClass.values()) {
+			imports.addAll(each);
+		}
+		return imports;
+	}
+
+	public boolean isATest() {
+		return (outerClass != null) && outerClass.isATest();
+	}
+
+	public boolean locatedInClassFile() {
+		return true;
+	}
+
+	public File getClassFile() {
+		if (outerClass != null) {
+			return outerClass.getClassFile();
+		}
+		return innerClasses.values().iterator().next().getClassFile();
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
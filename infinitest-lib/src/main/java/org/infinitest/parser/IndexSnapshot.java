@@ -0,0 +1,173 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static java.util.Collections.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.ClassNames.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.infinitest.util.StateFiles.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Saves the dependency index to a compact binary file, so it can be restored
+ * without parsing every class file again. The file records a fingerprint of
+ * the classpath it was built with, and is ignored if the classpath changes,
+ * if it was written by a different version of the format, or if it can't be
+ * read.
+ * 
+ * The file is read with a single bulk read rather than memory mapped, because
+ * a mapped file can't be replaced on Windows until the mapping is garbage
+ * collected, and the snapshot is rewritten after updates.
+ * 
+ * Writing is split into encoding the index, which has to be done while nothing
+ * else uses it, and writing the encoded bytes, which doesn't.
+ */
+class IndexSnapshot {
+	private static final int MAGIC = 0x494e4649;
+	private static final int VERSION = 4;
+
+	private final File snapshotFile;
+
+	IndexSnapshot(File snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
+	File getFile() {
+		return snapshotFile;
+	}
+
+	List<SnapshotClass> read(long classpathFingerprint) {
+		if (!snapshotFile.isFile()) {
+			return emptyList();
+		}
+		try {
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(readFully(snapshotFile)));
+			if ((input.readInt() != MAGIC) || (input.readInt() != VERSION) || (input.readLong() != classpathFingerprint)) {
+				log(CONFIG, "Ignoring out of date index snapshot " + snapshotFile);
+				return emptyList();
+			}
+			return readClasses(input);
+		} catch (IOException e) {
+			log(WARNING, "Could not read index snapshot " + snapshotFile + ": " + e.getMessage());
+			return emptyList();
+		}
+	}
+
+	private List<SnapshotClass> readClasses(DataInputStream input) throws IOException {
+		int classCount = input.readInt();
+		List<SnapshotClass> classes = new ArrayList<SnapshotClass>();
+		for (int i = 0; i < classCount; i++) {
+			String name = canonicalName(input.readUTF());
+			File classFile = new File(input.readUTF());
+			ClassFileStamp stamp = new ClassFileStamp(input.readLong(), input.readLong());
+			boolean isATest = input.readBoolean();
+			SnapshotClass snapshotClass = new SnapshotClass(name, classFile, isATest, stamp, input.readLong());
+			int resourceCount = input.readInt();
+			for (int j = 0; j < resourceCount; j++) {
+				snapshotClass.addResourceReference(input.readUTF());
+			}
+			int libraryClassCount = input.readInt();
+			for (int j = 0; j < libraryClassCount; j++) {
+				snapshotClass.addLibraryReference(canonicalName(input.readUTF()));
+			}
+			classes.add(snapshotClass);
+		}
+		for (SnapshotClass each : classes) {
+			int importCount = input.readInt();
+			for (int i = 0; i < importCount; i++) {
+				int childId = input.readInt();
+				if ((childId < 0) || (childId >= classes.size())) {
+					throw new IOException("Corrupt dependency " + childId + " for " + each);
+				}
+				each.addImport(classes.get(childId).getName());
+			}
+		}
+		return classes;
+	}
+
+	void write(ClassFileIndex index, long classpathFingerprint) throws IOException {
+		write(encode(index, classpathFingerprint));
+	}
+
+	byte[] encode(ClassFileIndex index, long classpathFingerprint) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeLong(classpathFingerprint);
+		writeClasses(index, output);
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	void write(byte[] contents) throws IOException {
+		replace(snapshotFile, contents);
+	}
+
+	private void writeClasses(ClassFileIndex index, DataOutputStream output) throws IOException {
+		List<JavaClass> classes = new ArrayList<JavaClass>();
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		for (JavaClass each : index.getClasses()) {
+			if (each.getClassFile() != null) {
+				ids.put(each.getName(), classes.size());
+				classes.add(each);
+			}
+		}
+
+		output.writeInt(classes.size());
+		for (JavaClass each : classes) {
+			ClassFileStamp stamp = index.getStamp(each);
+			output.writeUTF(each.getName());
+			output.writeUTF(each.getClassFile().getPath());
+			output.writeLong(stamp.getLastModified());
+			output.writeLong(stamp.getLength());
+			output.writeBoolean(each.isATest());
+			output.writeLong(ClassFileIndex.apiFingerprintOf(each));
+			Collection<String> resourcePaths = index.getResourceReferences(each);
+			output.writeInt(resourcePaths.size());
+			for (String resourcePath : resourcePaths) {
+				output.writeUTF(resourcePath);
+			}
+			Collection<String> libraryClasses = index.getLibraryReferences(each);
+			output.writeInt(libraryClasses.size());
+			for (String libraryClass : libraryClasses) {
+				output.writeUTF(libraryClass);
+			}
+		}
+		for (JavaClass each : classes) {
+			List<Integer> childIds = new ArrayList<Integer>();
+			for (JavaClass child : index.getDependencies(each)) {
+				Integer childId = ids.get(child.getName());
+				if (childId != null) {
+					childIds.add(childId);
+				}
+			}
+			output.writeInt(childIds.size());
+			for (int childId : childIds) {
+				output.writeInt(childId);
+			}
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+import static java.util.logging.Level.*;
+import static org.infinitest.util.InfinitestUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Remembers the size and CRC of every class in the jars on the classpath, so
+ * the classes that changed when a jar is replaced can be found without
+ * inflating any entries. Both come from the jar's central directory.
+ */
+class JarContentIndex {
+	private final Map<File, JarContents> jars = newHashMap();
+
+	/**
+	 * Compares the jar with the last time it was read.
+	 * 
+	 * @return The names of the classes that were added, removed or changed.
+	 *         Empty the first time a jar is seen, or if its timestamp and
+	 *         length haven't changed.
+	 */
+	Set<String> findChangedClasses(File jarFile) {
+		JarContents oldContents = jars.get(jarFile);
+		if ((oldContents != null) && oldContents.isCurrent(jarFile)) {
+			return Collections.emptySet();
+		}
+		JarContents newContents;
+		try {
+			newContents = JarContents.read(jarFile);
+		} catch (IOException e) {
+			log(WARNING, "Could not read the contents of " + jarFile + ": " + e.getMessage());
+			return Collections.emptySet();
+		}
+		jars.put(jarFile, newContents);
+		if (oldContents == null) {
+			return Collections.emptySet();
+		}
+		return oldContents.diff(newContents);
+	}
+
+	/**
+	 * Forgets a jar that was removed from the disk.
+	 * 
+	 * @return The names of the classes it contained
+	 */
+	Set<String> removeJar(File jarFile) {
+		JarContents oldContents = jars.remove(jarFile);
+		if (oldContents == null) {
+			return Collections.emptySet();
+		}
+		return newHashSet(oldContents.checksums.keySet());
+	}
+
+	void clear() {
+		jars.clear();
+	}
+
+	private static class JarContents {
+		private final long lastModified;
+		private final long length;
+		// The CRC in the low bits and the uncompressed size in the high bits
+		private final Map<String, Long> checksums;
+
+		JarContents(long lastModified, long length, Map<String, Long> checksums) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.checksums = checksums;
+		}
+
+		static JarContents read(File jarFile) throws IOException {
+			long lastModified = jarFile.lastModified();
+			long length = jarFile.length();
+			Map<String, Long> checksums = newHashMap();
+			ZipFile zipFile = new ZipFile(jarFile);
+			try {
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					String name = entry.getName();
+					if (name.endsWith(".class")) {
+						String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+						checksums.put(className, (entry.getSize() << 32) | entry.getCrc());
+					}
+				}
+			} finally {
+				zipFile.close();
+			}
+			return new JarContents(lastModified, length, checksums);
+		}
+
+		boolean isCurrent(File jarFile) {
+			return (jarFile.lastModified() == lastModified) && (jarFile.length() == length);
+		}
+
+		Set<String> diff(JarContents newContents) {
+			Set<String> changedClasses = newHashSet();
+			for (Map.Entry<String, Long> each : checksums.entrySet()) {
+				if (!each.getValue().equals(newContents.checksums.get(each.getKey()))) {
+					changedClasses.add(each.getKey());
+				}
+			}
+			for (String each : newContents.checksums.keySet()) {
+				if (!checksums.containsKey(each)) {
+					changedClasses.add(each);
+				}
+			}
+			return changedClasses;
+		}
+	}
+}
@@ -22,9 +22,9 @@
 package org.infinitest.parser;
 
 import static com.google.common.collect.Sets.*;
-import static javassist.Modifier.*;
 import static javassist.bytecode.AnnotationsAttribute.*;
 import static org.infinitest.parser.DescriptorParser.*;
+import static org.infinitest.util.ClassNames.*;
 
 import java.io.*;
 import java.util.*;
@@ -32,23 +32,33 @@ import java.util.*;
 import javassist.*;
 import javassist.bytecode.*;
 import javassist.bytecode.annotation.*;
-import junit.framework.*;
 
 import org.junit.Test;
 import org.junit.runner.*;
 
-import com.google.common.base.*;
-
 public class JavaAssistClass extends AbstractJavaClass {
 	private final String className;
 	private File classFile;
-	private final Boolean isATest;
+	private Boolean isATest;
+	private final long apiFingerprint;
+	private final Collection<String> resourceReferences;
 	private Collection<String> imports;
+	// Kept until we know whether this is a test. Most classes that are looked
+	// up aren't in a class file, so they never need to know.
+	private CtClass classReference;
+	private final ClassHierarchyCache hierarchy;
 
 	public JavaAssistClass(CtClass classReference) {
+		this(classReference, new ClassHierarchyCache(classesIn(classReference.getClassPool()), null));
+	}
+
+	JavaAssistClass(CtClass classReference, ClassHierarchyCache hierarchy) {
+		this.classReference = classReference;
+		this.hierarchy = hierarchy;
 		imports = findImports(classReference);
-		isATest = !isAbstract(classReference) && isAJUnitTest(classReference) && canInstantiate(classReference);
-		className = classReference.getName();
+		className = canonicalName(classReference.getName());
+		apiFingerprint = findApiFingerprint(classReference.getClassFile2());
+		resourceReferences = findResourceReferences(classReference.getClassFile2().getConstPool());
 	}
 
 	public Collection<String> getImports() {
@@ -61,6 +71,8 @@ public class JavaAssistClass extends AbstractJavaClass {
 	@Override
 	public void dispose() {
 		imports = null;
+		// The class reference won't be valid for long after this
+		isATest();
 	}
 
 	private Collection<String> findImports(CtClass ctClass) {
@@ -70,7 +82,7 @@ public class JavaAssistClass extends AbstractJavaClass {
 		addClassAnnotationDependencies(ctClass, imports);
 		addFieldAnnotationDependencies(ctClass, imports);
 		addMethodAnnotationDependencies(ctClass, imports);
-		return imports;
+		return canonicalNames(imports);
 	}
 
 	private void addFieldAnnotationDependencies(CtClass ctClass, Set<String> imports) {
@@ -146,156 +158,137 @@ public class JavaAssistClass extends AbstractJavaClass {
 		}
 	}
 
-	private String pathToClassName(String classPath) {
-		return classPath.replace('/', '.');
-	}
-
-	public String getName() {
-		return className;
-	}
-
-	private boolean isAbstract(CtClass classReference) {
-		return classReference.isInterface() || Modifier.isAbstract(classReference.getModifiers());
-	}
-
-	public boolean isATest() {
-		return isATest;
-	}
-
-	boolean canInstantiate(CtClass classReference) {
-		for (CtConstructor ctConstructor : classReference.getConstructors()) {
-			if (isValidConstructor(classReference, ctConstructor)) {
-				return true;
+	private Collection<String> findResourceReferences(ConstPool constPool) {
+		List<String> constants = new ArrayList<String>();
+		for (int i = 1; i < constPool.getSize(); i++) {
+			if (constPool.getTag(i) == ConstPool.CONST_String) {
+				constants.add(constPool.getStringInfo(i));
 			}
 		}
-		return false;
+		return ResourceReferences.findResourcePaths(constants);
 	}
 
-	private boolean isValidConstructor(CtClass classReference, CtConstructor ctConstructor) {
-		if (usesCustomRunner(classReference)) {
-			return true;
+	@Override
+	Collection<String> getResourceReferences() {
+		return resourceReferences;
+	}
+
+	private long findApiFingerprint(ClassFile classFile) {
+		ApiFingerprint fingerprint = new ApiFingerprint();
+		ConstPool constPool = classFile.getConstPool();
+		for (Object each : classFile.getFields()) {
+			FieldInfo field = (FieldInfo) each;
+			int constantIndex = field.getConstantValue();
+			Object constantValue = constantIndex == 0 ? null : constPool.getLdcValue(constantIndex);
+			fingerprint.addField(field.getAccessFlags(), field.getName(), field.getDescriptor(), signatureOf(field.getAttribute(SignatureAttribute.tag)), constantValue, annotationsOf(field.getAttributes()));
 		}
-		return hasJUnitCompatibleConstructor(ctConstructor);
-	}
-
-	private boolean hasJUnitCompatibleConstructor(CtConstructor ctConstructor) {
-		if (ctConstructor.isConstructor() && isPublic(ctConstructor.getModifiers())) {
-			try {
-				CtClass[] parameterTypes = ctConstructor.getParameterTypes();
-				if (hasDefaultConstructor(parameterTypes)) {
-					return true;
-				}
-				if (hasTestNameConstructor(parameterTypes)) {
-					return true;
-				}
-			} catch (NotFoundException e) {
-				return false;
+		for (Object each : classFile.getMethods()) {
+			MethodInfo method = (MethodInfo) each;
+			List<String> exceptions = new ArrayList<String>();
+			ExceptionsAttribute exceptionsAttribute = method.getExceptionsAttribute();
+			if ((exceptionsAttribute != null) && (exceptionsAttribute.getExceptions() != null)) {
+				exceptions.addAll(Arrays.asList(exceptionsAttribute.getExceptions()));
 			}
+			fingerprint.addMethod(method.getAccessFlags(), method.getName(), method.getDescriptor(), signatureOf(method.getAttribute(SignatureAttribute.tag)), exceptions, annotationsOf(method.getAttributes()));
 		}
-		return false;
+		List<String> interfaces = Arrays.asList(classFile.getInterfaces());
+		fingerprint.addClass(classFile.getAccessFlags(), classFile.getName(), classFile.getSuperclass(), interfaces, signatureOf(classFile.getAttribute(SignatureAttribute.tag)), annotationsOf(classFile.getAttributes()));
+		return fingerprint.get();
 	}
 
-	private boolean hasDefaultConstructor(CtClass[] parameterTypes) {
-		return parameterTypes.length == 0;
+	private String signatureOf(AttributeInfo attribute) {
+		if (attribute == null) {
+			return null;
+		}
+		return ((SignatureAttribute) attribute).getSignature();
 	}
 
-	private boolean hasTestNameConstructor(CtClass[] parameterTypes) {
-		return (parameterTypes.length == 1) && parameterTypes[0].getName().equals(String.class.getName());
+	private Set<String> annotationsOf(List<?> attributes) {
+		Set<String> annotations = newHashSet();
+		addAnnotationsForAttributes(annotations, attributes);
+		return annotations;
 	}
 
 	@Override
-	public String toString() {
-		return getName();
+	long getApiFingerprint() {
+		return apiFingerprint;
 	}
 
-	private boolean isAJUnitTest(CtClass classReference) {
-		return hasJUnitTestMethods(classReference) //
-				|| hasTestNGTestMethods(classReference) //
-				|| usesCustomRunner(classReference);
+	private String pathToClassName(String classPath) {
+		return classPath.replace('/', '.');
 	}
 
-	private boolean usesCustomRunner(CtClass classReference) {
-		return isAnnotatedWithCustomRunner(classReference) || anySuperclassOf(classReference, hasACustomRunner());
+	public String getName() {
+		return className;
 	}
 
-	private boolean isAnnotatedWithCustomRunner(CtClass classReference) {
-		AnnotationsAttribute annotations = getAnnotationsOfType(visibleTag, classReference);
-		if (annotations != null) {
-			for (Annotation annotation : annotations.getAnnotations()) {
-				if (annotation.getTypeName().equals(RunWith.class.getName())) {
-					return true;
-				}
-			}
+	public boolean isATest() {
+		if (isATest == null) {
+			isATest = hierarchy.isATest(outlineOf(classReference));
+			classReference = null;
 		}
-		return false;
+		return isATest;
 	}
 
-	private Predicate<CtClass> hasACustomRunner() {
-		return new Predicate<CtClass>() {
-			public boolean apply(CtClass input) {
-				return isAnnotatedWithCustomRunner(input);
-			}
-		};
+	@Override
+	public String toString() {
+		return getName();
 	}
 
-	private boolean hasTestNGTestMethods(CtClass classReference) {
-		for (CtMethod ctMethod : classReference.getMethods()) {
-			if (isTestNGTestMethod(ctMethod)) {
-				return true;
+	/**
+	 * Looks up the superclasses of a class in the pool it came from.
+	 */
+	static ClassHierarchyCache.ProjectClasses classesIn(final ClassPool pool) {
+		return new ClassHierarchyCache.ProjectClasses() {
+			public ClassOutline find(String className) {
+				CtClass ctClass = pool.getOrNull(className);
+				if (ctClass == null) {
+					return null;
+				}
+				return outlineOf(ctClass);
 			}
-		}
-		return false;
+		};
 	}
 
-	private boolean hasJUnitTestMethods(CtClass classReference) {
-		for (CtMethod ctMethod : classReference.getMethods()) {
-			if (isJUnit4TestMethod(ctMethod) || isJUnit3TestMethod(ctMethod)) {
-				return true;
+	static ClassOutline outlineOf(CtClass ctClass) {
+		ClassFile classFile = ctClass.getClassFile2();
+		boolean hasAnnotatedTestMethod = false;
+		boolean hasTestNamedMethod = false;
+		boolean hasNonPrivateConstructor = false;
+		boolean hasJUnitConstructor = false;
+		for (Object each : classFile.getMethods()) {
+			MethodInfo method = (MethodInfo) each;
+			boolean nonPrivate = !AccessFlag.isPrivate(method.getAccessFlags());
+			if (method.isConstructor()) {
+				hasNonPrivateConstructor |= nonPrivate;
+				hasJUnitConstructor |= AccessFlag.isPublic(method.getAccessFlags()) && isJUnitConstructor(method.getDescriptor());
+			} else if (nonPrivate && !method.isStaticInitializer()) {
+				hasTestNamedMethod |= method.getName().startsWith("test");
+				hasAnnotatedTestMethod |= isJUnit4TestMethod(method) || isTestNGTestMethod(method);
 			}
 		}
-		return false;
+		boolean isAbstract = classFile.isInterface() || classFile.isAbstract();
+		return new ClassOutline(classFile.getName(), classFile.getSuperclass(), isAbstract, isAnnotatedWithCustomRunner(classFile), hasAnnotatedTestMethod,
+				hasTestNamedMethod, hasNonPrivateConstructor, hasJUnitConstructor);
 	}
 
-	private boolean isJUnit3TestMethod(CtMethod ctMethod) {
-		return ctMethod.getName().startsWith("test") && anySuperclassOf(ctMethod.getDeclaringClass(), isTestCase());
+	private static boolean isJUnitConstructor(String descriptor) {
+		return descriptor.equals("()V") || descriptor.equals("(Ljava/lang/String;)V");
 	}
 
-	private boolean anySuperclassOf(CtClass classReference, Predicate<CtClass> predicate) {
-		CtClass superclass = findSuperclass(classReference);
-		while (superclass != null) {
-			if (predicate.apply(superclass)) {
-				return true;
+	private static boolean isAnnotatedWithCustomRunner(ClassFile classFile) {
+		AnnotationsAttribute annotations = (AnnotationsAttribute) classFile.getAttribute(visibleTag);
+		if (annotations != null) {
+			for (Annotation annotation : annotations.getAnnotations()) {
+				if (annotation.getTypeName().equals(RunWith.class.getName())) {
+					return true;
+				}
 			}
-			superclass = findSuperclass(superclass);
 		}
 		return false;
 	}
 
-	private Predicate<CtClass> isTestCase() {
-		return new Predicate<CtClass>() {
-			public boolean apply(CtClass input) {
-				return input.getName().equals(TestCase.class.getName());
-			}
-		};
-	}
-
-	private CtClass findSuperclass(CtClass aClassReference) {
-		try {
-			return aClassReference.getSuperclass();
-		} catch (NotFoundException e) {
-			// If we can't access the superclass, it's not in the project
-			// classpath (probably in the
-			// JDK), and we don't care.
-			// The one exception to this might be if you've added a testing
-			// library to your JDK
-			// ext/lib directory, but I'm not going to handle that case until we
-			// know we need to.
-			return null;
-		}
-	}
-
-	private boolean isTestNGTestMethod(CtMethod ctMethod) {
-		MethodInfo methodInfo = ctMethod.getMethodInfo2();
+	private static boolean isTestNGTestMethod(MethodInfo methodInfo) {
 		List<?> attributes = methodInfo.getAttributes();
 		for (Object attribute : attributes) {
 			if (attribute instanceof AnnotationsAttribute) {
@@ -311,8 +304,7 @@ public class JavaAssistClass extends AbstractJavaClass {
 		return false;
 	}
 
-	private boolean isJUnit4TestMethod(CtMethod ctMethod) {
-		MethodInfo methodInfo = ctMethod.getMethodInfo2();
+	private static boolean isJUnit4TestMethod(MethodInfo methodInfo) {
 		List<?> attributes = methodInfo.getAttributes();
 		for (Object attribute : attributes) {
 			if (attribute instanceof AnnotationsAttribute) {
@@ -22,69 +22,81 @@
 package org.infinitest.parser;
 
 import static com.google.common.base.Splitter.*;
-import static com.google.common.collect.Lists.*;
 import static java.io.File.*;
 
 import java.io.*;
 import java.net.*;
-import java.util.*;
 
 import javassist.*;
 
 import org.infinitest.*;
 
+/**
+ * Parses classes with Javassist. Only classes in the class directories are
+ * read into the class pool, which is thrown away after every update. Whether
+ * a class is a test also depends on the JDK and jar classes it extends, and
+ * for those the parser uses the outlines shared by every core through the
+ * {@link LibraryClassCache}, rather than reading them into a pool of its own.
+ */
 public class JavaAssistClassParser implements ClassParser {
-	private ClassPool classPool;
 	private final String classpath;
+	private final ClasspathClassLocator locator;
+	private final ClassHierarchyCache hierarchyCache;
+	private ClassPool classPool;
 
 	public JavaAssistClassParser(String classpath) {
+		this(classpath, LibraryClassCache.getSharedCache());
+	}
+
+	JavaAssistClassParser(String classpath, LibraryClassCache libraryCache) {
 		this.classpath = classpath;
+		locator = new ClasspathClassLocator(classpath, libraryCache);
+		hierarchyCache = new ClassHierarchyCache(new ClassHierarchyCache.ProjectClasses() {
+			public ClassOutline find(String className) {
+				CtClass ctClass = getClassPool().getOrNull(className);
+				if ((ctClass == null) || unparsableClass(ctClass)) {
+					return null;
+				}
+				return JavaAssistClass.outlineOf(ctClass);
+			}
+		}, locator);
 	}
 
 	private ClassPool getClassPool() {
 		if (classPool == null) {
-			classPool = new ClassPool();
-			// This is used primarily for getting Java core objects like String
-			// and Integer,
-			// so if we don't have the project's JDK classpath, it's probably
-			// OK.
-			classPool.appendSystemPath();
+			// No parent, so classes outside the class directories are never
+			// read into the pool
+			ClassPool pool = new ClassPool(null);
 			try {
-				for (String pathElement : getPathElements()) {
-					classPool.appendClassPath(pathElement);
+				for (String pathElement : on(pathSeparator).split(classpath)) {
+					if (new File(pathElement).isDirectory()) {
+						pool.appendClassPath(pathElement);
+					}
 				}
 			} catch (NotFoundException e) {
-				classPool = null; // RISK Untested
-				// Blank out the class pool so we try again next time
 				throw new MissingClassException("Could not create class pool", e);
 			}
+			classPool = pool;
 		}
 		return classPool;
 	}
 
-	private Iterable<String> getPathElements() {
-		List<String> entries = newArrayList(on(pathSeparator).split(classpath));
-		ListIterator<String> iter = entries.listIterator();
-		while (iter.hasNext()) {
-			if (entryDoesNotExist(iter)) {
-				iter.remove();
+	public JavaClass getClass(String className) {
+		URL url = getClassPool().find(className);
+		if (url == null) {
+			if (locator.findLibraryClass(className) == null) {
+				throw new MissingClassException("Expected to find " + className);
 			}
+			// Classes outside the class directories never make it into the
+			// index, so there's no point parsing them
+			return new UnparsableClass(className);
 		}
-		return entries;
-	}
-
-	private boolean entryDoesNotExist(ListIterator<String> iter) {
-		return !new File(iter.next()).exists();
-	}
-
-	public JavaClass getClass(String className) {
 		CtClass cachedClass = getCachedClass(className);
 		if (unparsableClass(cachedClass)) {
 			return new UnparsableClass(className);
 		}
-		JavaAssistClass javaClass = new JavaAssistClass(cachedClass);
-		URL url = getClassPool().find(className);
-		if ((url != null) && url.getProtocol().equals("file")) {
+		JavaAssistClass javaClass = new JavaAssistClass(cachedClass, hierarchyCache);
+		if (url.getProtocol().equals("file")) {
 			javaClass.setClassFile(new File(url.getFile()));
 		}
 		return javaClass;
@@ -106,7 +118,7 @@ public class JavaAssistClassParser implements ClassParser {
 		FileInputStream inputStream = new FileInputStream(file);
 		try {
 			CtClass ctClass = getClassPool().makeClass(inputStream);
-			JavaAssistClass clazz = new JavaAssistClass(ctClass);
+			JavaAssistClass clazz = new JavaAssistClass(ctClass, hierarchyCache);
 			clazz.setClassFile(file);
 			return clazz;
 		} finally {
@@ -114,7 +126,23 @@ public class JavaAssistClassParser implements ClassParser {
 		}
 	}
 
+	/**
+	 * Forgets the classes read from the class directories. What's known about
+	 * jar and JDK classes is only forgotten if one of the jars has changed.
+	 */
 	public void clear() {
 		classPool = null;
+		hierarchyCache.forgetProjectClasses();
+		if (locator.librariesChanged()) {
+			hierarchyCache.forgetLibraryClasses();
+			locator.close();
+		}
+	}
+
+	public void close() {
+		classPool = null;
+		hierarchyCache.forgetProjectClasses();
+		hierarchyCache.forgetLibraryClasses();
+		locator.close();
 	}
 }
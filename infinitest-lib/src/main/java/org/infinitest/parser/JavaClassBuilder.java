@@ -34,7 +34,11 @@ class JavaClassBuilder implements ClassBuilder {
 	private final ClassParser parser;
 
 	JavaClassBuilder(ClasspathProvider classpath) {
-		this(new JavaAssistClassParser(classpath.getCompleteClasspath()));
+		this(classpath, ClassParserType.JAVASSIST);
+	}
+
+	JavaClassBuilder(ClasspathProvider classpath, ClassParserType parserType) {
+		this(parserType.createParser(classpath.getCompleteClasspath()));
 	}
 
 	public JavaClassBuilder(ClassParser parser) {
@@ -84,4 +88,8 @@ class JavaClassBuilder implements ClassBuilder {
 	public void clear() {
 		parser.clear();
 	}
+
+	public void close() {
+		parser.close();
+	}
 }
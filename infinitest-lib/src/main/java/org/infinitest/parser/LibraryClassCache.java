@@ -0,0 +1,315 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Maps.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.*;
+
+import com.google.common.annotations.*;
+
+/**
+ * Outlines of the classes in jars and the JDK, shared by the class parsers of
+ * every core in the process. In a workspace with many projects most of them
+ * have the same libraries on their classpath, so each library class only has
+ * to be read once. Parsers only need to know enough about a library class to
+ * tell whether the project classes extending it are tests, so the cache keeps
+ * a {@link ClassOutline} rather than the class file.
+ * 
+ * Classes are cached by the path, size and modification time of their jar, and
+ * by their name, so a jar that changes is read again. Each jar lists its class
+ * entries once when it's opened, so looking for a class that isn't in it
+ * doesn't read the jar or take up room in the cache. Parsers acquire the jars
+ * on their classpath and release them when they're done with them, and a jar
+ * is closed once nobody is using it. When the cached outlines take up more
+ * than the capacity of the cache, the least recently used ones are evicted.
+ * Jars are read without holding the lock on the cache, so a core that has to
+ * read a jar doesn't hold up the others.
+ */
+public class LibraryClassCache {
+	private static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+	private static final LibraryClassCache SHARED_CACHE = new LibraryClassCache(DEFAULT_CAPACITY);
+	// A rough guess at what the map entry, its key and the outline cost on top
+	// of the characters in their strings
+	private static final int ENTRY_OVERHEAD = 160;
+
+	private final long capacity;
+	private final Map<String, LibraryJar> jars;
+	private final LinkedHashMap<String, ClassOutline> outlines;
+	private final LibraryJar systemClasses;
+	private long cachedBytes;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	@VisibleForTesting
+	LibraryClassCache(long capacity) {
+		this.capacity = capacity;
+		jars = newHashMap();
+		outlines = new LinkedHashMap<String, ClassOutline>(256, 0.75f, true);
+		systemClasses = new LibraryJar(null, "system");
+	}
+
+	public static LibraryClassCache getSharedCache() {
+		return SHARED_CACHE;
+	}
+
+	/**
+	 * Starts using a jar. Every call must be matched by a call to
+	 * {@link #release(LibraryJar)}.
+	 */
+	synchronized LibraryJar acquire(File jarFile) {
+		String key = jarFile.getAbsolutePath() + ':' + jarFile.length() + ':' + jarFile.lastModified();
+		LibraryJar jar = jars.get(key);
+		if (jar == null) {
+			jar = new LibraryJar(jarFile, key);
+			jars.put(key, jar);
+		}
+		jar.references++;
+		return jar;
+	}
+
+	synchronized void release(LibraryJar jar) {
+		jar.references--;
+		if (jar.references == 0) {
+			jar.close();
+			jars.remove(jar.key);
+		}
+	}
+
+	/**
+	 * @return The outline of the class, or null if the jar doesn't contain
+	 *         the class
+	 */
+	ClassOutline find(LibraryJar jar, String className) {
+		String key = jar.key + '!' + className;
+		ClassOutline outline = lookUp(key);
+		if ((outline == null) && jar.contains(className)) {
+			// Read the jar without holding the lock. Two cores that miss at
+			// the same time might both read the class, but they'll end up
+			// sharing the outline that's cached first.
+			outline = jar.read(className);
+			if (outline != null) {
+				outline = store(key, outline);
+			}
+		}
+		return outline;
+	}
+
+	/**
+	 * Finds a class on the classpath Infinitest itself was started with, which
+	 * is where the JDK classes come from.
+	 * 
+	 * @return The outline of the class, or null if it can't be found
+	 */
+	ClassOutline findSystemClass(String className) {
+		return find(systemClasses, className);
+	}
+
+	private synchronized ClassOutline lookUp(String key) {
+		ClassOutline outline = outlines.get(key);
+		if (outline != null) {
+			hitCount++;
+		} else {
+			missCount++;
+		}
+		return outline;
+	}
+
+	private synchronized ClassOutline store(String key, ClassOutline outline) {
+		ClassOutline cached = outlines.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		outlines.put(key, outline);
+		cachedBytes += sizeOf(key, outline);
+		evictLeastRecentlyUsed();
+		return outline;
+	}
+
+	private void evictLeastRecentlyUsed() {
+		Iterator<Map.Entry<String, ClassOutline>> iterator = outlines.entrySet().iterator();
+		while ((cachedBytes > capacity) && iterator.hasNext()) {
+			Map.Entry<String, ClassOutline> eldest = iterator.next();
+			cachedBytes -= sizeOf(eldest.getKey(), eldest.getValue());
+			iterator.remove();
+			evictionCount++;
+		}
+	}
+
+	private static long sizeOf(String key, ClassOutline outline) {
+		return (2L * (key.length() + lengthOf(outline.getName()) + lengthOf(outline.getSuperName()))) + ENTRY_OVERHEAD;
+	}
+
+	private static int lengthOf(String name) {
+		return name == null ? 0 : name.length();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * An estimate of the memory taken up by the cached outlines.
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	public synchronized int getCachedClassCount() {
+		return outlines.size();
+	}
+
+	/**
+	 * The number of jars that are being used by at least one parser.
+	 */
+	public synchronized int getJarCount() {
+		return jars.size();
+	}
+
+	/**
+	 * A jar on the classpath of one or more parsers, or the system classpath if
+	 * there's no file. A jar is only opened when a class that isn't in the
+	 * cache has to be read from it. The system classpath can't be listed, so
+	 * it remembers the classes it was asked for and didn't have instead.
+	 */
+	static class LibraryJar {
+		private final File file;
+		private final String key;
+		private int references;
+		private JarFile jarFile;
+		private boolean unreadable;
+		private Set<String> classNames;
+		private final Set<String> missingClasses = new HashSet<String>();
+
+		private LibraryJar(File file, String key) {
+			this.file = file;
+			this.key = key;
+		}
+
+		File getFile() {
+			return file;
+		}
+
+		private synchronized boolean contains(String className) {
+			if (file == null) {
+				return !missingClasses.contains(className);
+			}
+			if (classNames == null) {
+				classNames = listClasses(open());
+			}
+			return classNames.contains(className);
+		}
+
+		private static Set<String> listClasses(JarFile jar) {
+			Set<String> names = new HashSet<String>();
+			if (jar != null) {
+				Enumeration<JarEntry> entries = jar.entries();
+				while (entries.hasMoreElements()) {
+					String path = entries.nextElement().getName();
+					if (path.endsWith(".class")) {
+						names.add(path.substring(0, path.length() - ".class".length()).replace('/', '.'));
+					}
+				}
+			}
+			return names;
+		}
+
+		// It won't get any better until the jar changes
+		private synchronized void forget(String className) {
+			if (file == null) {
+				missingClasses.add(className);
+			} else {
+				classNames.remove(className);
+			}
+		}
+
+		// Returns null if the class isn't there, or couldn't be read this time
+		private ClassOutline read(String className) {
+			try {
+				InputStream input = openClassFile(className.replace('.', '/') + ".class");
+				if (input == null) {
+					forget(className);
+					return null;
+				}
+				try {
+					return ConstantPoolClassParser.readOutline(input, className);
+				} finally {
+					input.close();
+				}
+			} catch (MalformedClassFileException e) {
+				forget(className);
+				return null;
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		private InputStream openClassFile(String path) throws IOException {
+			if (file == null) {
+				return ClassLoader.getSystemResourceAsStream(path);
+			}
+			JarFile jar = open();
+			if (jar == null) {
+				return null;
+			}
+			JarEntry entry = jar.getJarEntry(path);
+			if (entry == null) {
+				return null;
+			}
+			return jar.getInputStream(entry);
+		}
+
+		private synchronized JarFile open() {
+			if ((jarFile == null) && !unreadable) {
+				try {
+					jarFile = new JarFile(file);
+				} catch (IOException e) {
+					// Not a jar. Ignore it, like the JVM would.
+					unreadable = true;
+				}
+			}
+			return jarFile;
+		}
+
+		private synchronized void close() {
+			if (jarFile != null) {
+				try {
+					jarFile.close();
+				} catch (IOException e) {
+					// Nothing else we can do
+				}
+				jarFile = null;
+			}
+		}
+	}
+}
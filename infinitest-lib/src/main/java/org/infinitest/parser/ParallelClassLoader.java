@@ -0,0 +1,108 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static java.util.Arrays.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.google.common.base.*;
+
+/**
+ * Parses class files on several threads. Class builders aren't thread safe, so
+ * each thread gets a builder of its own, and nothing is shared between them
+ * except the list of files. Adding the classes to the index is left to the
+ * calling thread.
+ */
+class ParallelClassLoader {
+	private final List<ClassBuilder> builders;
+
+	ParallelClassLoader(Supplier<ClassBuilder> builderFactory, int threadCount) {
+		builders = newArrayList();
+		for (int i = 0; i < threadCount; i++) {
+			builders.add(builderFactory.get());
+		}
+	}
+
+	int getThreadCount() {
+		return builders.size();
+	}
+
+	/**
+	 * @return The parsed classes, in the same order as the files. Files that
+	 *         couldn't be parsed have a null entry.
+	 */
+	List<JavaClass> loadClasses(final List<File> files) {
+		final JavaClass[] classes = new JavaClass[files.size()];
+		final AtomicInteger nextFile = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(builders.size(), new ParserThreadFactory());
+		try {
+			List<Future<?>> results = newArrayList();
+			for (final ClassBuilder builder : builders) {
+				results.add(executor.submit(new Runnable() {
+					public void run() {
+						try {
+							for (int i = nextFile.getAndIncrement(); i < classes.length; i = nextFile.getAndIncrement()) {
+								classes[i] = builder.loadClass(files.get(i));
+							}
+						} finally {
+							builder.clear();
+						}
+					}
+				}));
+			}
+			for (Future<?> each : results) {
+				each.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while parsing class files", e);
+		} catch (ExecutionException e) {
+			Throwables.propagateIfPossible(e.getCause());
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return asList(classes);
+	}
+
+	void close() {
+		for (ClassBuilder each : builders) {
+			each.close();
+		}
+	}
+
+	private static class ParserThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Infinitest class parser " + threadCount.incrementAndGet());
+			// Don't hold up the IDE shutting down if a parse is in progress
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+
+import java.util.*;
+
+/**
+ * Names that indexed classes refer to without a dependency graph edge, like
+ * resource paths or classes in library jars, kept in both directions so
+ * either side can be looked up.
+ */
+class ReferenceMap {
+	private final Map<String, Collection<String>> referencesByClass = newHashMap();
+	private final Map<String, Set<String>> classesByReference = newHashMap();
+
+	/**
+	 * Replaces the references of the given class.
+	 */
+	void put(String className, Collection<String> references) {
+		remove(className);
+		if (!references.isEmpty()) {
+			referencesByClass.put(className, references);
+			for (String each : references) {
+				Set<String> classNames = classesByReference.get(each);
+				if (classNames == null) {
+					classNames = newHashSet();
+					classesByReference.put(each, classNames);
+				}
+				classNames.add(className);
+			}
+		}
+	}
+
+	void remove(String className) {
+		Collection<String> references = referencesByClass.remove(className);
+		if (references != null) {
+			for (String each : references) {
+				Set<String> classNames = classesByReference.get(each);
+				classNames.remove(className);
+				if (classNames.isEmpty()) {
+					classesByReference.remove(each);
+				}
+			}
+		}
+	}
+
+	Collection<String> getReferences(String className) {
+		Collection<String> references = referencesByClass.get(className);
+		if (references == null) {
+			return Collections.emptyList();
+		}
+		return references;
+	}
+
+	Set<String> getReferringClasses(String reference) {
+		Set<String> classNames = classesByReference.get(reference);
+		if (classNames == null) {
+			return Collections.emptySet();
+		}
+		return classNames;
+	}
+}
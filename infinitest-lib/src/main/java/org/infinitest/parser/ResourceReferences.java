@@ -0,0 +1,142 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+
+import java.util.*;
+
+/**
+ * Matches resource files in the class directories, like properties files and
+ * Spring contexts, to the string constants classes use to load them.
+ */
+class ResourceReferences {
+	private static final int MAX_PATH_LENGTH = 255;
+	private static final String[] PREFIXES = { "classpath*:", "classpath:" };
+	private static final String BUNDLE_EXTENSION = ".properties";
+
+	private ResourceReferences() {
+	}
+
+	/**
+	 * Turns a string constant into the resource path it could be loading, or
+	 * null if it doesn't look like a path.
+	 */
+	static String toResourcePath(String constant) {
+		String path = constant;
+		for (String prefix : PREFIXES) {
+			if (path.startsWith(prefix)) {
+				path = path.substring(prefix.length());
+				break;
+			}
+		}
+		while (path.startsWith("/")) {
+			path = path.substring(1);
+		}
+		if ((path.length() == 0) || (path.length() > MAX_PATH_LENGTH) || path.endsWith(".") || path.endsWith("/")) {
+			return null;
+		}
+		boolean hasSeparator = false;
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (Character.isWhitespace(c) || Character.isISOControl(c) || (c == ':')) {
+				return null;
+			}
+			hasSeparator |= (c == '/') || (c == '.');
+		}
+		return hasSeparator ? path : null;
+	}
+
+	/**
+	 * Collects the constants that look like resource paths.
+	 */
+	static Collection<String> findResourcePaths(Collection<String> constants) {
+		List<String> paths = null;
+		for (String each : constants) {
+			String path = toResourcePath(each);
+			if (path != null) {
+				if (paths == null) {
+					paths = newArrayList();
+				}
+				if (!paths.contains(path)) {
+					paths.add(path);
+				}
+			}
+		}
+		if (paths == null) {
+			return Collections.emptyList();
+		}
+		return paths;
+	}
+
+	/**
+	 * The resource paths a class could use to load the given resource, which
+	 * is relative to a class directory. For a properties file these include
+	 * the names of the resource bundles it could belong to, like
+	 * {@code com.example.messages} for {@code com/example/messages_en.properties}.
+	 */
+	static Set<String> pathsFor(String resourcePath) {
+		Set<String> paths = new LinkedHashSet<String>();
+		paths.add(resourcePath);
+		if (resourcePath.endsWith(BUNDLE_EXTENSION)) {
+			String bundleName = resourcePath.substring(0, resourcePath.length() - BUNDLE_EXTENSION.length());
+			while (bundleName.length() > 0) {
+				paths.add(bundleName);
+				paths.add(bundleName.replace('/', '.'));
+				// Drop a locale suffix, like _en or _US
+				int suffix = bundleName.lastIndexOf('_');
+				if (suffix <= bundleName.lastIndexOf('/')) {
+					break;
+				}
+				bundleName = bundleName.substring(0, suffix);
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * The name a class in the same package as the resource could load it
+	 * with, using {@link Class#getResource(String)}.
+	 */
+	static String relativePathFor(String resourcePath) {
+		return resourcePath.substring(resourcePath.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * The directory a class's package corresponds to.
+	 */
+	static String packagePathOf(String className) {
+		int packageEnd = className.lastIndexOf('.');
+		if (packageEnd < 0) {
+			return "";
+		}
+		return className.substring(0, packageEnd).replace('.', '/');
+	}
+
+	static String directoryOf(String resourcePath) {
+		int directoryEnd = resourcePath.lastIndexOf('/');
+		if (directoryEnd < 0) {
+			return "";
+		}
+		return resourcePath.substring(0, directoryEnd);
+	}
+}
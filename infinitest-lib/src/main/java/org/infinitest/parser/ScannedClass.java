@@ -0,0 +1,86 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import java.io.*;
+import java.util.*;
+
+class ScannedClass extends AbstractJavaClass {
+	private final String name;
+	private final boolean isATest;
+	private final File classFile;
+	private final long apiFingerprint;
+	private final Collection<String> resourceReferences;
+	private Collection<String> imports;
+
+	ScannedClass(String name, Collection<String> imports, boolean isATest, File classFile, long apiFingerprint, Collection<String> resourceReferences) {
+		this.name = name;
+		this.imports = imports;
+		this.isATest = isATest;
+		this.classFile = classFile;
+		this.apiFingerprint = apiFingerprint;
+		this.resourceReferences = resourceReferences;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Collection<String> getImports() {
+		if (imports == null) {
+			throw new DisposedClassException(getName());
+		}
+		return imports;
+	}
+
+	@Override
+	public void dispose() {
+		imports = null;
+	}
+
+	@Override
+	long getApiFingerprint() {
+		return apiFingerprint;
+	}
+
+	@Override
+	Collection<String> getResourceReferences() {
+		return resourceReferences;
+	}
+
+	public boolean isATest() {
+		return isATest;
+	}
+
+	public boolean locatedInClassFile() {
+		return true;
+	}
+
+	public File getClassFile() {
+		return classFile;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A class restored from an {@link IndexSnapshot} rather than parsed from its
+ * class file.
+ */
+class SnapshotClass extends AbstractJavaClass {
+	private final String name;
+	private final File classFile;
+	private final boolean isATest;
+	private final ClassFileStamp stamp;
+	private final long apiFingerprint;
+	private final List<String> resourceReferences;
+	private final List<String> libraryReferences;
+	private Collection<String> imports;
+
+	SnapshotClass(String name, File classFile, boolean isATest, ClassFileStamp stamp, long apiFingerprint) {
+		this.name = name;
+		this.classFile = classFile;
+		this.isATest = isATest;
+		this.stamp = stamp;
+		this.apiFingerprint = apiFingerprint;
+		imports = new ArrayList<String>();
+		resourceReferences = new ArrayList<String>();
+		libraryReferences = new ArrayList<String>();
+	}
+
+	void addImport(String className) {
+		imports.add(className);
+	}
+
+	void addResourceReference(String resourcePath) {
+		resourceReferences.add(resourcePath);
+	}
+
+	@Override
+	Collection<String> getResourceReferences() {
+		return resourceReferences;
+	}
+
+	void addLibraryReference(String className) {
+		libraryReferences.add(className);
+	}
+
+	/**
+	 * The classes outside the class directories this class imports.
+	 */
+	List<String> getLibraryReferences() {
+		return libraryReferences;
+	}
+
+	ClassFileStamp getStamp() {
+		return stamp;
+	}
+
+	@Override
+	long getApiFingerprint() {
+		return apiFingerprint;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Collection<String> getImports() {
+		if (imports == null) {
+			throw new DisposedClassException(getName());
+		}
+		return imports;
+	}
+
+	@Override
+	public void dispose() {
+		imports = null;
+	}
+
+	public boolean isATest() {
+		return isATest;
+	}
+
+	public boolean locatedInClassFile() {
+		return true;
+	}
+
+	public File getClassFile() {
+		return classFile;
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Maps.*;
+import static com.google.common.collect.Sets.*;
+
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+
+/**
+ * Remembers which project classes each test loaded the last time it passed,
+ * as reported by a runner process that tracks class loading. A test that
+ * hasn't passed with tracking on yet, or whose last run failed part way
+ * through, has no coverage and is always kept.
+ */
+public class TestCoverage implements TestResultsListener {
+	private final Map<String, Set<String>> loadedClasses;
+
+	public TestCoverage() {
+		loadedClasses = newHashMap();
+	}
+
+	public synchronized void testCaseComplete(TestCaseEvent event) {
+		Set<String> classes = event.getLoadedClasses();
+		if ((classes == null) || event.failed()) {
+			loadedClasses.remove(event.getTestName());
+		} else {
+			loadedClasses.put(event.getTestName(), classes);
+		}
+	}
+
+	public void testCaseStarting(TestEvent event) {
+	}
+
+	/**
+	 * Keeps the tests that loaded one of the changed classes, or that have no
+	 * coverage.
+	 */
+	synchronized Set<JavaClass> filterTests(Set<JavaClass> tests, Set<JavaClass> changedClasses) {
+		Set<String> changedClassNames = newHashSet();
+		for (JavaClass each : changedClasses) {
+			changedClassNames.add(each.getName());
+			// Tests load the inner classes, not the class they're folded into
+			if (each instanceof FoldedClass) {
+				changedClassNames.addAll(((FoldedClass) each).getClassNames());
+			}
+		}
+		Set<JavaClass> coveredTests = newHashSet();
+		for (JavaClass each : tests) {
+			Set<String> classes = loadedClasses.get(each.getName());
+			if ((classes == null) || !Collections.disjoint(classes, changedClassNames)) {
+				coveredTests.add(each);
+			}
+		}
+		return coveredTests;
+	}
+}
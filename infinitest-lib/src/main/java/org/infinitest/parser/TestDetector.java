@@ -31,7 +31,29 @@ public interface TestDetector {
 
 	Set<JavaClass> findTestsToRun(Collection<File> changedFiles);
 
+	/**
+	 * Removes the classes in the given class files from the index.
+	 * 
+	 * @return The tests that depended on the removed classes
+	 */
+	Set<JavaClass> removeClasses(Collection<File> removedFiles);
+
 	void setClasspathProvider(ClasspathProvider classpath);
 
 	Set<String> getCurrentTests();
+
+	/**
+	 * Finds the tests that were removed, stopped being tests or were filtered
+	 * out by the updates since the last call. Each test is only reported once.
+	 */
+	Set<String> findDisabledTests();
+
+	/**
+	 * Restores the index saved by a previous session, if there is one.
+	 * 
+	 * @return The timestamps the class files in the restored index had when
+	 *         it was saved. Files whose timestamps have changed since then
+	 *         still have to be reported as changed.
+	 */
+	Map<File, Long> restoreIndex();
 }
\ No newline at end of file
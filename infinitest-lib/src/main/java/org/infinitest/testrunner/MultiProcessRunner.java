@@ -30,6 +30,7 @@ import org.infinitest.testrunner.queue.*;
 
 public class MultiProcessRunner extends AbstractTestRunner {
 	private QueueConsumer queueConsumer;
+	private final ProcessConnectionFactory connectionFactory;
 
 	// DEBT Move into QueueConsumer.
 	private Queue<String> queue;
@@ -39,6 +40,7 @@ public class MultiProcessRunner extends AbstractTestRunner {
 	}
 
 	public MultiProcessRunner(final ProcessConnectionFactory remoteProcessManager, RuntimeEnvironment environment) {
+		connectionFactory = remoteProcessManager;
 		queue = new TestQueue(getTestPriority());
 
 		setRuntimeEnvironment(environment);
@@ -56,6 +58,14 @@ public class MultiProcessRunner extends AbstractTestRunner {
 		queueConsumer.setConcurrencySemaphore(getConcurrencySemaphore());
 	}
 
+	/**
+	 * When enabled, the test processes record which classes each test loads,
+	 * and return them with its results.
+	 */
+	public void setClassLoadingTracked(boolean tracked) {
+		connectionFactory.setClassLoadingTracked(tracked);
+	}
+
 	@Override
 	public void runTests(List<String> testNames) {
 		if (!testNames.isEmpty()) {
@@ -23,6 +23,7 @@ package org.infinitest.testrunner;
 
 import static com.google.common.collect.Maps.*;
 import static java.lang.System.*;
+import static org.infinitest.util.ClassNames.*;
 
 import java.util.*;
 
@@ -34,7 +35,7 @@ public class RunStatistics implements TestResultsListener {
 	}
 
 	private void update(TestEvent event) {
-		failureTimestamps.put(event.getTestName(), currentTimeMillis());
+		failureTimestamps.put(canonicalName(event.getTestName()), currentTimeMillis());
 	}
 
 	public long getLastFailureTime(String testName) {
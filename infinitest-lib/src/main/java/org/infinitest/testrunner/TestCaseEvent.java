@@ -80,4 +80,11 @@ public class TestCaseEvent {
 	public Iterable<MethodStats> getRunStats() {
 		return results.getMethodStats();
 	}
+
+	/**
+	 * The project classes the test loaded, or null if they weren't tracked.
+	 */
+	public Set<String> getLoadedClasses() {
+		return results.getLoadedClasses();
+	}
 }
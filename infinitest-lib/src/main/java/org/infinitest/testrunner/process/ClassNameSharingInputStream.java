@@ -0,0 +1,50 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.infinitest.util.ClassNames.*;
+
+import java.io.*;
+
+/**
+ * Reads the results sent back by the runner process, replacing each string
+ * that looks like a class name with the shared instance from
+ * {@link org.infinitest.util.ClassNames}. Every event for a test repeats the
+ * test's name, and without this each one arrives as a new copy.
+ */
+class ClassNameSharingInputStream extends ObjectInputStream {
+	ClassNameSharingInputStream(InputStream input) throws IOException {
+		super(input);
+		enableResolveObject(true);
+	}
+
+	@Override
+	protected Object resolveObject(Object obj) {
+		if (obj instanceof String) {
+			String value = (String) obj;
+			if (isClassName(value)) {
+				return canonicalName(value);
+			}
+		}
+		return obj;
+	}
+}
@@ -27,18 +27,32 @@ import static org.infinitest.util.InfinitestUtils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.jar.*;
 
 import org.infinitest.ConsoleOutputListener.OutputType;
 import org.infinitest.*;
 import org.infinitest.testrunner.*;
 
 public class NativeConnectionFactory implements ProcessConnectionFactory {
+	private static File agentJar;
+
 	private final Class<? extends NativeRunner> runnerClass;
+	private boolean classLoadingTracked;
 
 	public NativeConnectionFactory(Class<? extends NativeRunner> testRunnerClass) {
 		runnerClass = testRunnerClass;
 	}
 
+	/**
+	 * When enabled, the runner process is started with
+	 * {@link ClassLoadingRecorder} as a java agent. It records which classes
+	 * from the class output directories are loaded, and returns them with each
+	 * test's results.
+	 */
+	public void setClassLoadingTracked(boolean tracked) {
+		classLoadingTracked = tracked;
+	}
+
 	public ProcessConnection getConnection(RuntimeEnvironment environment, OutputStreamHandler outputListener) throws IOException {
 		TcpSocketProcessCommunicator communicator = createCommunicator();
 		Process process = startProcess(communicator.createSocket(), environment);
@@ -57,13 +71,16 @@ public class NativeConnectionFactory implements ProcessConnectionFactory {
 		return builder.start();
 	}
 
-	ProcessBuilder buildProcess(int port, RuntimeEnvironment environment) {
+	ProcessBuilder buildProcess(int port, RuntimeEnvironment environment) throws IOException {
 		// Could extract this to a class. Could then replace with:
 		// http://wiki.eclipse.org/FAQ_How_do_I_launch_a_Java_program%3F
 		ProcessBuilder builder = new ProcessBuilder();
 		builder.directory(environment.getWorkingDirectory());
 
 		List<String> arguments = environment.createProcessArguments();
+		if (classLoadingTracked) {
+			arguments.add("-javaagent:" + agentJar().getAbsolutePath() + "=" + classDirectoriesOf(environment));
+		}
 		arguments.addAll(buildRunnerArgs(port));
 		builder.command(arguments);
 
@@ -86,4 +103,31 @@ public class NativeConnectionFactory implements ProcessConnectionFactory {
 	private Collection<String> buildRunnerArgs(int portNum) {
 		return asList(TestRunnerProcess.class.getName(), runnerClass.getName(), String.valueOf(portNum));
 	}
+
+	// The agent class itself is loaded from the runner on the process
+	// classpath, so the jar only needs a manifest naming it. That works even
+	// when the runner isn't in a jar.
+	static synchronized File agentJar() throws IOException {
+		if ((agentJar == null) || !agentJar.exists()) {
+			File jar = File.createTempFile("infinitest-agent", ".jar");
+			jar.deleteOnExit();
+			Manifest manifest = new Manifest();
+			manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+			manifest.getMainAttributes().putValue("Premain-Class", ClassLoadingRecorder.class.getName());
+			new JarOutputStream(new FileOutputStream(jar), manifest).close();
+			agentJar = jar;
+		}
+		return agentJar;
+	}
+
+	private String classDirectoriesOf(RuntimeEnvironment environment) {
+		StringBuilder classDirectories = new StringBuilder();
+		for (File each : environment.getClassOutputDirs()) {
+			if (classDirectories.length() > 0) {
+				classDirectories.append(File.pathSeparator);
+			}
+			classDirectories.append(each.getAbsolutePath());
+		}
+		return classDirectories.toString();
+	}
 }
@@ -28,4 +28,10 @@ import org.infinitest.testrunner.*;
 
 public interface ProcessConnectionFactory {
 	ProcessConnection getConnection(RuntimeEnvironment environment, OutputStreamHandler consoleOutputHandler) throws IOException;
+
+	/**
+	 * When enabled, the processes started afterwards record which classes from
+	 * the class output directories each test loads.
+	 */
+	void setClassLoadingTracked(boolean tracked);
 }
\ No newline at end of file
@@ -63,7 +63,7 @@ public class TcpSocketProcessCommunicator {
 		try {
 			socket = serverSocket.accept();
 			log(Level.CONFIG, "Socket opened");
-			inStream = new ObjectInputStream(socket.getInputStream());
+			inStream = new ClassNameSharingInputStream(socket.getInputStream());
 			outStream = new ObjectOutputStream(socket.getOutputStream());
 		} catch (SocketTimeoutException e) {
 			log("Test runner process failed to start in a timely manner", e);
@@ -21,6 +21,8 @@
  */
 package org.infinitest.testrunner.queue;
 
+import static org.infinitest.util.ClassNames.*;
+
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -34,7 +36,7 @@ public class TestQueue extends PriorityBlockingQueue<String> {
 	@Override
 	public boolean add(String testName) {
 		if (!contains(testName)) {
-			return super.add(testName);
+			return super.add(canonicalName(testName));
 		}
 		return false;
 	}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.util;
+
+import static com.google.common.collect.Sets.*;
+
+import java.util.*;
+
+import com.google.common.collect.*;
+
+/**
+ * A shared table of class names. Every class name is held by the index, the
+ * test queue, the run statistics and the events that come back from the
+ * runner process, and in a large project most of those are copies of the same
+ * few thousand strings. Passing them through here collapses the copies into a
+ * single canonical instance. The table only holds weak references, so names
+ * that nothing else refers to any more are still collected.
+ */
+public class ClassNames {
+	private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+	private ClassNames() {
+	}
+
+	public static String canonicalName(String className) {
+		if (className == null) {
+			return null;
+		}
+		return NAMES.intern(className);
+	}
+
+	public static Set<String> canonicalNames(Collection<String> classNames) {
+		Set<String> canonicalNames = newHashSetWithExpectedSize(classNames.size());
+		for (String each : classNames) {
+			canonicalNames.add(canonicalName(each));
+		}
+		return canonicalNames;
+	}
+
+	/**
+	 * True if the string could be the binary name of a class. Used to decide
+	 * which strings are worth sharing when the strings aren't known to be class
+	 * names, so that messages and other one-off text aren't put in the table.
+	 */
+	public static boolean isClassName(String candidate) {
+		int length = candidate.length();
+		if ((length == 0) || (length > 512) || !Character.isJavaIdentifierStart(candidate.charAt(0))) {
+			return false;
+		}
+		for (int i = 1; i < length; i++) {
+			char each = candidate.charAt(i);
+			if (each == '.') {
+				if ((candidate.charAt(i - 1) == '.') || (i == length - 1)) {
+					return false;
+				}
+			} else if (!Character.isJavaIdentifierPart(each)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
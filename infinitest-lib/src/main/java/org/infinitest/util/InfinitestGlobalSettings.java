@@ -31,10 +31,14 @@ import java.util.logging.*;
 public class InfinitestGlobalSettings {
 	private static Level logLevel = Level.INFO;
 	private static long slowTestTimeLimit = 500;
+	private static long updateQuietPeriod = 250;
+	private static long maximumUpdateDelay = 2000;
 
 	public static void resetToDefaults() {
 		setLogLevel(INFO);
 		setSlowTestTimeLimit(500);
+		setUpdateQuietPeriod(250);
+		setMaximumUpdateDelay(2000);
 	}
 
 	public static Level getLogLevel() {
@@ -52,4 +56,28 @@ public class InfinitestGlobalSettings {
 	public static long getSlowTestTimeLimit() {
 		return slowTestTimeLimit;
 	}
+
+	/**
+	 * How long, in milliseconds, class files must stop changing before the
+	 * tests are run. Zero runs them as soon as each compile finishes.
+	 */
+	public static void setUpdateQuietPeriod(long quietPeriod) {
+		updateQuietPeriod = quietPeriod;
+	}
+
+	public static long getUpdateQuietPeriod() {
+		return updateQuietPeriod;
+	}
+
+	/**
+	 * The longest, in milliseconds, a steady stream of compiles can hold back
+	 * a test run.
+	 */
+	public static void setMaximumUpdateDelay(long maximumDelay) {
+		maximumUpdateDelay = maximumDelay;
+	}
+
+	public static long getMaximumUpdateDelay() {
+		return maximumUpdateDelay;
+	}
 }
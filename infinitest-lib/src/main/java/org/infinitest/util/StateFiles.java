@@ -0,0 +1,71 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.util;
+
+import static java.nio.file.StandardCopyOption.*;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Reads and writes the files a core saves its state in between sessions. A
+ * file is written to a temporary file next to it and then moved over it in one
+ * step, so a session that ends halfway through a write, or another core
+ * reading the file at the same time, only ever sees a complete file.
+ */
+public class StateFiles {
+	private StateFiles() {
+	}
+
+	public static byte[] readFully(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			byte[] contents = new byte[(int) input.length()];
+			input.readFully(contents);
+			return contents;
+		} finally {
+			input.close();
+		}
+	}
+
+	public static void replace(File file, byte[] contents) throws IOException {
+		Path target = file.getAbsoluteFile().toPath();
+		Path parent = target.getParent();
+		Files.createDirectories(parent);
+		Path tempFile = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+		try {
+			Files.write(tempFile, contents);
+			move(tempFile, target);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, ATOMIC_MOVE, REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			// Some network file systems can't, but can still replace the file
+			Files.move(source, target, REPLACE_EXISTING);
+		}
+	}
+}
@@ -43,6 +43,10 @@ class StubTestDetector implements TestDetector {
 		return emptySet();
 	}
 
+	public Set<JavaClass> removeClasses(Collection<File> removedFiles) {
+		return emptySet();
+	}
+
 	public boolean isEmpty() {
 		throw new UnsupportedOperationException();
 	}
@@ -58,4 +62,12 @@ class StubTestDetector implements TestDetector {
 	public Set<String> getCurrentTests() {
 		return emptySet();
 	}
+
+	public Set<String> findDisabledTests() {
+		return emptySet();
+	}
+
+	public Map<File, Long> restoreIndex() {
+		return emptyMap();
+	}
 }
\ No newline at end of file
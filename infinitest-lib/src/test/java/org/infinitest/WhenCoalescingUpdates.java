@@ -0,0 +1,113 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.infinitest.util.InfinitestGlobalSettings.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.*;
+
+public class WhenCoalescingUpdates {
+	private AtomicInteger updates;
+	private CountDownLatch firstUpdate;
+	private UpdateCoalescer coalescer;
+
+	@Before
+	public void inContext() {
+		updates = new AtomicInteger();
+		firstUpdate = new CountDownLatch(1);
+		coalescer = new UpdateCoalescer(new Runnable() {
+			public void run() {
+				updates.incrementAndGet();
+				firstUpdate.countDown();
+			}
+		});
+	}
+
+	@After
+	public void cleanup() {
+		coalescer.shutdown();
+		resetToDefaults();
+	}
+
+	@Test
+	public void shouldUpdateImmediatelyWithoutAQuietPeriod() {
+		setUpdateQuietPeriod(0);
+		coalescer.requestUpdate();
+		coalescer.requestUpdate();
+
+		assertEquals(2, updates.get());
+		assertEquals(0, coalescer.getCoalescedRequestCount());
+	}
+
+	@Test
+	public void shouldRunOneUpdateForABurstOfRequests() throws Exception {
+		setUpdateQuietPeriod(200);
+		for (int i = 0; i < 5; i++) {
+			coalescer.requestUpdate();
+		}
+		assertEquals(0, updates.get());
+
+		assertTrue(firstUpdate.await(5, SECONDS));
+		Thread.sleep(300);
+		assertEquals(1, updates.get());
+		assertEquals(5, coalescer.getRequestCount());
+		assertEquals(1, coalescer.getUpdateCount());
+		assertEquals(4, coalescer.getCoalescedRequestCount());
+	}
+
+	@Test
+	public void shouldNotHoldBackUpdatesLongerThanTheMaximumDelay() throws Exception {
+		setUpdateQuietPeriod(200);
+		setMaximumUpdateDelay(300);
+		long start = System.currentTimeMillis();
+		while ((updates.get() == 0) && ((System.currentTimeMillis() - start) < 5000)) {
+			coalescer.requestUpdate();
+			Thread.sleep(50);
+		}
+
+		assertEquals(1, updates.get());
+		assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+
+	@Test
+	public void shouldDropWaitingUpdatesWhenShutDown() throws Exception {
+		setUpdateQuietPeriod(100);
+		coalescer.requestUpdate();
+		coalescer.shutdown();
+
+		Thread.sleep(300);
+		assertEquals(0, updates.get());
+		assertEquals(1, coalescer.getDroppedRequestCount());
+		assertEquals(0, coalescer.getCoalescedRequestCount());
+	}
+
+	@Test
+	public void shouldWaitForCompilesToSettleByDefault() {
+		coalescer.requestUpdate();
+		assertEquals(0, updates.get());
+	}
+}
@@ -51,4 +51,10 @@ public class WhenCoreFailsWhileUpdating {
 		core.update();
 		assertTrue(testDetector.isCleared());
 	}
+
+	@Test
+	public void shouldNotSaveWhatTheChangeDetectorHasSeen() {
+		core.update();
+		verify(changeDetector, never()).saveState();
+	}
 }
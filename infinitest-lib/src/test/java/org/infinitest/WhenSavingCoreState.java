@@ -0,0 +1,74 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest;
+
+import static java.util.Arrays.*;
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+
+public class WhenSavingCoreState {
+	private File stateDirectory;
+
+	@Before
+	public void inContext() {
+		stateDirectory = new File("target/state");
+	}
+
+	@Test
+	public void shouldNameTheFilesAfterTheCore() {
+		File moduleA = builderFor("module-a", fakeEnvironment()).getStateFile(".index");
+		File moduleB = builderFor("module-b", fakeEnvironment()).getStateFile(".index");
+
+		assertEquals(stateDirectory, moduleA.getParentFile());
+		assertTrue(moduleA.getName().startsWith(".infinitest-module-a-"));
+		assertTrue(moduleA.getName().endsWith(".index"));
+		assertFalse(moduleA.equals(moduleB));
+	}
+
+	@Test
+	public void shouldKeepCoresWithTheSameNameApart() {
+		RuntimeEnvironment otherEnvironment = new RuntimeEnvironment(asList(new File("other/classes")), fakeWorkingDirectory(), systemClasspath(), currentJavaHome());
+
+		assertFalse(builderFor("core", fakeEnvironment()).getStateFile(".index").equals(builderFor("core", otherEnvironment).getStateFile(".index")));
+	}
+
+	@Test
+	public void shouldUseTheSameFilesInTheNextSession() {
+		assertEquals(builderFor("core", fakeEnvironment()).getStateFile(".timestamps"), builderFor("core", fakeEnvironment()).getStateFile(".timestamps"));
+	}
+
+	@Test
+	public void shouldOnlyUseCharactersThatAreSafeInFileNames() {
+		assertEquals(".infinitest-My_Module_1-", builderFor("My Module/1", fakeEnvironment()).getStateFile(".index").getName().substring(0, 24));
+	}
+
+	private InfinitestCoreBuilder builderFor(String coreName, RuntimeEnvironment environment) {
+		InfinitestCoreBuilder builder = new InfinitestCoreBuilder(environment, new FakeEventQueue());
+		builder.setName(coreName);
+		builder.setStateDirectory(stateDirectory);
+		return builder;
+	}
+}
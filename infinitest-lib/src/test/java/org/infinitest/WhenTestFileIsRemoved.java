@@ -21,25 +21,91 @@
  */
 package org.infinitest;
 
+import static com.google.common.collect.Iterables.*;
+import static com.google.common.collect.Sets.*;
+import static java.util.Arrays.*;
 import static org.infinitest.CoreDependencySupport.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
 
 import java.io.*;
 import java.util.*;
 
 import org.infinitest.changedetect.*;
+import org.infinitest.parser.*;
+import org.infinitest.testrunner.*;
 import org.junit.*;
 
+import com.fakeco.fakeproduct.simple.*;
+
 public class WhenTestFileIsRemoved {
+	private static final File REMOVED_FILE = new File("Removed.class");
+
+	private TestDetector testDetector;
+
+	@Before
+	public void inContext() {
+		testDetector = mock(TestDetector.class);
+	}
+
 	@Test
-	public void shouldReloadIndex() throws Exception {
-		InfinitestCore core = createCore(withRemovedFiles(), withNoTestsToRun());
+	public void shouldNotReloadIndex() throws Exception {
+		InfinitestCore core = createCore(withRemovedFiles(), testDetector);
 		EventSupport eventSupport = new EventSupport();
 		core.addTestQueueListener(eventSupport);
+
+		core.update();
+
+		assertEquals(0, eventSupport.getReloadCount());
+		verify(testDetector, never()).clear();
+	}
+
+	@Test
+	public void shouldRemoveClassesFromTheIndex() {
+		InfinitestCore core = createCore(withRemovedFiles(), testDetector);
+
 		core.update();
-		eventSupport.assertReloadOccured();
+
+		verify(testDetector).removeClasses(newHashSet(REMOVED_FILE));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void shouldRunTestsThatDependedOnTheRemovedClasses() {
+		TestRunner runner = mock(TestRunner.class);
+		Set<JavaClass> dependentTests = newHashSet((JavaClass) new FakeJavaClass(PassingTest.class.getName()));
+		when(testDetector.findTestsToRun(any(Collection.class))).thenReturn(Collections.<JavaClass> emptySet());
+		when(testDetector.removeClasses(any(Collection.class))).thenReturn(dependentTests);
+		DefaultInfinitestCore core = new DefaultInfinitestCore(runner, new ControlledEventQueue());
+		core.setChangeDetector(withRemovedFiles());
+		core.setTestDetector(testDetector);
+
+		assertEquals(1, core.update());
+
+		verify(runner).runTests(asList(PassingTest.class.getName()));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void shouldDisableRemovedTests() {
+		when(testDetector.findDisabledTests()).thenReturn(setify("RemovedTest"));
+		when(testDetector.findTestsToRun(any(Collection.class))).thenReturn(Collections.<JavaClass> emptySet());
+		DefaultInfinitestCore core = createCore(withRemovedFiles(), testDetector);
+		final Set<String> disabledTests = newHashSet();
+		core.addDisabledTestListener(new DisabledTestListener() {
+			public void testsDisabled(Collection<String> testNames) {
+				disabledTests.addAll(testNames);
+			}
+		});
+
+		core.update();
+
+		assertEquals("RemovedTest", getOnlyElement(disabledTests));
 	}
 
 	private ChangeDetector withRemovedFiles() {
-		return new FakeChangeDetector(Collections.<File> emptySet(), true);
+		return new FakeChangeDetector(Collections.<File> emptySet(), newHashSet(REMOVED_FILE));
 	}
 }
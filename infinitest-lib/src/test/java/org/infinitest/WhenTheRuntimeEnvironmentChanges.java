@@ -27,6 +27,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
+import java.io.*;
 import java.util.*;
 
 import org.infinitest.changedetect.*;
@@ -65,6 +66,23 @@ public class WhenTheRuntimeEnvironmentChanges {
 		verify(changeDetector).clear();
 	}
 
+	@Test
+	public void shouldOnlyLookForFilesChangedSinceTheIndexWasSavedWhenStartingUp() {
+		Map<File, Long> unchangedFiles = Collections.singletonMap(new File("Unchanged.class"), 1L);
+		TestDetector testDetector = mock(TestDetector.class);
+		when(testDetector.restoreIndex()).thenReturn(unchangedFiles);
+		ChangeDetector changeDetector = mock(ChangeDetector.class);
+
+		DefaultInfinitestCore core = new DefaultInfinitestCore(mock(TestRunner.class), new FakeEventQueue());
+		core.setTestDetector(testDetector);
+		core.setChangeDetector(changeDetector);
+		core.setRuntimeEnvironment(fakeEnvironment());
+		core.reload();
+
+		verify(changeDetector, times(1)).seed(unchangedFiles);
+		verify(testDetector, times(2)).restoreIndex();
+	}
+
 	@Test
 	public void shouldDoNothingIfEnvironmentIsNotActuallyDifferent() throws Exception {
 		InfinitestCore core = createCore(withNoChangedFiles(), withNoTestsToRun());
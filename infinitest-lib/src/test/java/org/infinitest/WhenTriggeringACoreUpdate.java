@@ -43,7 +43,7 @@ public class WhenTriggeringACoreUpdate {
 		updatedFiles = newArrayList();
 		core = new DefaultInfinitestCore(mock(TestRunner.class), new ControlledEventQueue());
 		testDetector = mock(TestDetector.class);
-		when(testDetector.getCurrentTests()).thenReturn(Collections.<String> emptySet());
+		when(testDetector.findDisabledTests()).thenReturn(Collections.<String> emptySet());
 		core.setTestDetector(testDetector);
 	}
 
@@ -0,0 +1,134 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.io.Files.*;
+import static java.lang.System.*;
+import static java.util.Arrays.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+
+/**
+ * Compares polling with watching for changes, on a synthetic class directory
+ * of 30000 class files. Each update rewrites a few class files, then times how
+ * long the detector takes to find them and counts the file system calls it
+ * makes: directory listings and timestamp checks.
+ */
+public class ChangeDetectionHarness {
+	private static final int PACKAGE_COUNT = 300;
+	private static final int CLASSES_PER_PACKAGE = 100;
+	private static final int UPDATE_COUNT = 20;
+	private static final int CHANGES_PER_UPDATE = 5;
+
+	public static void main(String[] args) throws IOException {
+		File classDir = createTempDir();
+		try {
+			List<File> classFiles = createClassFiles(classDir);
+			ClasspathProvider classpath = new StandaloneClasspath(asList(classDir), "");
+			System.out.println("Detector\tFiles\tUpdate(ms)\tListings/update\tStats/update\tFound");
+			for (int run = 0; run < 3; run++) {
+				CountingFileChangeDetector polling = new CountingFileChangeDetector();
+				measure("polling", polling, polling, classpath, classFiles);
+				CountingFileChangeDetector scanner = new CountingFileChangeDetector();
+				measure("watching", new WatchingChangeDetector(scanner), scanner, classpath, classFiles);
+			}
+		} finally {
+			deleteRecursively(classDir.getCanonicalFile());
+		}
+	}
+
+	private static void measure(String name, ChangeDetector detector, CountingFileChangeDetector counter, ClasspathProvider classpath, List<File> classFiles) throws IOException {
+		detector.setClasspathProvider(classpath);
+		detector.findChangedFiles();
+		detector.findRemovedFiles();
+		counter.reset();
+
+		Random random = new Random(UPDATE_COUNT);
+		long totalTime = 0;
+		int found = 0;
+		for (int i = 0; i < UPDATE_COUNT; i++) {
+			for (int j = 0; j < CHANGES_PER_UPDATE; j++) {
+				rewrite(classFiles.get(random.nextInt(classFiles.size())));
+			}
+			long start = nanoTime();
+			found += detector.findChangedFiles().size();
+			detector.findRemovedFiles();
+			totalTime += nanoTime() - start;
+		}
+		System.out.println(name + "\t" + classFiles.size() + "\t" + (totalTime / UPDATE_COUNT / 1000000.0) + "\t" + (counter.listings / UPDATE_COUNT) + "\t" + (counter.stats / UPDATE_COUNT) + "\t" + found);
+	}
+
+	static List<File> createClassFiles(File classDir) throws IOException {
+		List<File> classFiles = new ArrayList<File>();
+		for (int i = 0; i < PACKAGE_COUNT; i++) {
+			File packageDir = new File(classDir, "com/synthetic/package" + i);
+			packageDir.mkdirs();
+			for (int j = 0; j < CLASSES_PER_PACKAGE; j++) {
+				File classFile = new File(packageDir, "Class" + j + ".class");
+				write(classFile, 0);
+				classFiles.add(classFile);
+			}
+		}
+		return classFiles;
+	}
+
+	private static void rewrite(File classFile) throws IOException {
+		long lastModified = classFile.lastModified();
+		write(classFile, lastModified);
+		classFile.setLastModified(lastModified + 1000);
+	}
+
+	private static void write(File classFile, long version) throws IOException {
+		DataOutputStream output = new DataOutputStream(new FileOutputStream(classFile));
+		try {
+			output.writeInt(0xCAFEBABE);
+			output.writeLong(version);
+		} finally {
+			output.close();
+		}
+	}
+
+	private static class CountingFileChangeDetector extends FileChangeDetector {
+		private int listings;
+		private int stats;
+
+		void reset() {
+			listings = 0;
+			stats = 0;
+		}
+
+		@Override
+		protected File[] childrenOf(File directory) {
+			listings++;
+			return super.childrenOf(directory);
+		}
+
+		@Override
+		protected long getModificationTimestamp(File classFile) {
+			stats++;
+			return super.getModificationTimestamp(classFile);
+		}
+	}
+}
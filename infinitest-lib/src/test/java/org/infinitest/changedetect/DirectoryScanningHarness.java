@@ -0,0 +1,71 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.io.Files.*;
+import static java.lang.System.*;
+import static java.util.Arrays.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+
+/**
+ * Measures how many files per second the polling detectors get through when
+ * rescanning a synthetic class directory of 30000 class files in which
+ * nothing has changed, which is what most updates of a large project look
+ * like to them.
+ */
+public class DirectoryScanningHarness {
+	private static final int SCAN_COUNT = 20;
+
+	public static void main(String[] args) throws IOException {
+		File classDir = createTempDir();
+		try {
+			List<File> classFiles = ChangeDetectionHarness.createClassFiles(classDir);
+			ClasspathProvider classpath = new StandaloneClasspath(asList(classDir), "");
+			System.out.println("Detector\tFiles\tScan(ms)\tFiles/sec");
+			for (int run = 0; run < 3; run++) {
+				measure("java.io", new FileChangeDetector(), classpath, classFiles.size());
+				for (int threads = 1; threads <= 8; threads *= 2) {
+					measure("nio x" + threads, new ParallelFileChangeDetector(threads), classpath, classFiles.size());
+				}
+			}
+		} finally {
+			deleteRecursively(classDir.getCanonicalFile());
+		}
+	}
+
+	private static void measure(String name, ChangeDetector detector, ClasspathProvider classpath, int fileCount) throws IOException {
+		detector.setClasspathProvider(classpath);
+		detector.findChangedFiles();
+		long start = nanoTime();
+		for (int i = 0; i < SCAN_COUNT; i++) {
+			if (!detector.findChangedFiles().isEmpty()) {
+				throw new IllegalStateException("Nothing should have changed");
+			}
+		}
+		double scanMillis = (nanoTime() - start) / 1000000.0 / SCAN_COUNT;
+		System.out.println(name + "\t" + fileCount + "\t" + scanMillis + "\t" + (long) (fileCount / (scanMillis / 1000)));
+	}
+}
@@ -30,23 +30,25 @@ import org.infinitest.*;
 
 public class FakeChangeDetector implements ChangeDetector {
 	private Set<File> changedFiles;
-	private boolean filesRemoved;
+	private Set<File> removedFiles;
 
-	public FakeChangeDetector(Set<File> changedFiles, boolean filesRemoved) {
+	public FakeChangeDetector(Set<File> changedFiles, Set<File> removedFiles) {
 		this.changedFiles = changedFiles;
-		this.filesRemoved = filesRemoved;
+		this.removedFiles = removedFiles;
 	}
 
 	public FakeChangeDetector() {
-		changedFiles = emptySet();
+		this(Collections.<File> emptySet(), Collections.<File> emptySet());
 	}
 
 	public void clear() {
 		// nothing to do here
 	}
 
-	public boolean filesWereRemoved() {
-		return filesRemoved;
+	public Set<File> findRemovedFiles() {
+		Set<File> files = removedFiles;
+		removedFiles = emptySet();
+		return files;
 	}
 
 	/**
@@ -60,4 +62,12 @@ public class FakeChangeDetector implements ChangeDetector {
 	public void setClasspathProvider(ClasspathProvider classpath) {
 		// nothing to do here
 	}
+
+	public void seed(Map<File, Long> timestamps) {
+		// nothing to do here
+	}
+
+	public void saveState() {
+		// nothing to do here
+	}
 }
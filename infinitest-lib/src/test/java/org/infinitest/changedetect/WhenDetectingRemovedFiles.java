@@ -0,0 +1,119 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.io.Files.*;
+import static java.util.Arrays.*;
+import static java.util.Collections.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.junit.*;
+
+public class WhenDetectingRemovedFiles {
+	private File classDir;
+	private File productFile;
+	private File testFile;
+	private File hiddenFile;
+	private boolean packagesUnreadable;
+	private FileChangeDetector detector;
+
+	@Before
+	public void inContext() throws IOException {
+		classDir = createTempDir();
+		productFile = writeFile("com/fakeco/FakeProduct.class");
+		testFile = writeFile("com/fakeco/FakeProductTest.class");
+		detector = new FileChangeDetector() {
+			@Override
+			protected File[] childrenOf(File directory) {
+				if (packagesUnreadable && directory.getName().equals("fakeco")) {
+					return null;
+				}
+				List<File> children = new ArrayList<File>(asList(super.childrenOf(directory)));
+				children.remove(hiddenFile);
+				return children.toArray(new File[children.size()]);
+			}
+		};
+		detector.setClasspathProvider(new StandaloneClasspath(asList(classDir), classDir.getPath()));
+		detector.findChangedFiles();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		deleteRecursively(classDir.getCanonicalFile());
+	}
+
+	@Test
+	public void shouldReportFilesThatTheLastWalkDidNotFind() throws IOException {
+		assertTrue(testFile.delete());
+		detector.findChangedFiles();
+
+		assertEquals(singleton(testFile), detector.findRemovedFiles());
+	}
+
+	@Test
+	public void shouldNotAskTheFileSystemAboutFilesTheWalkDidNotFind() throws IOException {
+		// The file is still there, but the walk is all that's consulted
+		hiddenFile = testFile;
+		detector.findChangedFiles();
+
+		assertEquals(singleton(testFile), detector.findRemovedFiles());
+	}
+
+	@Test
+	public void shouldCheckEachFileWhenPartOfTheTreeCouldNotBeWalked() throws IOException {
+		packagesUnreadable = true;
+		assertTrue(testFile.delete());
+		detector.findChangedFiles();
+
+		assertEquals(singleton(testFile), detector.findRemovedFiles());
+	}
+
+	@Test
+	public void shouldCheckEachFileWhenTheTreeWasNotWalkedSinceTheLastCheck() throws IOException {
+		detector.findChangedFiles();
+		assertTrue(detector.findRemovedFiles().isEmpty());
+
+		assertTrue(productFile.delete());
+		assertEquals(singleton(productFile), detector.findRemovedFiles());
+	}
+
+	@Test
+	public void shouldReportEachRemovedFileOnce() throws IOException {
+		assertTrue(testFile.delete());
+		detector.findChangedFiles();
+		detector.findRemovedFiles();
+		detector.findChangedFiles();
+
+		assertTrue(detector.findRemovedFiles().isEmpty());
+	}
+
+	private File writeFile(String path) throws IOException {
+		File file = new File(classDir, path);
+		createParentDirs(file);
+		write(path.getBytes(), file);
+		return file;
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.io.Files.*;
+import static java.util.Arrays.*;
+import static java.util.Collections.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.junit.*;
+
+public class WhenSavingTheTimestampIndex {
+	private File classDir;
+	private File stateFile;
+	private File productFile;
+	private File testFile;
+	private ClasspathProvider classpath;
+	private Map<File, Long> indexedTimestamps;
+
+	@Before
+	public void inContext() throws IOException {
+		classDir = createTempDir();
+		stateFile = new File(classDir.getParentFile(), classDir.getName() + ".timestamps");
+		productFile = writeFile("com/fakeco/FakeProduct.class", "product");
+		testFile = writeFile("com/fakeco/FakeProductTest.class", "test");
+		classpath = new StandaloneClasspath(asList(classDir), classDir.getPath());
+		indexedTimestamps = new HashMap<File, Long>();
+		indexedTimestamps.put(productFile, productFile.lastModified());
+		indexedTimestamps.put(testFile, testFile.lastModified());
+
+		FileChangeDetector lastSession = createDetector();
+		lastSession.findChangedFiles();
+		lastSession.saveState();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		deleteRecursively(classDir.getCanonicalFile());
+		stateFile.delete();
+	}
+
+	@Test
+	public void shouldOnlyReportFilesThatChangedSinceTheLastSession() throws IOException {
+		writeFile("com/fakeco/FakeProduct.class", "changed product");
+
+		assertEquals(singleton(productFile), nextSession(productFile, testFile).findChangedFiles());
+	}
+
+	@Test
+	public void shouldNotReportClassFilesThatWereRewrittenWithTheSameContents() throws IOException {
+		productFile.setLastModified(productFile.lastModified() + 2000);
+
+		assertTrue(nextSession(productFile, testFile).findChangedFiles().isEmpty());
+	}
+
+	@Test
+	public void shouldReportClassFilesThatChangedAfterTheIndexWasSaved() throws IOException {
+		writeFile("com/fakeco/FakeProduct.class", "changed product");
+		FileChangeDetector lastSession = nextSession(productFile, testFile);
+		lastSession.findChangedFiles();
+		// The index never got to save the change
+		lastSession.saveState();
+
+		assertEquals(singleton(productFile), nextSession(productFile, testFile).findChangedFiles());
+	}
+
+	@Test
+	public void shouldReportClassFilesTheIndexDoesNotKnowAbout() throws IOException {
+		assertEquals(singleton(testFile), nextSession(productFile).findChangedFiles());
+	}
+
+	@Test
+	public void shouldRestoreFilesThatAreNotClassFiles() throws IOException {
+		writeFile("com/fakeco/messages.properties", "message=Hello");
+		FileChangeDetector detector = createDetector();
+		detector.findChangedFiles();
+		detector.saveState();
+
+		assertTrue(nextSession(productFile, testFile).findChangedFiles().isEmpty());
+	}
+
+	@Test
+	public void shouldReportFilesRemovedSinceTheLastSession() throws IOException {
+		testFile.delete();
+
+		assertEquals(singleton(testFile), nextSession(productFile, testFile).findRemovedFiles());
+	}
+
+	@Test
+	public void shouldIgnoreCorruptIndexFiles() throws IOException {
+		FileWriter writer = new FileWriter(stateFile);
+		writer.write("Not a timestamp index");
+		writer.close();
+		productFile.setLastModified(productFile.lastModified() + 2000);
+
+		assertEquals(singleton(productFile), nextSession(productFile, testFile).findChangedFiles());
+	}
+
+	@Test
+	public void shouldIgnoreIndexesSavedWithADifferentClasspath() throws IOException {
+		productFile.setLastModified(productFile.lastModified() + 2000);
+		FileChangeDetector detector = createDetector();
+		detector.setClasspathProvider(new StandaloneClasspath(asList(classDir), "changed.jar"));
+		detector.seed(timestampsOf(productFile, testFile));
+
+		assertEquals(singleton(productFile), detector.findChangedFiles());
+	}
+
+	@Test
+	public void shouldReportJarsOnceInEachSession() throws IOException {
+		File jar = new File(classDir, "library.jar");
+		write("jar".getBytes(), jar);
+		classpath = new StandaloneClasspath(asList(classDir), classDir.getPath() + File.pathSeparator + jar.getPath());
+		FileChangeDetector lastSession = nextSession(productFile, testFile);
+		assertEquals(singleton(jar), lastSession.findChangedFiles());
+		lastSession.saveState();
+
+		// The test detector needs to see the jar before it can tell which of
+		// its classes change later
+		FileChangeDetector detector = nextSession(productFile, testFile);
+		assertEquals(singleton(jar), detector.findChangedFiles());
+		assertTrue(detector.findChangedFiles().isEmpty());
+	}
+
+	private FileChangeDetector createDetector() {
+		FileChangeDetector detector = new FileChangeDetector();
+		detector.setStateFile(stateFile);
+		detector.setClasspathProvider(classpath);
+		return detector;
+	}
+
+	// The timestamps the index had for its class files when it was saved
+	private FileChangeDetector nextSession(File... indexedClassFiles) {
+		FileChangeDetector detector = createDetector();
+		detector.seed(timestampsOf(indexedClassFiles));
+		return detector;
+	}
+
+	private Map<File, Long> timestampsOf(File... files) {
+		Map<File, Long> timestamps = new HashMap<File, Long>();
+		for (File each : files) {
+			timestamps.put(each, indexedTimestamps.get(each));
+		}
+		return timestamps;
+	}
+
+	private File writeFile(String path, String contents) throws IOException {
+		File file = new File(classDir, path.replace('/', File.separatorChar));
+		file.getParentFile().mkdirs();
+		long lastModified = file.lastModified();
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+		file.setLastModified(Math.max(file.lastModified(), lastModified + 2000));
+		return file;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.io.Files.*;
+import static java.util.Arrays.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.junit.*;
+
+public class WhenScanningClassDirectoriesInParallel {
+	private File classDir;
+	private ParallelFileChangeDetector detector;
+
+	@Before
+	public void inContext() {
+		classDir = createTempDir();
+		detector = new ParallelFileChangeDetector(4);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		deleteRecursively(classDir.getCanonicalFile());
+	}
+
+	@Test
+	public void shouldFindTheSameFilesAsTheSerialScan() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			writeFile("com/fakeco/package" + i + "/FakeClass.class");
+			writeFile("com/fakeco/package" + i + "/inner/InnerClass.CLASS");
+			writeFile("package" + i + "/messages.properties");
+		}
+		writeFile("TopLevel.class");
+		writeFile(".svn/Ignored.class");
+		writeFile("com/fakeco/_hidden/Ignored.class");
+		FileChangeDetector serialDetector = new FileChangeDetector();
+		serialDetector.setClasspathProvider(classpath());
+		detector.setClasspathProvider(classpath());
+
+		Set<File> changedFiles = detector.findChangedFiles();
+
+		assertEquals(serialDetector.findChangedFiles(), changedFiles);
+		assertEquals(31, changedFiles.size());
+	}
+
+	@Test
+	public void shouldOnlyFindResourcesWhenTheyAreTracked() throws IOException {
+		File classFile = writeFile("com/fakeco/FakeClass.class");
+		writeFile("com/fakeco/messages.properties");
+		detector.setResourceTracking(false);
+		detector.setClasspathProvider(classpath());
+
+		assertEquals(Collections.singleton(classFile), detector.findChangedFiles());
+	}
+
+	@Test
+	public void shouldFindFilesWithNewTimestamps() throws IOException {
+		File classFile = writeFile("com/fakeco/FakeClass.class");
+		writeFile("com/fakeco/OtherClass.class");
+		detector.setClasspathProvider(classpath());
+		detector.findChangedFiles();
+
+		writeFile("com/fakeco/FakeClass.class", "changed");
+		classFile.setLastModified(classFile.lastModified() + 2000);
+
+		assertEquals(Collections.singleton(classFile), detector.findChangedFiles());
+		assertTrue(detector.findChangedFiles().isEmpty());
+	}
+
+	private ClasspathProvider classpath() {
+		return new StandaloneClasspath(asList(classDir), "");
+	}
+
+	private File writeFile(String path) throws IOException {
+		return writeFile(path, path);
+	}
+
+	private File writeFile(String path, String contents) throws IOException {
+		File file = new File(classDir, path.replace('/', File.separatorChar));
+		file.getParentFile().mkdirs();
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.io.Files.*;
+import static java.util.Arrays.*;
+import static java.util.Collections.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.junit.*;
+
+public class WhenSharingDirectoryScans {
+	private File classDir;
+	private File productFile;
+	private DirectoryScanService scanService;
+	private FileChangeDetector firstCore;
+	private FileChangeDetector secondCore;
+
+	@Before
+	public void inContext() throws IOException {
+		classDir = createTempDir();
+		productFile = writeFile("com/fakeco/FakeProduct.class", "product");
+		scanService = new DirectoryScanService();
+		firstCore = createDetector(classDir);
+		secondCore = createDetector(classDir);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		deleteRecursively(classDir.getCanonicalFile());
+	}
+
+	@Test
+	public void shouldWalkEachDirectoryOncePerCycle() throws IOException {
+		assertEquals(singleton(productFile), firstCore.findChangedFiles());
+		assertEquals(singleton(productFile), secondCore.findChangedFiles());
+
+		assertEquals(1, scanService.getScanCount());
+	}
+
+	@Test
+	public void shouldGiveEveryDetectorTheChangesFromTheNextCycle() throws IOException {
+		firstCore.findChangedFiles();
+		secondCore.findChangedFiles();
+
+		writeFile("com/fakeco/FakeProduct.class", "changed product");
+		productFile.setLastModified(productFile.lastModified() + 2000);
+		scanService.startCycle();
+
+		assertEquals(singleton(productFile), firstCore.findChangedFiles());
+		assertEquals(singleton(productFile), secondCore.findChangedFiles());
+		assertEquals(2, scanService.getScanCount());
+	}
+
+	@Test
+	public void shouldWalkAgainWhenADetectorLooksTwiceInOneCycle() throws IOException {
+		firstCore.findChangedFiles();
+
+		File newFile = writeFile("com/fakeco/NewProduct.class", "new product");
+
+		assertEquals(singleton(newFile), firstCore.findChangedFiles());
+		assertEquals(2, scanService.getScanCount());
+	}
+
+	@Test
+	public void shouldReportFilesUnderTheClassDirectoryEachDetectorWasGiven() throws IOException {
+		FileChangeDetector otherPath = createDetector(new File(classDir, "."));
+		firstCore.findChangedFiles();
+
+		Set<File> changedFiles = otherPath.findChangedFiles();
+
+		assertEquals(1, scanService.getScanCount());
+		assertEquals(singleton(new File(new File(classDir, "."), "com/fakeco/FakeProduct.class")), changedFiles);
+	}
+
+	@Test
+	public void shouldOnlyReportResourcesToDetectorsThatTrackThem() throws IOException {
+		writeFile("com/fakeco/messages.properties", "message=Hello");
+		secondCore.setResourceTracking(false);
+
+		assertEquals(2, firstCore.findChangedFiles().size());
+		assertEquals(singleton(productFile), secondCore.findChangedFiles());
+	}
+
+	@Test
+	public void shouldFindRemovedFilesFromTheSharedWalk() throws IOException {
+		firstCore.findChangedFiles();
+		assertTrue(productFile.delete());
+		scanService.startCycle();
+
+		firstCore.findChangedFiles();
+
+		assertEquals(singleton(productFile), firstCore.findRemovedFiles());
+	}
+
+	private FileChangeDetector createDetector(File classDirectory) {
+		FileChangeDetector detector = new FileChangeDetector();
+		detector.setScanService(scanService);
+		detector.setClasspathProvider(new StandaloneClasspath(asList(classDirectory), classDirectory.getPath()));
+		return detector;
+	}
+
+	private File writeFile(String path, String contents) throws IOException {
+		File file = new File(classDir, path);
+		createParentDirs(file);
+		write(contents.getBytes(), file);
+		return file;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.changedetect;
+
+import static com.google.common.io.Files.*;
+import static java.lang.System.*;
+import static java.util.Arrays.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+import org.junit.*;
+
+public class WhenWatchingForChangedFiles {
+	// Events arrive on another thread, so give them time to turn up
+	private static final long EVENT_TIMEOUT = 5000;
+
+	private File classDir;
+	private File existingClass;
+	private WatchingChangeDetector detector;
+
+	@Before
+	public void inContext() throws IOException {
+		classDir = createTempDir();
+		existingClass = writeClass("com/fakeco/Existing.class");
+		detector = new WatchingChangeDetector();
+		detector.setClasspathProvider(new StandaloneClasspath(asList(classDir), ""));
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		deleteRecursively(classDir.getCanonicalFile());
+	}
+
+	@Test
+	public void shouldScanEverythingTheFirstTime() throws IOException {
+		assertEquals(Collections.singleton(existingClass), detector.findChangedFiles());
+		assertTrue(detector.findChangedFiles().isEmpty());
+	}
+
+	@Test
+	public void shouldFindNewClassFiles() throws IOException {
+		detector.findChangedFiles();
+
+		File newClass = writeClass("com/fakeco/NewClass.class");
+
+		assertTrue(changedFilesInclude(newClass));
+	}
+
+	@Test
+	public void shouldFindModifiedClassFiles() throws IOException {
+		detector.findChangedFiles();
+
+		write(existingClass, "changed");
+		existingClass.setLastModified(existingClass.lastModified() + 2000);
+
+		assertTrue(changedFilesInclude(existingClass));
+	}
+
+	@Test
+	public void shouldFindClassFilesInNewPackages() throws IOException {
+		detector.findChangedFiles();
+
+		File newClass = writeClass("com/fakeco/newpackage/NewClass.class");
+
+		assertTrue(changedFilesInclude(newClass));
+	}
+
+	@Test
+	public void shouldFindRemovedClassFiles() throws IOException {
+		detector.findChangedFiles();
+		detector.findRemovedFiles();
+
+		existingClass.delete();
+
+		assertTrue(removedFilesInclude(existingClass));
+	}
+
+	@Test
+	public void shouldFindClassFilesInRemovedPackages() throws IOException {
+		File otherClass = writeClass("com/fakeco/other/Other.class");
+		detector.findChangedFiles();
+		detector.findRemovedFiles();
+
+		deleteRecursively(otherClass.getParentFile().getCanonicalFile());
+
+		assertTrue(removedFilesInclude(otherClass));
+	}
+
+	@Test
+	public void shouldFindClassFilesAfterTheClassDirectoryIsRebuilt() throws IOException {
+		detector.findChangedFiles();
+		deleteDirectoryContents(classDir.getCanonicalFile());
+		classDir.delete();
+		assertTrue(removedFilesInclude(existingClass));
+
+		File rebuiltClass = writeClass("com/fakeco/Existing.class");
+
+		assertTrue(changedFilesInclude(rebuiltClass));
+	}
+
+	@Test
+	public void shouldOnlyWaitForEventsWhileFilesAreBeingWritten() throws IOException {
+		detector.findChangedFiles();
+		detector.findChangedFiles();
+		assertEquals(0, detector.getDeliveryWaitCount());
+
+		File newClass = writeClass("com/fakeco/NewClass.class");
+
+		assertTrue(changedFilesInclude(newClass));
+		assertTrue(detector.getDeliveryWaitCount() > 0);
+	}
+
+	private File writeClass(String path) throws IOException {
+		File classFile = new File(classDir, path.replace('/', File.separatorChar));
+		classFile.getParentFile().mkdirs();
+		write(classFile, path);
+		return classFile;
+	}
+
+	private void write(File file, String contents) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private boolean changedFilesInclude(File file) throws IOException {
+		long deadline = currentTimeMillis() + EVENT_TIMEOUT;
+		while (currentTimeMillis() < deadline) {
+			if (detector.findChangedFiles().contains(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean removedFilesInclude(File file) {
+		long deadline = currentTimeMillis() + EVENT_TIMEOUT;
+		while (currentTimeMillis() < deadline) {
+			if (detector.findRemovedFiles().contains(file)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static java.lang.System.*;
+
+import java.util.*;
+
+/**
+ * Indexes progressively larger synthetic workspaces and prints the time taken.
+ * With a name keyed index, doubling the number of classes should roughly
+ * double the indexing time, rather than quadrupling it.
+ */
+public class ClassFileIndexPerformanceHarness {
+	private static final int IMPORTS_PER_CLASS = 10;
+	private static final int LOOKUP_COUNT = 100000;
+
+	public static void main(String[] args) {
+		System.out.println("Classes\tIndex(ms)\tLookups(ms)\tIndexedClasses(ms)");
+		for (int classCount = 1000; classCount <= 64000; classCount *= 2) {
+			SyntheticWorkspace workspace = new SyntheticWorkspace(classCount, IMPORTS_PER_CLASS, 10);
+			ClassFileIndex index = new ClassFileIndex(workspace);
+
+			long start = currentTimeMillis();
+			index.findClasses(workspace.getClassFiles());
+			long indexTime = currentTimeMillis() - start;
+
+			Random random = new Random(classCount);
+			start = currentTimeMillis();
+			for (int i = 0; i < LOOKUP_COUNT; i++) {
+				index.findJavaClass(SyntheticWorkspace.nameOf(random.nextInt(classCount)));
+			}
+			long lookupTime = currentTimeMillis() - start;
+
+			start = currentTimeMillis();
+			int indexedClasses = index.getIndexedClasses().size();
+			long indexedClassesTime = currentTimeMillis() - start;
+
+			System.out.println(indexedClasses + "\t" + indexTime + "\t" + lookupTime + "\t" + indexedClassesTime);
+		}
+	}
+}
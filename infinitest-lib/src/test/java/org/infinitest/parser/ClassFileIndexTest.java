@@ -22,6 +22,7 @@
 package org.infinitest.parser;
 
 import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Sets.*;
 import static java.util.Arrays.*;
 import static org.infinitest.util.FakeEnvironments.*;
 import static org.infinitest.util.InfinitestTestUtils.*;
@@ -80,12 +81,187 @@ public class ClassFileIndexTest {
 		verify(mockClass).dispose();
 	}
 
+	@Test
+	public void shouldListIndexedClassesByName() {
+		JavaClass mockClass = mock(JavaClass.class);
+		when(mockClass.getName()).thenReturn("FakeClass");
+		when(mockClass.getImports()).thenReturn(Collections.<String> emptyList());
+		when(mockClass.locatedInClassFile()).thenReturn(true);
+		when(builder.createClass("FakeClass")).thenReturn(mockClass);
+
+		index.findJavaClass("FakeClass");
+
+		assertEquals(Collections.singleton("FakeClass"), index.getIndexedClasses());
+		assertSame(mockClass, index.findJavaClass("FakeClass"));
+		verify(builder, times(1)).createClass("FakeClass");
+	}
+
+	@Test
+	public void shouldForgetIndexedClassesWhenCleared() {
+		when(builder.loadClass(any(File.class))).thenReturn(new FakeJavaClass("FakeProduct"));
+		index.findClasses(asList(getFileForClass(FakeProduct.class)));
+
+		index.clear();
+
+		assertTrue(index.getIndexedClasses().isEmpty());
+	}
+
+	@Test
+	public void shouldRemoveClassesInDeletedFilesAndReturnTheirDependents() {
+		SyntheticWorkspace workspace = new SyntheticWorkspace(100, 3, 10);
+		ClassFileIndex index = new ClassFileIndex(workspace);
+		index.findClasses(workspace.getClassFiles());
+		JavaClass removedClass = index.findJavaClass(SyntheticWorkspace.nameOf(0));
+		Set<JavaClass> expectedDependents = index.findChangedParents(Collections.singleton(removedClass));
+		expectedDependents.remove(removedClass);
+
+		Set<JavaClass> dependents = index.removeClasses(asList(removedClass.getClassFile()));
+
+		assertEquals(expectedDependents, dependents);
+		assertFalse(index.getIndexedClasses().contains(removedClass.getName()));
+		assertEquals(99, index.getIndexedClasses().size());
+	}
+
+	@Test
+	public void shouldIgnoreRemovedFilesThatWereNeverIndexed() {
+		SyntheticWorkspace workspace = new SyntheticWorkspace(10, 3, 10);
+		ClassFileIndex index = new ClassFileIndex(workspace);
+		index.findClasses(workspace.getClassFiles());
+
+		assertTrue(index.removeClasses(asList(new File("Missing.class"))).isEmpty());
+		assertEquals(10, index.getIndexedClasses().size());
+	}
+
+	@Test
+	public void shouldOnlyFindDirectParentsOfClassesWhoseApiDidNotChange() {
+		File changedFile = new File("Changed.class");
+		index.findClasses(asList(load(changedFile, new FingerprintedClass("Changed", 1)), load(new File("Caller.class"), new FingerprintedClass("Caller", 2, "Changed")), load(new File("CallerTest.class"), new FingerprintedClass("CallerTest", 3, "Caller"))));
+
+		Set<JavaClass> changedClasses = index.findClasses(asList(load(changedFile, new FingerprintedClass("Changed", 1))));
+
+		assertEquals(newHashSet("Changed", "Caller"), namesOf(index.findParentsAffectedByApiChanges(changedClasses)));
+		assertEquals(newHashSet("Changed", "Caller", "CallerTest"), namesOf(index.findChangedParents(changedClasses)));
+	}
+
+	@Test
+	public void shouldFindAllParentsOfClassesWhoseApiChanged() {
+		File changedFile = new File("Changed.class");
+		index.findClasses(asList(load(changedFile, new FingerprintedClass("Changed", 1)), load(new File("Caller.class"), new FingerprintedClass("Caller", 2, "Changed")), load(new File("CallerTest.class"), new FingerprintedClass("CallerTest", 3, "Caller"))));
+
+		Set<JavaClass> changedClasses = index.findClasses(asList(load(changedFile, new FingerprintedClass("Changed", 4))));
+
+		assertEquals(newHashSet("Changed", "Caller", "CallerTest"), namesOf(index.findParentsAffectedByApiChanges(changedClasses)));
+	}
+
+	@Test
+	public void shouldFindAllParentsOfClassesWithUnknownApis() {
+		File changedFile = new File("Changed.class");
+		index.findClasses(asList(load(changedFile, new FingerprintedClass("Changed", ApiFingerprint.UNKNOWN)), load(new File("Caller.class"), new FingerprintedClass("Caller", 2, "Changed")), load(new File("CallerTest.class"), new FingerprintedClass("CallerTest", 3, "Caller"))));
+
+		Set<JavaClass> changedClasses = index.findClasses(asList(load(changedFile, new FingerprintedClass("Changed", ApiFingerprint.UNKNOWN))));
+
+		assertEquals(newHashSet("Changed", "Caller", "CallerTest"), namesOf(index.findParentsAffectedByApiChanges(changedClasses)));
+	}
+
+	@Test
+	public void shouldOnlyLookUpClassesOutsideTheClassDirectoriesOnce() {
+		when(builder.createClass("java.lang.String")).thenReturn(new UnparsableClass("java.lang.String"));
+
+		index.findClasses(asList(load(new File("First.class"), new FingerprintedClass("First", 1, "java.lang.String")), load(new File("Second.class"), new FingerprintedClass("Second", 2, "java.lang.String"))));
+
+		verify(builder, times(1)).createClass("java.lang.String");
+		assertEquals(1, index.getAvoidedLookupCount());
+	}
+
+	@Test
+	public void shouldLookUpMissingClassesAgainOnceTheyAreCompiled() {
+		when(builder.createClass("Missing")).thenReturn(new UnparsableClass("Missing"));
+		index.findClasses(asList(load(new File("Caller.class"), new FingerprintedClass("Caller", 1, "Missing"))));
+		Set<JavaClass> compiledClasses = index.findClasses(asList(load(new File("Missing.class"), new FingerprintedClass("Missing", 2))));
+
+		index.findClasses(asList(load(new File("Caller.class"), new FingerprintedClass("Caller", 1, "Missing"))));
+
+		assertEquals(newHashSet("Missing", "Caller"), namesOf(index.findChangedParents(compiledClasses)));
+		assertEquals(0, index.getAvoidedLookupCount());
+	}
+
+	@Test
+	public void shouldFindClassesThatUseLibraryClasses() {
+		when(builder.createClass("org.library.Helper")).thenReturn(new UnparsableClass("org.library.Helper"));
+		when(builder.createClass("java.lang.String")).thenReturn(new UnparsableClass("java.lang.String"));
+
+		index.findClasses(asList(load(new File("First.class"), new FingerprintedClass("First", 1, "org.library.Helper", "java.lang.String")), load(new File("Second.class"), new FingerprintedClass("Second", 2, "org.library.Helper"))));
+
+		assertEquals(newHashSet("First", "Second"), namesOf(index.findClassesUsingLibraryClasses(asList("org.library.Helper"))));
+		assertTrue(index.findClassesUsingLibraryClasses(asList("java.lang.String")).isEmpty());
+	}
+
+	@Test
+	public void shouldForgetLibraryClassesThatAreNoLongerUsed() {
+		when(builder.createClass("org.library.Helper")).thenReturn(new UnparsableClass("org.library.Helper"));
+		index.findClasses(asList(load(new File("First.class"), new FingerprintedClass("First", 1, "org.library.Helper"))));
+
+		index.findClasses(asList(load(new File("First.class"), new FingerprintedClass("First", 2))));
+
+		assertTrue(index.findClassesUsingLibraryClasses(asList("org.library.Helper")).isEmpty());
+	}
+
+	private File load(File classFile, JavaClass javaClass) {
+		when(builder.loadClass(classFile)).thenReturn(javaClass);
+		return classFile;
+	}
+
+	private static Set<String> namesOf(Set<JavaClass> classes) {
+		Set<String> names = newHashSet();
+		for (JavaClass each : classes) {
+			names.add(each.getName());
+		}
+		return names;
+	}
+
 	@Test
 	public void shouldIgnoreClassFilesThatCannotBeParsed() {
 		ClassFileIndex index = new ClassFileIndex(fakeClasspath());
 		assertEquals(Collections.emptySet(), index.findClasses(newArrayList(new File("notAClassFile"))));
 	}
 
+	private static class FingerprintedClass extends AbstractJavaClass {
+		private final String name;
+		private final long apiFingerprint;
+		private final List<String> imports;
+
+		FingerprintedClass(String name, long apiFingerprint, String... imports) {
+			this.name = name;
+			this.apiFingerprint = apiFingerprint;
+			this.imports = asList(imports);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Collection<String> getImports() {
+			return imports;
+		}
+
+		@Override
+		long getApiFingerprint() {
+			return apiFingerprint;
+		}
+
+		public boolean isATest() {
+			return name.endsWith("Test");
+		}
+
+		public boolean locatedInClassFile() {
+			return true;
+		}
+
+		public File getClassFile() {
+			return new File(name + ".class");
+		}
+	}
+
 	public static void main(String[] args) throws IOException {
 		FileChangeDetector detector = new FileChangeDetector();
 		detector.setClasspathProvider(fakeClasspath());
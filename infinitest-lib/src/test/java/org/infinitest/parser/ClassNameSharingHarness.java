@@ -0,0 +1,140 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Sets.*;
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.infinitest.util.ClassNames.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+
+/**
+ * Compares the heap held by the index, and by the failure events of a test
+ * run, when every class name arrives as its own copy (as it does from a class
+ * file or the runner process) and when the names go through
+ * {@link org.infinitest.util.ClassNames}. Run with a fixed heap (e.g. -Xmx1g)
+ * for stable numbers.
+ */
+public class ClassNameSharingHarness {
+	private static final String PACKAGE = "com.synthetic.project.module.";
+	private static final int IMPORTS_PER_CLASS = 15;
+	private static final int LIBRARY_CLASS_COUNT = 200;
+	private static final int LIBRARY_IMPORTS_PER_CLASS = 10;
+	private static final int FAILURES_PER_TEST = 10;
+
+	public static void main(String[] args) {
+		System.out.println("Classes\tShared\tIndex(KB)\tEvents(KB)");
+		for (int classCount = 5000; classCount <= 40000; classCount *= 2) {
+			measure(classCount, false);
+			measure(classCount, true);
+		}
+	}
+
+	private static void measure(int classCount, boolean shared) {
+		long before = usedMemory();
+		ClassFileIndex index = new ClassFileIndex(new CopyingWorkspace(classCount, shared));
+		index.findClasses(classFilesFor(classCount));
+		long indexSize = usedMemory() - before;
+
+		before = usedMemory();
+		List<TestEvent> events = failuresFor(classCount, shared);
+		long eventsSize = usedMemory() - before;
+
+		System.out.println(classCount + "\t" + shared + "\t" + (indexSize / 1024) + "\t" + (eventsSize / 1024));
+		// Keep everything reachable until it has been measured
+		if (index.getIndexedClasses().isEmpty() || events.isEmpty()) {
+			throw new IllegalStateException("Nothing was measured");
+		}
+	}
+
+	private static List<File> classFilesFor(int classCount) {
+		List<File> classFiles = newArrayList();
+		for (int i = 0; i < classCount; i++) {
+			classFiles.add(new File("Class" + i + ".class"));
+		}
+		return classFiles;
+	}
+
+	private static List<TestEvent> failuresFor(int classCount, boolean shared) {
+		List<TestEvent> events = newArrayList();
+		for (int i = 0; i < classCount; i += 10) {
+			for (int j = 0; j < FAILURES_PER_TEST; j++) {
+				String testName = nameOf(PACKAGE + "Class", i, shared);
+				events.add(methodFailed("failed", testName, "shouldPass" + j, new AssertionError()));
+			}
+		}
+		return events;
+	}
+
+	// Builds a new string each time, as reading it from a class file or a
+	// stream would
+	private static String nameOf(String prefix, int number, boolean shared) {
+		String name = new StringBuilder(prefix).append(number).toString();
+		return shared ? canonicalName(name) : name;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static class CopyingWorkspace implements ClassBuilder {
+		private final int classCount;
+		private final boolean shared;
+
+		CopyingWorkspace(int classCount, boolean shared) {
+			this.classCount = classCount;
+			this.shared = shared;
+		}
+
+		public JavaClass createClass(String classname) {
+			return new UnparsableClass(classname);
+		}
+
+		public JavaClass loadClass(File file) {
+			int number = Integer.parseInt(file.getName().replace("Class", "").replace(".class", ""));
+			Random random = new Random(number);
+			Set<String> imports = newHashSet();
+			for (int i = 0; i < IMPORTS_PER_CLASS; i++) {
+				imports.add(nameOf(PACKAGE + "Class", random.nextInt(classCount), shared));
+			}
+			for (int i = 0; i < LIBRARY_IMPORTS_PER_CLASS; i++) {
+				imports.add(nameOf("org.library.LibraryClass", random.nextInt(LIBRARY_CLASS_COUNT), shared));
+			}
+			String name = nameOf(PACKAGE + "Class", number, shared);
+			return new ScannedClass(name, imports, number % 10 == 0, file, 0, Collections.<String> emptySet());
+		}
+
+		public void clear() {
+		}
+
+		public void close() {
+		}
+	}
+}
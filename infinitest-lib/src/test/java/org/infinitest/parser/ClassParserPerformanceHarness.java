@@ -0,0 +1,140 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static java.lang.System.*;
+
+import java.io.*;
+import java.lang.management.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.jar.*;
+
+import javassist.*;
+
+/**
+ * Parses every class in a real jar with each {@link ClassParserType} and
+ * prints the throughput and the bytes allocated per class. The Javassist jar
+ * is used unless another jar is given as the first argument.
+ */
+public class ClassParserPerformanceHarness {
+	private static final int ITERATIONS = 5;
+
+	public static void main(String[] args) throws Exception {
+		File jar = args.length > 0 ? new File(args[0]) : new File(ClassPool.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		File classDir = extract(jar);
+		List<File> classFiles = new ArrayList<File>();
+		findClassFiles(classDir, classFiles);
+		String classpath = classDir.getAbsolutePath() + File.pathSeparator + getProperty("java.class.path");
+
+		System.out.println(classFiles.size() + " classes from " + jar.getName());
+		System.out.println("Parser\tClasses/s\tBytes/class\tFailures");
+		for (ClassParserType type : ClassParserType.values()) {
+			// The first pass warms up the JIT
+			for (int i = 0; i <= ITERATIONS; i++) {
+				ClassParser parser = type.createParser(classpath);
+				long allocatedBefore = allocatedBytes();
+				int failures = 0;
+				long start = nanoTime();
+				for (File classFile : classFiles) {
+					try {
+						JavaClass javaClass = parser.parse(classFile);
+						javaClass.getImports();
+						javaClass.isATest();
+					} catch (RuntimeException e) {
+						// Javassist 3.16 can't read JDK classes that use invokedynamic
+						failures++;
+					}
+				}
+				long elapsed = nanoTime() - start;
+				long allocated = allocatedBytes() - allocatedBefore;
+				parser.clear();
+				if (i == ITERATIONS) {
+					long classesPerSecond = classFiles.size() * 1000000000L / elapsed;
+					System.out.println(type + "\t" + classesPerSecond + "\t" + allocated / classFiles.size() + "\t" + failures);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Uses the HotSpot thread allocation counter when it's available, and the
+	 * change in used heap otherwise (which is only a rough guide).
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		try {
+			Method method = threads.getClass().getMethod("getThreadAllocatedBytes", long.class);
+			method.setAccessible(true);
+			return (Long) method.invoke(threads, Thread.currentThread().getId());
+		} catch (Exception e) {
+			Runtime runtime = Runtime.getRuntime();
+			return runtime.totalMemory() - runtime.freeMemory();
+		}
+	}
+
+	static File extract(File jar) throws IOException {
+		File classDir = File.createTempFile("parser-harness", "");
+		classDir.delete();
+		JarFile jarFile = new JarFile(jar);
+		try {
+			for (JarEntry entry : Collections.list(jarFile.entries())) {
+				if (entry.getName().endsWith(".class")) {
+					File classFile = new File(classDir, entry.getName());
+					classFile.getParentFile().mkdirs();
+					copy(jarFile.getInputStream(entry), classFile);
+				}
+			}
+		} finally {
+			jarFile.close();
+		}
+		return classDir;
+	}
+
+	private static void copy(InputStream in, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				out.write(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+
+	static void findClassFiles(File dir, List<File> classFiles) {
+		for (File file : dir.listFiles()) {
+			if (file.isDirectory()) {
+				findClassFiles(file, classFiles);
+			} else if (isClassFile(file)) {
+				classFiles.add(file);
+			}
+		}
+	}
+
+	private static boolean isClassFile(File file) {
+		return file.getName().endsWith(".class");
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import java.io.*;
+import java.util.*;
+
+import org.jgrapht.*;
+import org.jgrapht.graph.*;
+
+/**
+ * Compares the heap used by the int id based {@link DependencyGraph} with the
+ * jgrapht graph the index used to be built on, for the same synthetic
+ * workspace. Run with a fixed heap (e.g. -Xmx1g) for stable numbers.
+ */
+public class DependencyGraphMemoryHarness {
+	private static final int IMPORTS_PER_CLASS = 15;
+
+	public static void main(String[] args) {
+		System.out.println("Classes\tjgrapht(KB)\tDependencyGraph(KB)");
+		for (int classCount = 5000; classCount <= 80000; classCount *= 2) {
+			SyntheticWorkspace workspace = new SyntheticWorkspace(classCount, IMPORTS_PER_CLASS, 10);
+			List<JavaClass> classes = loadClasses(workspace);
+
+			long before = usedMemory();
+			DirectedGraph<JavaClass, DefaultEdge> jgraph = buildJGraph(classes, workspace);
+			long jgraphSize = usedMemory() - before;
+
+			before = usedMemory();
+			DependencyGraph graph = buildDependencyGraph(classes, workspace);
+			long graphSize = usedMemory() - before;
+
+			System.out.println(classCount + "\t" + (jgraphSize / 1024) + "\t" + (graphSize / 1024));
+			// Keep both graphs reachable until they have been measured
+			if (jgraph.vertexSet().size() != graph.size()) {
+				throw new IllegalStateException("Graphs differ");
+			}
+		}
+	}
+
+	private static List<JavaClass> loadClasses(SyntheticWorkspace workspace) {
+		List<JavaClass> classes = new ArrayList<JavaClass>();
+		for (File each : workspace.getClassFiles()) {
+			classes.add(workspace.loadClass(each));
+		}
+		return classes;
+	}
+
+	private static DirectedGraph<JavaClass, DefaultEdge> buildJGraph(List<JavaClass> classes, SyntheticWorkspace workspace) {
+		DirectedGraph<JavaClass, DefaultEdge> graph = new DefaultDirectedGraph<JavaClass, DefaultEdge>(DefaultEdge.class);
+		for (JavaClass each : classes) {
+			graph.addVertex(each);
+			for (String child : each.getImports()) {
+				JavaClass childClass = workspace.createClass(child);
+				if (graph.containsVertex(childClass) && !childClass.equals(each)) {
+					graph.addEdge(each, childClass);
+				}
+			}
+		}
+		return graph;
+	}
+
+	private static DependencyGraph buildDependencyGraph(List<JavaClass> classes, SyntheticWorkspace workspace) {
+		DependencyGraph graph = new DependencyGraph();
+		for (JavaClass each : classes) {
+			graph.put(each);
+			for (String child : each.getImports()) {
+				JavaClass childClass = workspace.createClass(child);
+				if (graph.contains(child) && !childClass.equals(each)) {
+					graph.addEdge(each, childClass);
+				}
+			}
+		}
+		return graph;
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static java.lang.System.*;
+
+import java.util.*;
+
+/**
+ * Times test lookups for single changed classes on a synthetic 50k class
+ * workspace, walking the graph on every lookup versus reading the cached
+ * reachable test sets of its strongly connected components.
+ */
+public class DependentTestLookupHarness {
+	private static final int CLASS_COUNT = 50000;
+	private static final int IMPORTS_PER_CLASS = 10;
+	private static final int LOOKUP_COUNT = 2000;
+
+	public static void main(String[] args) {
+		SyntheticWorkspace workspace = new SyntheticWorkspace(CLASS_COUNT, IMPORTS_PER_CLASS, 10);
+		ClassFileIndex index = new ClassFileIndex(workspace);
+		index.findClasses(workspace.getClassFiles());
+		List<Set<JavaClass>> changes = new ArrayList<Set<JavaClass>>();
+		Random random = new Random(CLASS_COUNT);
+		for (int i = 0; i < LOOKUP_COUNT; i++) {
+			changes.add(Collections.singleton(index.findJavaClass(SyntheticWorkspace.nameOf(random.nextInt(CLASS_COUNT)))));
+		}
+
+		long start = currentTimeMillis();
+		index.findChangedTests(changes.get(0));
+		System.out.println("Condensation built in " + (currentTimeMillis() - start) + "ms");
+
+		System.out.println("Lookups\tWalk(ms)\tCached(ms)\tTestsFound");
+		for (int run = 0; run < 5; run++) {
+			start = currentTimeMillis();
+			for (Set<JavaClass> each : changes) {
+				index.findChangedParents(each);
+			}
+			long walkTime = currentTimeMillis() - start;
+
+			start = currentTimeMillis();
+			long testsFound = 0;
+			for (Set<JavaClass> each : changes) {
+				testsFound += index.findChangedTests(each).size();
+			}
+			long cachedTime = currentTimeMillis() - start;
+
+			System.out.println(LOOKUP_COUNT + "\t" + walkTime + "\t" + cachedTime + "\t" + testsFound);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+import static java.lang.System.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Indexes a synthetic workspace shaped like compiled Scala, where every class
+ * comes with a handful of {@code $anonfun} and inner classes, with and without
+ * inner class folding. Prints the size of the graph, the time to index
+ * everything and the time to reindex one changed closure and find its tests.
+ */
+public class InnerClassFoldingHarness {
+	private static final String PACKAGE = "com.synthetic.";
+	private static final int OUTER_CLASS_COUNT = 5000;
+	private static final int INNER_CLASSES_PER_CLASS = 8;
+	private static final int IMPORTS_PER_CLASS = 4;
+	private static final int CHANGE_COUNT = 500;
+
+	public static void main(String[] args) {
+		ScalaLikeWorkspace workspace = new ScalaLikeWorkspace();
+		System.out.println("Folding\tVertices\tIndex(ms)\tUpdates\tUpdate(ms)\tTestsFound");
+		for (int run = 0; run < 3; run++) {
+			measure(workspace, false);
+			measure(workspace, true);
+		}
+	}
+
+	private static void measure(ScalaLikeWorkspace workspace, boolean folding) {
+		ClassFileIndex index = new ClassFileIndex(workspace);
+		index.setInnerClassFolding(folding);
+		long start = currentTimeMillis();
+		index.findClasses(workspace.classFiles);
+		long indexTime = currentTimeMillis() - start;
+
+		Random random = new Random(OUTER_CLASS_COUNT);
+		start = currentTimeMillis();
+		long testsFound = 0;
+		for (int i = 0; i < CHANGE_COUNT; i++) {
+			File changedFile = new File(innerNameOf(random.nextInt(OUTER_CLASS_COUNT), random.nextInt(INNER_CLASSES_PER_CLASS)) + ".class");
+			Set<JavaClass> changedClasses = index.findClasses(Collections.singleton(changedFile));
+			testsFound += index.findChangedTests(changedClasses).size();
+		}
+		long updateTime = currentTimeMillis() - start;
+
+		System.out.println(folding + "\t" + index.getIndexedClasses().size() + "\t" + indexTime + "\t" + CHANGE_COUNT + "\t" + updateTime + "\t" + testsFound);
+	}
+
+	private static String outerNameOf(int classNumber) {
+		return "Class" + classNumber;
+	}
+
+	private static String innerNameOf(int classNumber, int innerNumber) {
+		return outerNameOf(classNumber) + "$$anonfun$" + innerNumber;
+	}
+
+	private static class ScalaLikeWorkspace implements ClassBuilder {
+		private final Map<String, List<String>> imports = newHashMap();
+		private final List<File> classFiles = newArrayList();
+
+		ScalaLikeWorkspace() {
+			Random random = new Random(OUTER_CLASS_COUNT);
+			for (int i = 0; i < OUTER_CLASS_COUNT; i++) {
+				List<String> outerImports = newArrayList("java.lang.Object");
+				for (int j = 0; j < INNER_CLASSES_PER_CLASS; j++) {
+					String innerName = innerNameOf(i, j);
+					outerImports.add(PACKAGE + innerName);
+					// Closures call back into their outer class and reach out
+					// to classes further down
+					List<String> innerImports = newArrayList("java.lang.Object", PACKAGE + outerNameOf(i));
+					for (int k = 0; (k < IMPORTS_PER_CLASS) && (i > 0); k++) {
+						innerImports.add(PACKAGE + outerNameOf(random.nextInt(i)));
+					}
+					add(innerName, innerImports);
+				}
+				add(outerNameOf(i), outerImports);
+			}
+		}
+
+		private void add(String name, List<String> classImports) {
+			imports.put(PACKAGE + name, classImports);
+			classFiles.add(new File(name + ".class"));
+		}
+
+		public JavaClass createClass(String classname) {
+			final List<String> classImports = imports.get(classname);
+			if (classImports == null) {
+				return new UnparsableClass(classname);
+			}
+			return new FakeJavaClass(classname) {
+				@Override
+				public Collection<String> getImports() {
+					return classImports;
+				}
+
+				@Override
+				public boolean isATest() {
+					return !getName().contains("$") && getName().endsWith("0");
+				}
+
+				@Override
+				public boolean locatedInClassFile() {
+					return true;
+				}
+
+				@Override
+				public File getClassFile() {
+					return new File(getName().substring(PACKAGE.length()) + ".class");
+				}
+			};
+		}
+
+		public JavaClass loadClass(File file) {
+			return createClass(PACKAGE + file.getName().replace(".class", ""));
+		}
+
+		public void clear() {
+		}
+
+		public void close() {
+		}
+	}
+}
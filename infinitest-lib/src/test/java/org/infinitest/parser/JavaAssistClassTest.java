@@ -113,7 +113,25 @@ public class JavaAssistClassTest {
 		CtClass fakeClass = classPool.makeClass("FakeClass");
 		CtClass[] params = { classPool.get(Integer.class.getName()) };
 		fakeClass.addConstructor(new CtConstructor(params, fakeClass));
-		assertFalse(new JavaAssistClass(fakeClass).canInstantiate(fakeClass));
+		assertFalse(JavaAssistClass.outlineOf(fakeClass).hasJUnitConstructor());
+	}
+
+	@Test
+	public void shouldKnowWhetherItsATestAfterBeingDisposed() {
+		JavaAssistClass clazz = getClass(TestJunit3TestCase.class);
+		clazz.dispose();
+		assertTrue(clazz.isATest());
+	}
+
+	@Test
+	public void shouldOnlyWalkSharedSuperclassesOnce() throws NotFoundException {
+		ClassHierarchyCache hierarchy = new ClassHierarchyCache(JavaAssistClass.classesIn(classPool), null);
+		assertTrue(new JavaAssistClass(classPool.get(TestJunit3TestCase.class.getName()), hierarchy).isATest());
+		int knownClasses = hierarchy.size();
+
+		assertTrue(new JavaAssistClass(classPool.get(TestFakeProduct.class.getName()), hierarchy).isATest());
+
+		assertEquals(knownClasses, hierarchy.size());
 	}
 
 	private Collection<String> dependenciesOf(Class<?> dependingClass) {
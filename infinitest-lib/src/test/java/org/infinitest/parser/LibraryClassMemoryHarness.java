@@ -0,0 +1,108 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static java.io.File.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.*;
+
+/**
+ * Measures the heap the Javassist parsers of several cores hold on to between
+ * updates, after they've parsed the same project. Project classes are
+ * forgotten after every update, so what's left is whatever they keep of the
+ * jar and JDK classes the project refers to. Pass a class directory and the
+ * rest of its classpath, and run with a fixed heap (e.g. -Xmx1g) for stable
+ * numbers.
+ */
+public class LibraryClassMemoryHarness {
+	public static void main(String[] args) {
+		File classDirectory = new File(args.length > 0 ? args[0] : "target/test-classes");
+		String libraries = args.length > 1 ? args[1] : System.getProperty("java.class.path");
+		String classpath = classDirectory.getAbsolutePath() + pathSeparator + libraries;
+		List<File> classFiles = new ArrayList<File>();
+		findClassFiles(classDirectory, classFiles);
+
+		System.out.println(classFiles.size() + " class files");
+		System.out.println("Cores\tHeap(KB)\tShared cache(KB)");
+		for (int coreCount = 1; coreCount <= 8; coreCount *= 2) {
+			long before = usedMemory();
+			List<ClassParser> parsers = new ArrayList<ClassParser>();
+			for (int i = 0; i < coreCount; i++) {
+				ClassParser parser = new JavaAssistClassParser(classpath);
+				parseAll(parser, classFiles);
+				parser.clear();
+				parsers.add(parser);
+			}
+			long heap = usedMemory() - before;
+			long sharedCache = LibraryClassCache.getSharedCache().getCachedBytes();
+			System.out.println(coreCount + "\t" + (heap / 1024) + "\t" + (sharedCache / 1024));
+			// The parsers have to stay reachable until they've been measured
+			for (ClassParser each : parsers) {
+				each.close();
+			}
+		}
+	}
+
+	private static void parseAll(ClassParser parser, List<File> classFiles) {
+		for (File each : classFiles) {
+			try {
+				JavaClass javaClass = parser.parse(each);
+				for (String dependency : javaClass.getImports()) {
+					try {
+						parser.getClass(dependency);
+					} catch (MissingClassException e) {
+						// Not on the classpath
+					}
+				}
+				javaClass.isATest();
+			} catch (IOException e) {
+				// Skip it
+			} catch (RuntimeException e) {
+				// Skip classes Javassist can't read
+			}
+		}
+	}
+
+	private static void findClassFiles(File directory, List<File> classFiles) {
+		File[] children = directory.listFiles();
+		if (children != null) {
+			for (File each : children) {
+				if (each.isDirectory()) {
+					findClassFiles(each, classFiles);
+				} else if (each.getName().endsWith(".class")) {
+					classFiles.add(each);
+				}
+			}
+		}
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
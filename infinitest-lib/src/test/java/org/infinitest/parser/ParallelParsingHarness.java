@@ -0,0 +1,73 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static java.lang.System.*;
+import static java.util.Arrays.*;
+
+import java.io.*;
+import java.util.*;
+
+import javassist.*;
+
+import org.infinitest.*;
+
+/**
+ * Indexes every class in a real jar, as after a clean build, with 1, 2, 4 and 8
+ * parsing threads. The arguments are the jar (Javassist by default) and the
+ * parser type (the constant pool scanner by default, since Javassist 3.16 can't
+ * read the JDK 8 classes it needs to resolve superclasses).
+ */
+public class ParallelParsingHarness {
+	private static final int ITERATIONS = 5;
+
+	public static void main(String[] args) throws Exception {
+		File jar = args.length > 0 ? new File(args[0]) : new File(ClassPool.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		File classDir = ClassParserPerformanceHarness.extract(jar);
+		List<File> classFiles = new ArrayList<File>();
+		ClassParserPerformanceHarness.findClassFiles(classDir, classFiles);
+		ClassParserType type = args.length > 1 ? ClassParserType.valueOf(args[1]) : ClassParserType.CONSTANT_POOL;
+		ClasspathProvider classpath = new StandaloneClasspath(asList(classDir));
+
+		System.out.println(classFiles.size() + " classes from " + jar.getName() + " on " + Runtime.getRuntime().availableProcessors() + " processors");
+		System.out.println("Parser\tThreads\tIndex(ms)\tSpeedup");
+		long serialTime = 0;
+		for (int threadCount = 1; threadCount <= 8; threadCount *= 2) {
+			long bestTime = Long.MAX_VALUE;
+			// The first pass warms up the JIT
+			for (int i = 0; i <= ITERATIONS; i++) {
+				ClassFileIndex index = new ClassFileIndex(classpath, type);
+				index.setParsingThreads(threadCount);
+				long start = nanoTime();
+				index.findClasses(classFiles);
+				long elapsed = (nanoTime() - start) / 1000000;
+				if (i > 0) {
+					bestTime = Math.min(bestTime, elapsed);
+				}
+			}
+			if (threadCount == 1) {
+				serialTime = bestTime;
+			}
+			System.out.printf("%s\t%d\t%d\t%.2f%n", type, threadCount, bestTime, (double) serialTime / Math.max(bestTime, 1));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Maps.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generates a large, layered set of fake classes so the index can be exercised
+ * without parsing real class files. Each class only imports classes with a
+ * lower number, so loading the files in order never has to recurse.
+ */
+class SyntheticWorkspace implements ClassBuilder {
+	private static final String PACKAGE = "com.synthetic.";
+
+	private final Map<String, SyntheticClass> classes;
+	private final List<File> classFiles;
+
+	SyntheticWorkspace(int classCount, int importsPerClass, int testEvery) {
+		classes = newHashMap();
+		classFiles = newArrayList();
+		Random random = new Random(classCount);
+		for (int i = 0; i < classCount; i++) {
+			List<String> imports = newArrayList("java.lang.String", "java.lang.Object");
+			for (int j = 0; (j < importsPerClass) && (i > 0); j++) {
+				imports.add(nameOf(random.nextInt(i)));
+			}
+			boolean isATest = (i % testEvery) == (testEvery - 1);
+			SyntheticClass javaClass = new SyntheticClass(nameOf(i), imports, isATest);
+			classes.put(javaClass.getName(), javaClass);
+			classFiles.add(javaClass.getClassFile());
+		}
+	}
+
+	static String nameOf(int classNumber) {
+		return PACKAGE + "Class" + classNumber;
+	}
+
+	List<File> getClassFiles() {
+		return classFiles;
+	}
+
+	public JavaClass createClass(String classname) {
+		SyntheticClass javaClass = classes.get(classname);
+		if (javaClass == null) {
+			return new UnparsableClass(classname);
+		}
+		return javaClass.copy();
+	}
+
+	public JavaClass loadClass(File file) {
+		String classname = PACKAGE + file.getName().replace(".class", "");
+		return createClass(classname);
+	}
+
+	public void clear() {
+	}
+
+	public void close() {
+	}
+
+	private static class SyntheticClass extends AbstractJavaClass {
+		private final String name;
+		private final Collection<String> imports;
+		private final boolean isATest;
+
+		SyntheticClass(String name, Collection<String> imports, boolean isATest) {
+			this.name = name;
+			this.imports = imports;
+			this.isATest = isATest;
+		}
+
+		SyntheticClass copy() {
+			return new SyntheticClass(name, imports, isATest);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Collection<String> getImports() {
+			return imports;
+		}
+
+		public boolean isATest() {
+			return isATest;
+		}
+
+		public boolean locatedInClassFile() {
+			return true;
+		}
+
+		public File getClassFile() {
+			return new File(name.substring(PACKAGE.length()) + ".class");
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.*;
+import static org.hamcrest.Matchers.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class WhenBuildingTheDependencyGraph {
+	private DependencyGraph graph;
+	private JavaClass parent;
+	private JavaClass child;
+	private JavaClass grandChild;
+
+	@Before
+	public void inContext() {
+		graph = new DependencyGraph();
+		parent = new FakeJavaClass("Parent");
+		child = new FakeJavaClass("Child");
+		grandChild = new FakeJavaClass("GrandChild");
+		graph.put(parent);
+		graph.put(child);
+		graph.put(grandChild);
+		graph.addEdge(parent, child);
+		graph.addEdge(child, grandChild);
+	}
+
+	@Test
+	public void shouldFindClassesByName() {
+		assertSame(child, graph.get("Child"));
+		assertNull(graph.get("Missing"));
+		assertEquals(setify("Parent", "Child", "GrandChild"), graph.getClassNames());
+	}
+
+	@Test
+	public void shouldFindTransitiveParents() {
+		Set<JavaClass> parents = graph.findTransitiveParents(setify(grandChild));
+
+		assertEquals(setify(parent, child, grandChild), parents);
+	}
+
+	@Test
+	public void shouldNotDuplicateEdges() {
+		graph.addEdge(parent, child);
+
+		assertEquals(asList(parent), graph.getParents(child));
+	}
+
+	@Test
+	public void shouldKeepDependentsButDropDependenciesWhenAClassIsReplaced() {
+		JavaClass newChild = new FakeJavaClass("Child");
+		graph.put(newChild);
+
+		assertSame(newChild, graph.get("Child"));
+		assertEquals(asList(parent), graph.getParents(newChild));
+		assertThat(graph.getParents(grandChild), not(hasItem(newChild)));
+		assertEquals(3, graph.size());
+	}
+
+	@Test
+	public void shouldHandleCyclesAndLongChainsWithoutRecursion() {
+		JavaClass previous = grandChild;
+		for (int i = 0; i < 100000; i++) {
+			JavaClass next = new FakeJavaClass("Chain" + i);
+			graph.put(next);
+			graph.addEdge(next, previous);
+			previous = next;
+		}
+		graph.addEdge(grandChild, previous);
+
+		assertEquals(graph.size(), graph.findTransitiveParents(setify(grandChild)).size());
+	}
+
+	@Test
+	public void shouldRemoveClassesAndTheirEdges() {
+		graph.remove(child);
+
+		assertFalse(graph.contains("Child"));
+		assertEquals(2, graph.size());
+		assertEquals(Collections.emptyList(), graph.getChildren(parent));
+		assertEquals(Collections.emptyList(), graph.getParents(grandChild));
+		assertEquals(setify(grandChild), graph.findTransitiveParents(setify(grandChild)));
+	}
+
+	@Test
+	public void shouldAddRemovedClassesAgainWithoutTheirOldEdges() {
+		graph.remove(child);
+		JavaClass newChild = new FakeJavaClass("Child");
+		graph.put(newChild);
+
+		assertSame(newChild, graph.get("Child"));
+		assertEquals(Collections.emptyList(), graph.getParents(newChild));
+		assertEquals(Collections.emptyList(), graph.getChildren(newChild));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldNotAllowEdgesToClassesOutsideTheGraph() {
+		graph.addEdge(parent, new FakeJavaClass("Missing"));
+	}
+}
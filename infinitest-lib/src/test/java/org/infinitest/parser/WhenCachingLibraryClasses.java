@@ -0,0 +1,170 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.*;
+
+import org.infinitest.parser.LibraryClassCache.LibraryJar;
+import org.junit.*;
+
+import com.google.common.io.*;
+
+public class WhenCachingLibraryClasses {
+	private LibraryClassCache cache;
+	private File jarFile;
+
+	@Before
+	public void inContext() throws IOException {
+		cache = new LibraryClassCache(1024 * 1024);
+		jarFile = File.createTempFile("library", ".jar");
+		jarFile.deleteOnExit();
+		writeJar(jarFile, AbstractList.class, AbstractCollection.class);
+	}
+
+	@Test
+	public void shouldShareClassesBetweenParsers() {
+		LibraryJar first = cache.acquire(jarFile);
+		LibraryJar second = cache.acquire(jarFile);
+
+		ClassOutline outline = cache.find(first, AbstractList.class.getName());
+		assertEquals(AbstractList.class.getName(), outline.getName());
+		assertEquals(AbstractCollection.class.getName(), outline.getSuperName());
+		assertTrue(outline.isAbstract());
+		assertSame(outline, cache.find(second, AbstractList.class.getName()));
+
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getCachedClassCount());
+		assertTrue(cache.getCachedBytes() > 0);
+	}
+
+	@Test
+	public void shouldNotCacheClassesThatAreNotInTheJar() {
+		LibraryJar jar = cache.acquire(jarFile);
+
+		assertNull(cache.find(jar, String.class.getName()));
+		assertNull(cache.find(jar, String.class.getName()));
+
+		assertEquals(0, cache.getCachedClassCount());
+		assertEquals(0, cache.getCachedBytes());
+	}
+
+	@Test
+	public void shouldFindJdkClasses() {
+		ClassOutline outline = cache.findSystemClass(ArrayList.class.getName());
+
+		assertEquals(AbstractList.class.getName(), outline.getSuperName());
+		assertFalse(outline.isAbstract());
+		assertSame(outline, cache.findSystemClass(ArrayList.class.getName()));
+		assertNull(cache.findSystemClass("com.example.DoesNotExist"));
+	}
+
+	@Test
+	public void shouldReadChangedJarsAgain() throws IOException {
+		LibraryJar jar = cache.acquire(jarFile);
+		cache.find(jar, AbstractList.class.getName());
+
+		writeJar(jarFile, ArrayList.class);
+		assertTrue(jarFile.setLastModified(jarFile.lastModified() - 10000));
+		LibraryJar changedJar = cache.acquire(jarFile);
+
+		assertNull(cache.find(changedJar, AbstractList.class.getName()));
+		assertNotNull(cache.find(changedJar, ArrayList.class.getName()));
+		assertEquals(3, cache.getMissCount());
+	}
+
+	@Test
+	public void shouldForgetJarsNobodyUses() {
+		LibraryJar first = cache.acquire(jarFile);
+		LibraryJar second = cache.acquire(jarFile);
+		assertSame(first, second);
+
+		cache.release(first);
+		assertEquals(1, cache.getJarCount());
+		cache.release(second);
+		assertEquals(0, cache.getJarCount());
+	}
+
+	@Test
+	public void shouldEvictLeastRecentlyUsedClasses() {
+		cache.find(cache.acquire(jarFile), AbstractCollection.class.getName());
+		long classSize = cache.getCachedBytes();
+		// Room for one class, but not two
+		cache = new LibraryClassCache(classSize + (classSize / 2));
+		LibraryJar jar = cache.acquire(jarFile);
+		cache.find(jar, AbstractCollection.class.getName());
+		cache.find(jar, AbstractList.class.getName());
+
+		assertEquals(1, cache.getCachedClassCount());
+		assertEquals(1, cache.getEvictionCount());
+		cache.find(jar, AbstractList.class.getName());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void shouldNotReadJarsWhileHoldingTheCache() throws Exception {
+		final LibraryJar jar = cache.acquire(jarFile);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<ClassOutline> read;
+			synchronized (jar) {
+				// Opening the jar has to wait, but the cache can still be used
+				read = executor.submit(new Callable<ClassOutline>() {
+					public ClassOutline call() {
+						return cache.find(jar, AbstractList.class.getName());
+					}
+				});
+				while (cache.getMissCount() == 0) {
+					Thread.sleep(1);
+				}
+				assertEquals(0, cache.getCachedClassCount());
+			}
+			assertNotNull(read.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void writeJar(File file, Class<?>... classes) throws IOException {
+		JarOutputStream output = new JarOutputStream(new FileOutputStream(file));
+		try {
+			for (Class<?> each : classes) {
+				String path = each.getName().replace('.', '/') + ".class";
+				output.putNextEntry(new JarEntry(path));
+				InputStream input = ClassLoader.getSystemResourceAsStream(path);
+				try {
+					ByteStreams.copy(input, output);
+				} finally {
+					input.close();
+				}
+				output.closeEntry();
+			}
+		} finally {
+			output.close();
+		}
+	}
+}
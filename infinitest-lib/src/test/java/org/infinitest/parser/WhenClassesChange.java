@@ -58,6 +58,8 @@ public class WhenClassesChange extends DependencyGraphTestBase {
 		untestify();
 		updateGraphWithChangedClass(testClass);
 		assertThat(getGraph().getCurrentTests(), equalTo(Collections.<String> emptySet()));
+		assertEquals(setify(testClass.getName()), getGraph().findDisabledTests());
+		assertThat(getGraph().findDisabledTests(), equalTo(Collections.<String> emptySet()));
 
 		javaClass = getGraph().findJavaClass(testClass.getName());
 		assertFalse("Class was not reloaded", javaClass.isATest());
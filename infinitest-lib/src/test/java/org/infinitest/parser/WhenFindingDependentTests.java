@@ -0,0 +1,227 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class WhenFindingDependentTests {
+	private DependencyGraph graph;
+	private JavaClass util;
+	private JavaClass helper;
+	private JavaClass service;
+	private JavaClass serviceTest;
+
+	@Before
+	public void inContext() {
+		graph = new DependencyGraph();
+		util = fakeClass("Util", false);
+		helper = fakeClass("Helper", false);
+		service = fakeClass("Service", false);
+		serviceTest = fakeClass("ServiceTest", true);
+		for (JavaClass each : Arrays.asList(util, helper, service, serviceTest)) {
+			graph.put(each);
+		}
+		// Util and Helper depend on each other
+		graph.addEdge(util, helper);
+		graph.addEdge(helper, util);
+		graph.addEdge(service, helper);
+		graph.addEdge(serviceTest, service);
+	}
+
+	@Test
+	public void shouldFindTestsThroughCycles() {
+		assertEquals(setify(serviceTest), graph.findTransitiveParentTests(setify(util)));
+		assertEquals(setify(serviceTest), graph.findTransitiveParentTests(setify(serviceTest)));
+	}
+
+	@Test
+	public void shouldNoticeNewEdges() {
+		JavaClass utilTest = fakeClass("UtilTest", true);
+		graph.findTransitiveParentTests(setify(util));
+
+		graph.put(utilTest);
+		graph.addEdge(utilTest, util);
+
+		assertEquals(setify(serviceTest, utilTest), graph.findTransitiveParentTests(setify(util)));
+	}
+
+	@Test
+	public void shouldNoticeRemovedEdges() {
+		graph.findTransitiveParentTests(setify(util));
+
+		graph.put(fakeClass("Service", false));
+
+		assertEquals(Collections.emptySet(), graph.findTransitiveParentTests(setify(util)));
+	}
+
+	@Test
+	public void shouldGiveTheSameAnswerWhenAReloadedClassKeepsItsEdges() {
+		graph.findTransitiveParentTests(setify(util));
+
+		JavaClass newService = fakeClass("Service", false);
+		graph.put(newService);
+		graph.addEdge(newService, helper);
+
+		assertEquals(setify(serviceTest), graph.findTransitiveParentTests(setify(util)));
+	}
+
+	@Test
+	public void shouldNoticeClassesThatBecomeTests() {
+		graph.findTransitiveParentTests(setify(util));
+
+		graph.put(fakeClass("Service", true));
+		graph.addEdge(graph.get("Service"), helper);
+
+		assertEquals(setify(graph.get("Service"), serviceTest), graph.findTransitiveParentTests(setify(util)));
+	}
+
+	@Test
+	public void shouldMatchTheTestsFoundByWalkingTheGraph() {
+		SyntheticWorkspace workspace = new SyntheticWorkspace(2000, 5, 10);
+		ClassFileIndex index = new ClassFileIndex(workspace);
+		index.findClasses(workspace.getClassFiles());
+		Random random = new Random(2000);
+		for (int i = 0; i < 50; i++) {
+			Set<JavaClass> changedClasses = setify(index.findJavaClass(SyntheticWorkspace.nameOf(random.nextInt(2000))));
+
+			assertEquals(testsIn(index.findChangedParents(changedClasses)), index.findChangedTests(changedClasses));
+		}
+	}
+
+	@Test
+	public void shouldNoticeBrokenCycles() {
+		JavaClass helperTest = fakeClass("HelperTest", true);
+		graph.put(helperTest);
+		graph.addEdge(helperTest, helper);
+		graph.findTransitiveParentTests(setify(util));
+
+		graph.put(fakeClass("Helper", false));
+
+		assertEquals(Collections.emptySet(), graph.findTransitiveParentTests(setify(util)));
+		assertEquals(setify(serviceTest, helperTest), graph.findTransitiveParentTests(setify(graph.get("Helper"))));
+	}
+
+	@Test
+	public void shouldNoticeNewCycles() {
+		JavaClass utilTest = fakeClass("UtilTest", true);
+		graph.put(utilTest);
+		graph.addEdge(utilTest, util);
+		graph.findTransitiveParentTests(setify(service));
+
+		graph.addEdge(util, service);
+
+		assertEquals(setify(serviceTest, utilTest), graph.findTransitiveParentTests(setify(service)));
+	}
+
+	@Test
+	public void shouldNoticeRemovedClasses() {
+		graph.findTransitiveParentTests(setify(util));
+
+		graph.remove(service);
+
+		assertEquals(Collections.emptySet(), graph.findTransitiveParentTests(setify(util)));
+		assertEquals(setify(serviceTest), graph.findTransitiveParentTests(setify(serviceTest)));
+	}
+
+	@Test
+	public void shouldKeepMatchingTheGraphAsItChanges() {
+		Random random = new Random(2012);
+		DependencyGraph changingGraph = new DependencyGraph();
+		for (int i = 0; i < 60; i++) {
+			changingGraph.put(fakeClass("Class" + i, random.nextInt(4) == 0));
+		}
+		for (int i = 0; i < 120; i++) {
+			addRandomEdge(changingGraph, random);
+		}
+		for (int i = 0; i < 400; i++) {
+			JavaClass changed = randomClass(changingGraph, random);
+			switch (random.nextInt(4)) {
+			case 0:
+				addRandomEdge(changingGraph, random);
+				break;
+			case 1:
+				List<JavaClass> children = changingGraph.getChildren(changed);
+				JavaClass reloaded = fakeClass(changed.getName(), random.nextInt(4) == 0);
+				changingGraph.put(reloaded);
+				for (JavaClass child : children) {
+					if (random.nextInt(3) != 0) {
+						changingGraph.addEdge(reloaded, child);
+					}
+				}
+				break;
+			case 2:
+				changingGraph.remove(changed);
+				changingGraph.put(fakeClass(changed.getName(), changed.isATest()));
+				break;
+			default:
+				changingGraph.addEdge(changed, randomClass(changingGraph, random));
+			}
+
+			Set<JavaClass> classes = setify(randomClass(changingGraph, random), randomClass(changingGraph, random));
+			assertEquals(testsIn(changingGraph.findTransitiveParents(classes)), changingGraph.findTransitiveParentTests(classes));
+		}
+	}
+
+	private static void addRandomEdge(DependencyGraph changingGraph, Random random) {
+		changingGraph.addEdge(randomClass(changingGraph, random), randomClass(changingGraph, random));
+	}
+
+	private static JavaClass randomClass(DependencyGraph changingGraph, Random random) {
+		return changingGraph.get("Class" + random.nextInt(60));
+	}
+
+	private static Set<JavaClass> testsIn(Set<JavaClass> classes) {
+		Set<JavaClass> tests = new HashSet<JavaClass>();
+		for (JavaClass each : classes) {
+			if (each.isATest()) {
+				tests.add(each);
+			}
+		}
+		return tests;
+	}
+
+	@Test
+	public void shouldKeepTestNamesUpToDate() {
+		assertEquals(setify("ServiceTest"), graph.getTestNames());
+
+		graph.put(fakeClass("Service", true));
+		graph.put(fakeClass("ServiceTest", false));
+		assertEquals(setify("Service"), graph.getTestNames());
+
+		graph.remove(graph.get("Service"));
+		assertEquals(Collections.<String> emptySet(), graph.getTestNames());
+	}
+
+	private static JavaClass fakeClass(String name, final boolean isATest) {
+		return new FakeJavaClass(name) {
+			@Override
+			public boolean isATest() {
+				return isATest;
+			}
+		};
+	}
+}
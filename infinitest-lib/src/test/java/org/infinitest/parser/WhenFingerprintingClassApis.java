@@ -0,0 +1,111 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import javassist.*;
+
+import org.junit.*;
+
+import com.fakeco.fakeproduct.*;
+
+public class WhenFingerprintingClassApis {
+	private ConstantPoolClassParser scanner;
+	private JavaAssistClassParser javassistParser;
+	private ClassPool classPool;
+
+	@Before
+	public void inContext() throws NotFoundException {
+		scanner = new ConstantPoolClassParser(fakeClasspath().getCompleteClasspath());
+		javassistParser = new JavaAssistClassParser(fakeClasspath().getCompleteClasspath());
+		classPool = new ClassPool();
+		classPool.appendPathList(fakeClasspath().getCompleteClasspath());
+		classPool.appendSystemPath();
+	}
+
+	@After
+	public void cleanup() {
+		scanner.clear();
+		javassistParser.clear();
+	}
+
+	@Test
+	public void shouldFingerprintClassesTheSameWayWithEitherParser() {
+		for (Class<?> each : new Class<?>[] { FakeProduct.class, AnnotatedClass.class, FakeTree.class, TestJUnit4TestCase.class }) {
+			long fingerprint = fingerprintOf(scanner.getClass(each.getName()));
+			assertFalse(fingerprint == ApiFingerprint.UNKNOWN);
+			assertEquals(each.getName(), fingerprint, fingerprintOf(javassistParser.getClass(each.getName())));
+		}
+	}
+
+	@Test
+	public void shouldGiveDifferentClassesDifferentFingerprints() {
+		assertFalse(fingerprintOf(scanner.getClass(FakeProduct.class.getName())) == fingerprintOf(scanner.getClass(FakeTree.class.getName())));
+	}
+
+	@Test
+	public void shouldIgnorePrivateMembers() throws Exception {
+		CtClass changedClass = classPool.get(FakeProduct.class.getName());
+		changedClass.addMethod(CtNewMethod.make("private int added() { return 42; }", changedClass));
+		changedClass.addField(CtField.make("private String addedField;", changedClass));
+
+		assertEquals(fingerprintOf(scanner.getClass(FakeProduct.class.getName())), fingerprintOf(scan(changedClass)));
+	}
+
+	@Test
+	public void shouldChangeWhenPublicMembersChange() throws Exception {
+		CtClass changedClass = classPool.get(FakeProduct.class.getName());
+		changedClass.addMethod(CtNewMethod.make("public int added() { return 42; }", changedClass));
+
+		assertFalse(fingerprintOf(scanner.getClass(FakeProduct.class.getName())) == fingerprintOf(scan(changedClass)));
+	}
+
+	@Test
+	public void shouldNeverMatchAnUnknownFingerprint() {
+		assertFalse(ApiFingerprint.sameApi(ApiFingerprint.UNKNOWN, ApiFingerprint.UNKNOWN));
+		assertFalse(ApiFingerprint.sameApi(ApiFingerprint.UNKNOWN, 42));
+		assertTrue(ApiFingerprint.sameApi(42, 42));
+	}
+
+	private JavaClass scan(CtClass changedClass) throws Exception {
+		File classFile = File.createTempFile("Changed", ".class");
+		try {
+			OutputStream output = new FileOutputStream(classFile);
+			try {
+				output.write(changedClass.toBytecode());
+			} finally {
+				output.close();
+			}
+			return scanner.parse(classFile);
+		} finally {
+			classFile.delete();
+		}
+	}
+
+	private long fingerprintOf(JavaClass javaClass) {
+		return ClassFileIndex.apiFingerprintOf(javaClass);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Sets.*;
+import static java.util.Arrays.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class WhenFoldingInnerClasses {
+	private ClassFileIndex index;
+	private ClassBuilder builder;
+
+	@Before
+	public void inContext() {
+		builder = mock(ClassBuilder.class);
+		index = new ClassFileIndex(builder);
+		index.setInnerClassFolding(true);
+	}
+
+	@Test
+	public void shouldFoldInnerClassesIntoTheirOuterClass() {
+		index.findClasses(asList(load("Util"), load("Outer"), load("Outer$1", "Util"), load("Outer$Inner$2"), load("OuterTest", "Outer")));
+
+		assertEquals(newHashSet("Util", "Outer", "OuterTest"), index.getIndexedClasses());
+		assertEquals(newHashSet("OuterTest"), namesOf(index.findChangedTests(classes("Util"))));
+	}
+
+	@Test
+	public void shouldFoldInnerClassesIndexedBeforeTheirOuterClass() {
+		index.findClasses(asList(load("Util"), load("Outer$1", "Util"), load("Outer", "Outer$1"), load("OuterTest", "Outer")));
+
+		assertEquals(newHashSet("Util", "Outer", "OuterTest"), index.getIndexedClasses());
+		assertFalse(index.findJavaClass("Outer").isATest());
+		assertEquals(newHashSet("OuterTest"), namesOf(index.findChangedTests(classes("Util"))));
+	}
+
+	@Test
+	public void shouldReportTheOuterClassWhenAnInnerClassChanges() {
+		index.findClasses(asList(load("Outer"), load("Outer$1"), load("OuterTest", "Outer")));
+
+		Set<JavaClass> changedClasses = index.findClasses(asList(load("Outer$1")));
+
+		assertEquals(newHashSet("Outer"), namesOf(changedClasses));
+		assertEquals(newHashSet("OuterTest"), namesOf(index.findChangedTests(changedClasses)));
+	}
+
+	@Test
+	public void shouldKeepNestedTestsSeparate() {
+		index.findClasses(asList(load("Outer"), load("Outer$InnerTest", "Outer")));
+
+		assertEquals(newHashSet("Outer", "Outer$InnerTest"), index.getIndexedClasses());
+		assertEquals(newHashSet("Outer$InnerTest"), index.getTestNames());
+	}
+
+	@Test
+	public void shouldKeepTheDependenciesOfTheRemainingInnerClassesWhenOneIsRemoved() {
+		index.findClasses(asList(load("Util"), load("Helper"), load("Outer"), load("Outer$1", "Util"), load("Outer$2", "Helper"), load("OuterTest", "Outer")));
+
+		Set<JavaClass> dependents = index.removeClasses(asList(new File("Outer$1.class")));
+
+		assertEquals(newHashSet("Outer", "OuterTest"), namesOf(dependents));
+		assertTrue(index.findChangedTests(classes("Util")).isEmpty());
+		assertEquals(newHashSet("OuterTest"), namesOf(index.findChangedTests(classes("Helper"))));
+	}
+
+	@Test
+	public void shouldRemoveTheOuterClassOnceAllOfItsClassesAreRemoved() {
+		index.findClasses(asList(load("Outer"), load("Outer$1"), load("OuterTest", "Outer")));
+
+		Set<JavaClass> dependents = index.removeClasses(asList(new File("Outer.class"), new File("Outer$1.class")));
+
+		assertEquals(newHashSet("OuterTest"), namesOf(dependents));
+		assertEquals(newHashSet("OuterTest"), index.getIndexedClasses());
+	}
+
+	@Test
+	public void shouldNotFoldInnerClassesByDefault() {
+		index = new ClassFileIndex(builder);
+
+		index.findClasses(asList(load("Outer"), load("Outer$1")));
+
+		assertEquals(newHashSet("Outer", "Outer$1"), index.getIndexedClasses());
+	}
+
+	@Test
+	public void shouldFoldClassesUpToTheFirstDollarSignInTheirSimpleName() {
+		assertEquals("com.fakeco.Outer", FoldedClass.outerClassName("com.fakeco.Outer$Inner$1"));
+		assertEquals("com.fakeco.Outer", FoldedClass.outerClassName("com.fakeco.Outer$$anonfun$apply$1"));
+		assertEquals("com.fakeco.Outer", FoldedClass.outerClassName("com.fakeco.Outer"));
+		assertEquals("com.fake$co.Outer", FoldedClass.outerClassName("com.fake$co.Outer"));
+		assertEquals("$Proxy12", FoldedClass.outerClassName("$Proxy12"));
+	}
+
+	private File load(String name, String... imports) {
+		File classFile = new File(name + ".class");
+		when(builder.loadClass(classFile)).thenReturn(new IndexedClass(name, imports));
+		return classFile;
+	}
+
+	private Set<JavaClass> classes(String... names) {
+		Set<JavaClass> classes = newHashSet();
+		for (String each : names) {
+			classes.add(index.findJavaClass(each));
+		}
+		return classes;
+	}
+
+	private static Set<String> namesOf(Set<JavaClass> classes) {
+		Set<String> names = newHashSet();
+		for (JavaClass each : classes) {
+			names.add(each.getName());
+		}
+		return names;
+	}
+
+	private static class IndexedClass extends AbstractJavaClass {
+		private final String name;
+		private final List<String> imports;
+
+		IndexedClass(String name, String... imports) {
+			this.name = name;
+			this.imports = asList(imports);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Collection<String> getImports() {
+			return imports;
+		}
+
+		public boolean isATest() {
+			return name.endsWith("Test");
+		}
+
+		public boolean locatedInClassFile() {
+			return true;
+		}
+
+		public File getClassFile() {
+			return new File(name + ".class");
+		}
+	}
+}
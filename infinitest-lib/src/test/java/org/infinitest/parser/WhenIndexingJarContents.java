@@ -0,0 +1,101 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.*;
+
+import org.junit.*;
+
+public class WhenIndexingJarContents {
+	private File jar;
+	private JarContentIndex index;
+	private long lastModified;
+
+	@Before
+	public void inContext() throws IOException {
+		jar = File.createTempFile("library", ".jar");
+		index = new JarContentIndex();
+		lastModified = jar.lastModified() - 100000;
+	}
+
+	@After
+	public void cleanup() {
+		jar.delete();
+	}
+
+	@Test
+	public void shouldOnlyRecordTheContentsOfJarsItHasNotSeenBefore() throws IOException {
+		writeJar("com/example/Helper.class", "helper");
+
+		assertTrue(index.findChangedClasses(jar).isEmpty());
+	}
+
+	@Test
+	public void shouldFindAddedRemovedAndChangedClasses() throws IOException {
+		writeJar("com/example/Helper.class", "helper", "com/example/Removed.class", "removed", "com/example/Unchanged.class", "unchanged");
+		index.findChangedClasses(jar);
+
+		writeJar("com/example/Helper.class", "new helper", "com/example/Added.class", "added", "com/example/Unchanged.class", "unchanged");
+
+		assertEquals(setify("com.example.Helper", "com.example.Added", "com.example.Removed"), index.findChangedClasses(jar));
+	}
+
+	@Test
+	public void shouldIgnoreResourcesInJars() throws IOException {
+		writeJar("com/example/config.xml", "old");
+		index.findChangedClasses(jar);
+
+		writeJar("com/example/config.xml", "new");
+
+		assertTrue(index.findChangedClasses(jar).isEmpty());
+	}
+
+	@Test
+	public void shouldReportTheClassesInRemovedJars() throws IOException {
+		writeJar("com/example/Helper.class", "helper");
+		index.findChangedClasses(jar);
+
+		assertEquals(setify("com.example.Helper"), index.removeJar(jar));
+		assertTrue(index.removeJar(jar).isEmpty());
+	}
+
+	private void writeJar(String... namesAndContents) throws IOException {
+		JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				output.putNextEntry(new JarEntry(namesAndContents[i]));
+				output.write(namesAndContents[i + 1].getBytes("UTF-8"));
+				output.closeEntry();
+			}
+		} finally {
+			output.close();
+		}
+		// Each version gets a different timestamp, however fast the test runs
+		lastModified += 10000;
+		assertTrue(jar.setLastModified(lastModified));
+	}
+}
@@ -104,10 +104,21 @@ public class WhenLookingForChangedFiles {
 
 		newFile.delete();
 
-		assertTrue(detector.filesWereRemoved());
+		assertEquals(singleton(newFile), detector.findRemovedFiles());
 		assertThat(detector.findChangedFiles(), not(hasItem(newFile)));
 	}
 
+	@Test
+	public void shouldOnlyReportRemovedFilesOnce() throws Exception {
+		File newFile = createFileForClass(TestFakeProduct.class);
+		detector.findChangedFiles();
+		newFile.delete();
+
+		detector.findRemovedFiles();
+
+		assertTrue(detector.findRemovedFiles().isEmpty());
+	}
+
 	@Test
 	public void shouldDetectChangedFilesByTimeStamp() throws Exception {
 		detector = new FileChangeDetector() {
@@ -115,6 +126,11 @@ public class WhenLookingForChangedFiles {
 			protected long getModificationTimestamp(File classFile) {
 				return timestamp;
 			}
+
+			@Override
+			protected long getContentHash(File classFile) {
+				return timestamp;
+			}
 		};
 		detector.setClasspathProvider(classpath);
 		assertFalse("Should have found changed files on first run", detector.findChangedFiles().isEmpty());
@@ -123,6 +139,65 @@ public class WhenLookingForChangedFiles {
 		assertFalse("Timestamp changed", detector.findChangedFiles().isEmpty());
 	}
 
+	@Test
+	public void shouldIgnoreFilesRewrittenWithTheSameContents() throws Exception {
+		FileChangeDetector fileDetector = new FileChangeDetector();
+		fileDetector.setClasspathProvider(classpath);
+		File newFile = createFileForClass(TestFakeProduct.class);
+		assertThat(fileDetector.findChangedFiles(), hasItem(newFile));
+
+		assertTrue(newFile.setLastModified(newFile.lastModified() + 10000));
+
+		assertThat(fileDetector.findChangedFiles(), not(hasItem(newFile)));
+		assertEquals(1, fileDetector.getUnchangedRewriteCount());
+	}
+
+	@Test
+	public void shouldFindFilesRewrittenWithDifferentContents() throws Exception {
+		FileChangeDetector fileDetector = new FileChangeDetector();
+		fileDetector.setClasspathProvider(classpath);
+		File newFile = createFileForClass(TestFakeProduct.class);
+		long lastModified = newFile.lastModified();
+		fileDetector.findChangedFiles();
+
+		write(new byte[] { 1, 2, 3 }, newFile);
+		assertTrue(newFile.setLastModified(lastModified + 10000));
+
+		assertThat(fileDetector.findChangedFiles(), hasItem(newFile));
+		assertEquals(0, fileDetector.getUnchangedRewriteCount());
+	}
+
+	@Test
+	public void shouldFindChangedResourcesInClassDirectories() throws Exception {
+		File resource = createResource("com/fakeco/fakeproduct/config.properties");
+
+		assertThat(detector.findChangedFiles(), hasItem(resource));
+	}
+
+	@Test
+	public void shouldIgnoreResourcesWhenResourceTrackingIsOff() throws Exception {
+		FileChangeDetector fileDetector = new FileChangeDetector();
+		fileDetector.setResourceTracking(false);
+		fileDetector.setClasspathProvider(classpath);
+		File resource = createResource("com/fakeco/fakeproduct/config.properties");
+
+		assertThat(fileDetector.findChangedFiles(), not(hasItem(resource)));
+	}
+
+	@Test
+	public void shouldFindChangedJarsOnTheClasspath() throws Exception {
+		File jar = File.createTempFile("library", ".jar");
+		jar.deleteOnExit();
+		FileChangeDetector fileDetector = new FileChangeDetector();
+		fileDetector.setClasspathProvider(new StandaloneClasspath(Collections.<File> emptyList(), jar.getPath()));
+		assertThat(fileDetector.findChangedFiles(), hasItem(jar));
+		assertThat(fileDetector.findChangedFiles(), not(hasItem(jar)));
+
+		assertTrue(jar.setLastModified(jar.lastModified() + 10000));
+
+		assertThat(fileDetector.findChangedFiles(), hasItem(jar));
+	}
+
 	@Test
 	public void shouldBeTolerantOfDissapearingDirectories() throws Exception {
 		detector = new FileChangeDetector() {
@@ -135,6 +210,13 @@ public class WhenLookingForChangedFiles {
 		assertEquals(emptySet(), detector.findChangedFiles());
 	}
 
+	private File createResource(String path) throws IOException {
+		File resource = new File(altClassDir, path);
+		assertTrue(resource.getParentFile().mkdirs());
+		write(new byte[] { 1, 2, 3 }, resource);
+		return resource;
+	}
+
 	private File createFileForClass(Class<TestFakeProduct> clazz) throws IOException {
 		File destFile = InfinitestTestUtils.getFileForClass(altClassDir, clazz.getName());
 		assertTrue(destFile.getParentFile().mkdirs());
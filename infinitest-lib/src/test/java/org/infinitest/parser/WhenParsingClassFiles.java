@@ -26,11 +26,13 @@ import static org.junit.Assert.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.jar.*;
 
 import org.infinitest.*;
 import org.junit.*;
 
 import com.fakeco.fakeproduct.*;
+import com.google.common.io.*;
 
 public class WhenParsingClassFiles {
 	private ClassParser parser;
@@ -86,6 +88,51 @@ public class WhenParsingClassFiles {
 		assertNotNull(parseClass(FakeProduct.class));
 	}
 
+	@Test
+	public void shouldNotParseLibraryClasses() {
+		JavaClass stringClass = parseClass(String.class);
+
+		assertFalse(stringClass.locatedInClassFile());
+		assertTrue(stringClass instanceof UnparsableClass);
+	}
+
+	@Test
+	public void shouldKeepLibraryClassesBetweenUpdates() {
+		LibraryClassCache cache = new LibraryClassCache(1024 * 1024);
+		JavaAssistClassParser classParser = new JavaAssistClassParser(fakeClasspath().getCompleteClasspath(), cache);
+		assertTrue(classParser.getClass(TestJunit3TestCase.class.getName()).isATest());
+		long missCount = cache.getMissCount();
+		long hitCount = cache.getHitCount();
+
+		classParser.clear();
+
+		assertTrue(classParser.getClass(TestJunit3TestCase.class.getName()).isATest());
+		assertEquals(missCount, cache.getMissCount());
+		assertEquals(hitCount, cache.getHitCount());
+	}
+
+	@Test
+	public void shouldReloadLibraryClassesWhenAJarChanges() throws IOException {
+		File jar = File.createTempFile("library", ".jar");
+		jar.deleteOnExit();
+		JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+		output.putNextEntry(new JarEntry("java/util/ArrayList.class"));
+		ByteStreams.copy(ClassLoader.getSystemResourceAsStream("java/util/ArrayList.class"), output);
+		output.close();
+		LibraryClassCache cache = new LibraryClassCache(1024 * 1024);
+		JavaAssistClassParser classParser = new JavaAssistClassParser(jar.getAbsolutePath(), cache);
+		classParser.getClass(ArrayList.class.getName());
+		classParser.clear();
+		classParser.getClass(ArrayList.class.getName());
+		assertEquals(1, cache.getMissCount());
+
+		assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+		classParser.clear();
+		classParser.getClass(ArrayList.class.getName());
+
+		assertEquals(2, cache.getMissCount());
+	}
+
 	@Test
 	public void shouldHandleMissingClassDirs() {
 		parser = new JavaAssistClassParser("notADirYet");
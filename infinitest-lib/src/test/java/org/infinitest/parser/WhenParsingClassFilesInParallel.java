@@ -0,0 +1,139 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Lists.*;
+import static com.google.common.collect.Sets.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.google.common.base.*;
+
+public class WhenParsingClassFilesInParallel {
+	private SyntheticWorkspace workspace;
+	private List<RecordingBuilder> builders;
+	private ClassFileIndex index;
+
+	@Before
+	public void inContext() {
+		workspace = new SyntheticWorkspace(500, 5, 10);
+		builders = newArrayList();
+		index = new ClassFileIndex(new Supplier<ClassBuilder>() {
+			public ClassBuilder get() {
+				RecordingBuilder builder = new RecordingBuilder(workspace);
+				builders.add(builder);
+				return builder;
+			}
+		});
+		index.setParsingThreads(4);
+	}
+
+	@Test
+	public void shouldBuildTheSameGraphAsParsingSerially() {
+		ClassFileIndex serialIndex = new ClassFileIndex(workspace);
+		serialIndex.findClasses(workspace.getClassFiles());
+
+		Set<JavaClass> changedClasses = index.findClasses(workspace.getClassFiles());
+
+		assertEquals(500, changedClasses.size());
+		assertEquals(serialIndex.getIndexedClasses(), index.getIndexedClasses());
+		for (JavaClass each : serialIndex.getClasses()) {
+			JavaClass parallelClass = index.findJavaClass(each.getName());
+			assertEquals(newHashSet(serialIndex.getDependencies(each)), newHashSet(index.getDependencies(parallelClass)));
+		}
+	}
+
+	@Test
+	public void shouldGiveEachThreadItsOwnBuilder() {
+		index.findClasses(workspace.getClassFiles());
+
+		RecordingBuilder indexBuilder = builders.get(0);
+		assertEquals(5, builders.size());
+		assertTrue(indexBuilder.loadingThreads.isEmpty());
+		Set<Thread> parsingThreads = newHashSet();
+		for (RecordingBuilder each : builders.subList(1, builders.size())) {
+			// A builder is only ever used by one thread
+			assertTrue(each.loadingThreads.size() <= 1);
+			assertFalse(each.loadingThreads.contains(Thread.currentThread()));
+			parsingThreads.addAll(each.loadingThreads);
+		}
+		assertFalse(parsingThreads.isEmpty());
+	}
+
+	@Test
+	public void shouldClearEveryBuilderAfterParsing() {
+		index.findClasses(workspace.getClassFiles());
+
+		for (RecordingBuilder each : builders) {
+			assertEquals(1, each.clearCount);
+		}
+	}
+
+	@Test
+	public void shouldParseSmallBatchesOnTheCallingThread() {
+		index.findClasses(workspace.getClassFiles().subList(0, 10));
+
+		assertEquals(Collections.singleton(Thread.currentThread()), builders.get(0).loadingThreads);
+		assertEquals(10, index.getIndexedClasses().size());
+	}
+
+	@Test
+	public void shouldSkipFilesThatCannotBeParsed() {
+		List<File> files = newArrayList(workspace.getClassFiles());
+		files.add(new File("notAClassFile"));
+
+		assertEquals(500, index.findClasses(files).size());
+	}
+
+	private static class RecordingBuilder implements ClassBuilder {
+		private final ClassBuilder delegate;
+		private final Set<Thread> loadingThreads = Collections.synchronizedSet(new HashSet<Thread>());
+		private int clearCount;
+
+		RecordingBuilder(ClassBuilder delegate) {
+			this.delegate = delegate;
+		}
+
+		public JavaClass createClass(String classname) {
+			return delegate.createClass(classname);
+		}
+
+		public JavaClass loadClass(File file) {
+			loadingThreads.add(Thread.currentThread());
+			if (!file.getName().endsWith(".class")) {
+				return null;
+			}
+			return delegate.loadClass(file);
+		}
+
+		public void clear() {
+			clearCount++;
+		}
+
+		public void close() {
+		}
+	}
+}
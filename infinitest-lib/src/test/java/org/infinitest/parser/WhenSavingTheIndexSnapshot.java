@@ -0,0 +1,159 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static java.util.Arrays.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.fakeco.fakeproduct.*;
+
+public class WhenSavingTheIndexSnapshot {
+	private static final long FINGERPRINT = 42L;
+
+	private File snapshotFile;
+	private IndexSnapshot snapshot;
+	private ClassBuilder builder;
+	private ClassFileIndex index;
+	private File productFile;
+	private File testFile;
+
+	@Before
+	public void inContext() throws IOException {
+		snapshotFile = File.createTempFile("infinitest", ".index");
+		snapshotFile.delete();
+		snapshot = new IndexSnapshot(snapshotFile);
+		builder = mock(ClassBuilder.class);
+		index = new ClassFileIndex(builder);
+		productFile = getFileForClass(FakeProduct.class);
+		testFile = getFileForClass(TestFakeProduct.class);
+
+		SnapshotClass product = restoredClass(FakeProduct.class, productFile, false);
+		SnapshotClass test = restoredClass(TestFakeProduct.class, testFile, true);
+		test.addImport(FakeProduct.class.getName());
+		index.restore(asList(product, test));
+	}
+
+	@After
+	public void cleanup() {
+		snapshotFile.delete();
+	}
+
+	@Test
+	public void shouldRestoreClassesAndDependencies() throws IOException {
+		snapshot.write(index, FINGERPRINT);
+
+		ClassFileIndex restoredIndex = new ClassFileIndex(builder);
+		restoredIndex.restore(snapshot.read(FINGERPRINT));
+
+		assertEquals(index.getIndexedClasses(), restoredIndex.getIndexedClasses());
+		JavaClass product = restoredIndex.findJavaClass(FakeProduct.class.getName());
+		Set<JavaClass> parents = restoredIndex.findChangedParents(Collections.singleton(product));
+		assertTrue(parents.contains(restoredIndex.findJavaClass(TestFakeProduct.class.getName())));
+		assertTrue(restoredIndex.findJavaClass(TestFakeProduct.class.getName()).isATest());
+	}
+
+	@Test
+	public void shouldRestoreResourceReferences() throws IOException {
+		SnapshotClass product = restoredClass(FakeProduct.class, productFile, false);
+		product.addResourceReference("com/fakeco/fakeproduct/context.xml");
+		ClassFileIndex indexWithResources = new ClassFileIndex(builder);
+		indexWithResources.restore(asList(product));
+		snapshot.write(indexWithResources, FINGERPRINT);
+
+		ClassFileIndex restoredIndex = new ClassFileIndex(builder);
+		restoredIndex.restore(snapshot.read(FINGERPRINT));
+
+		JavaClass restoredProduct = restoredIndex.findJavaClass(FakeProduct.class.getName());
+		assertEquals(Collections.singleton(restoredProduct), restoredIndex.findClassesUsingResource("com/fakeco/fakeproduct/context.xml"));
+	}
+
+	@Test
+	public void shouldReportTimestampsOfUnchangedClassFiles() throws IOException {
+		snapshot.write(index, FINGERPRINT);
+
+		Map<File, Long> unchangedFiles = new ClassFileIndex(builder).restore(snapshot.read(FINGERPRINT));
+
+		assertEquals(productFile.lastModified(), unchangedFiles.get(productFile).longValue());
+		assertEquals(2, unchangedFiles.size());
+	}
+
+	@Test
+	public void shouldNotReportClassFilesThatChangedSinceTheSnapshot() {
+		SnapshotClass outOfDate = new SnapshotClass(FakeProduct.class.getName(), productFile, false, new ClassFileStamp(0, 0), ApiFingerprint.UNKNOWN);
+
+		Map<File, Long> unchangedFiles = new ClassFileIndex(builder).restore(asList(outOfDate));
+
+		assertTrue(unchangedFiles.isEmpty());
+	}
+
+	@Test
+	public void shouldReuseRestoredClassesInsteadOfParsingUnchangedFiles() {
+		Set<JavaClass> classes = index.findClasses(asList(productFile, testFile));
+
+		assertEquals(2, classes.size());
+		verify(builder, never()).loadClass(any(File.class));
+	}
+
+	@Test
+	public void shouldParseClassFilesThatChangedSinceTheSnapshot() {
+		ClassFileIndex restoredIndex = new ClassFileIndex(builder);
+		restoredIndex.restore(asList(new SnapshotClass(FakeProduct.class.getName(), productFile, false, new ClassFileStamp(0, 0), ApiFingerprint.UNKNOWN)));
+
+		restoredIndex.findClasses(asList(productFile));
+
+		verify(builder).loadClass(productFile);
+	}
+
+	@Test
+	public void shouldIgnoreSnapshotsForADifferentClasspath() throws IOException {
+		snapshot.write(index, FINGERPRINT);
+
+		assertTrue(snapshot.read(FINGERPRINT + 1).isEmpty());
+	}
+
+	@Test
+	public void shouldIgnoreCorruptSnapshots() throws IOException {
+		snapshot.write(index, FINGERPRINT);
+		RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw");
+		file.setLength(file.length() / 2);
+		file.close();
+
+		assertTrue(snapshot.read(FINGERPRINT).isEmpty());
+	}
+
+	@Test
+	public void shouldIgnoreMissingSnapshots() {
+		assertTrue(snapshot.read(FINGERPRINT).isEmpty());
+	}
+
+	private SnapshotClass restoredClass(Class<?> clazz, File classFile, boolean isATest) {
+		return new SnapshotClass(clazz.getName(), classFile, isATest, ClassFileStamp.of(classFile), ApiFingerprint.UNKNOWN);
+	}
+}
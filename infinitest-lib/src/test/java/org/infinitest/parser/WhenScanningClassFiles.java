@@ -0,0 +1,144 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static org.hamcrest.Matchers.*;
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import javax.swing.*;
+
+import org.junit.*;
+
+import com.fakeco.fakeproduct.*;
+import com.fakeco.fakeproduct.id.*;
+
+public class WhenScanningClassFiles {
+	private ConstantPoolClassParser parser;
+
+	@Before
+	public void inContext() {
+		parser = new ConstantPoolClassParser(fakeClasspath().getCompleteClasspath());
+	}
+
+	@After
+	public void cleanup() {
+		parser.clear();
+	}
+
+	@Test
+	public void shouldFindDependenciesInConstantPool() {
+		assertThat(dependenciesOf(FakeProduct.class), hasItem(FakeId.class.getName()));
+		assertThat(dependenciesOf(ANewClass.class), hasItem(FakeProduct.class.getName()));
+		assertThat(dependenciesOf(ANewClass.class), hasItem(Integer.class.getName()));
+	}
+
+	@Test
+	public void shouldDependOnParentClass() {
+		assertThat(dependenciesOf(FakeTree.class), hasItem(JTree.class.getName()));
+	}
+
+	@Test
+	public void shouldFindFieldDependencies() {
+		assertThat(dependenciesOf(FakeTree.class), hasItem(FakeDependency.class.getName()));
+	}
+
+	@Test
+	public void shouldFindDependenciesForAnnotations() {
+		assertThat(dependenciesOf(AnnotatedClass.class), hasItem(ClassAnnotation.class.getName()));
+		assertThat(dependenciesOf(AnnotatedClass.class), hasItem(InvisibleClassAnnotation.class.getName()));
+		assertThat(dependenciesOf(FakeProduct.class), hasItem(FieldAnnotation.class.getName()));
+		assertThat(dependenciesOf(AnnotatedClass.class), hasItem(MethodAnnotation.class.getName()));
+		assertThat(dependenciesOf(AnnotatedClass.class), hasItem(ParameterAnnotation.class.getName()));
+		assertThat(dependenciesOf(AnnotatedClass.class), hasItem(InvisibleParameterAnnotation.class.getName()));
+	}
+
+	@Test
+	public void shouldSetTheClassFile() throws IOException {
+		File classFile = getFileForClass(FakeProduct.class);
+
+		JavaClass javaClass = parser.parse(classFile);
+
+		assertEquals(FakeProduct.class.getName(), javaClass.getName());
+		assertEquals(classFile, javaClass.getClassFile());
+		assertTrue(javaClass.locatedInClassFile());
+	}
+
+	@Test
+	public void shouldNotParseClassesOutsideTheClassDirectories() {
+		JavaClass stringClass = parser.getClass(String.class.getName());
+
+		assertEquals(String.class.getName(), stringClass.getName());
+		assertFalse(stringClass.locatedInClassFile());
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldRejectFilesThatAreNotClassFiles() throws IOException {
+		File notAClass = File.createTempFile("notAClass", ".class");
+		try {
+			Writer writer = new FileWriter(notAClass);
+			writer.write("This is not a class file");
+			writer.close();
+			parser.parse(notAClass);
+		} finally {
+			notAClass.delete();
+		}
+	}
+
+	@Test
+	public void shouldDetectTests() {
+		assertTrue(isATest(TestJunit3TestCase.class));
+		assertTrue(isATest(TestJUnit4TestCase.class));
+		assertTrue(isATest(TestNGFakeProductTest.class));
+		assertTrue(isATest(TestWithACustomRunner.class));
+		assertTrue(isATest(ParameterizedTest.class));
+	}
+
+	@Test
+	public void shouldDetectClassesThatInheritTestsOrRunners() {
+		assertTrue(isATest(JUnit4TestThatInherits.class));
+		assertTrue(isATest(JUnit3TestThatInherits.class));
+		assertTrue(isATest(TestThatInheritsACustomRunner.class));
+		assertTrue(isATest(ValidTestWithUnconventionalConstructor.class));
+	}
+
+	@Test
+	public void shouldIgnoreClassesThatAreNotRunnableTests() {
+		assertFalse(isATest(FakeProduct.class));
+		assertFalse(isATest(AbstractTestFakeProduct.class));
+		assertFalse(isATest(ClassWithAnInnerTestClass.InnerTest.class));
+		assertFalse(isATest(AllTests.class));
+		assertFalse(isATest(LooksLikeAJUnit3TestButIsnt.class));
+	}
+
+	private boolean isATest(Class<?> clazz) {
+		return parser.getClass(clazz.getName()).isATest();
+	}
+
+	private Collection<String> dependenciesOf(Class<?> clazz) {
+		return parser.getClass(clazz.getName()).getImports();
+	}
+}
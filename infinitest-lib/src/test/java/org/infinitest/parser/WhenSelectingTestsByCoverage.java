@@ -0,0 +1,94 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static com.google.common.collect.Sets.*;
+import static java.util.Collections.*;
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+import org.junit.*;
+
+public class WhenSelectingTestsByCoverage {
+	private TestCoverage coverage;
+	private JavaClass test;
+	private JavaClass usedClass;
+	private JavaClass unusedClass;
+
+	@Before
+	public void inContext() {
+		coverage = new TestCoverage();
+		test = new FakeJavaClass("com.example.SomeTest");
+		usedClass = new FakeJavaClass("com.example.Used");
+		unusedClass = new FakeJavaClass("com.example.Unused");
+	}
+
+	@Test
+	public void shouldKeepTestsThatHaveNeverRun() {
+		assertEquals(singleton(test), coverage.filterTests(singleton(test), singleton(unusedClass)));
+	}
+
+	@Test
+	public void shouldKeepTestsThatLoadedAChangedClass() {
+		coverage.testCaseComplete(passed(test, usedClass.getName()));
+
+		assertEquals(singleton(test), coverage.filterTests(singleton(test), singleton(usedClass)));
+	}
+
+	@Test
+	public void shouldSkipTestsThatDidNotLoadAnyChangedClass() {
+		coverage.testCaseComplete(passed(test, usedClass.getName()));
+
+		assertTrue(coverage.filterTests(singleton(test), singleton(unusedClass)).isEmpty());
+	}
+
+	@Test
+	public void shouldForgetCoverageOfFailedTests() {
+		coverage.testCaseComplete(passed(test, usedClass.getName()));
+		TestResults results = new TestResults(methodFailed(test.getName(), "someMethod", new AssertionError()));
+		results.setLoadedClasses(singleton(usedClass.getName()));
+
+		coverage.testCaseComplete(new TestCaseEvent(test.getName(), this, results));
+
+		assertEquals(singleton(test), coverage.filterTests(singleton(test), singleton(unusedClass)));
+	}
+
+	@Test
+	public void shouldForgetCoverageWhenTrackingIsOff() {
+		coverage.testCaseComplete(passed(test, usedClass.getName()));
+
+		coverage.testCaseComplete(new TestCaseEvent(test.getName(), this, new TestResults()));
+
+		assertEquals(singleton(test), coverage.filterTests(singleton(test), singleton(unusedClass)));
+	}
+
+	private TestCaseEvent passed(JavaClass testClass, String... loadedClasses) {
+		TestResults results = new TestResults();
+		Set<String> classes = newHashSet(loadedClasses);
+		classes.add(testClass.getName());
+		results.setLoadedClasses(classes);
+		return new TestCaseEvent(testClass.getName(), this, results);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.filter.*;
+import org.junit.*;
+
+public class WhenTrackingResources extends DependencyGraphTestBase {
+	// Referred to by these string constants, so changing them runs this test
+	private static final String TRACKED_RESOURCE = "classpath:/org/infinitest/parser/tracked-context.xml";
+	private static final String RELATIVE_RESOURCE = "relative-resource.xml";
+	private static final String BUNDLE = "org.infinitest.parser.tracked-messages";
+
+	@Test
+	public void shouldRunTestsThatReferToAChangedResource() {
+		addToDependencyGraph(WhenTrackingResources.class);
+
+		assertEquals(namesOf(WhenTrackingResources.class), namesOf(getGraph().findTestsToRun(setify(resource("org/infinitest/parser", "tracked-context", "xml")))));
+	}
+
+	@Test
+	public void shouldMatchResourcesReferredToRelativeToTheClassPackage() {
+		addToDependencyGraph(WhenTrackingResources.class);
+
+		assertEquals(namesOf(WhenTrackingResources.class), namesOf(getGraph().findTestsToRun(setify(resource("org/infinitest/parser", "relative-resource", "xml")))));
+		assertTrue(getGraph().findTestsToRun(setify(resource("org/infinitest", "relative-resource", "xml"))).isEmpty());
+	}
+
+	@Test
+	public void shouldMatchPropertiesFilesToTheBundlesTheyBelongTo() {
+		addToDependencyGraph(WhenTrackingResources.class);
+
+		assertEquals(namesOf(WhenTrackingResources.class), namesOf(getGraph().findTestsToRun(setify(resource("org/infinitest/parser", "tracked-messages_en_US", "properties")))));
+	}
+
+	@Test
+	public void shouldIgnoreResourcesNoClassRefersTo() {
+		addToDependencyGraph(WhenTrackingResources.class);
+
+		assertTrue(getGraph().findTestsToRun(setify(resource("org/infinitest/parser", "unknown", "xml"))).isEmpty());
+	}
+
+	@Test
+	public void shouldRunAllTestsForUnmatchedResourcesIfConfiguredTo() {
+		addToDependencyGraph(WhenTrackingResources.class);
+		getGraph().setUnmatchedResourcePolicy(UnmatchedResourcePolicy.RUN_ALL_TESTS);
+
+		assertEquals(namesOf(WhenTrackingResources.class), namesOf(getGraph().findTestsToRun(setify(resource("org/infinitest/parser", "unknown", "xml")))));
+	}
+
+	@Test
+	public void shouldRunTestsThatReferToARemovedResource() {
+		addToDependencyGraph(WhenTrackingResources.class);
+
+		assertEquals(namesOf(WhenTrackingResources.class), namesOf(getGraph().removeClasses(setify(resource("org/infinitest/parser", "tracked-context", "xml")))));
+	}
+
+	@Test
+	public void shouldFindResourceReferencesWithEitherParser() {
+		ClassFileTestDetector detector = new ClassFileTestDetector(new FilterStub());
+		detector.setClassParserType(ClassParserType.CONSTANT_POOL);
+		detector.setClasspathProvider(fakeClasspath());
+		detector.findTestsToRun(setify(getFileForClass(WhenTrackingResources.class)));
+
+		assertEquals(namesOf(WhenTrackingResources.class), namesOf(detector.findTestsToRun(setify(resource("org/infinitest/parser", "tracked-context", "xml")))));
+	}
+
+	@Test
+	public void shouldOnlyTreatStringConstantsThatLookLikePathsAsResources() {
+		assertEquals("com/example/context.xml", ResourceReferences.toResourcePath("classpath*:/com/example/context.xml"));
+		assertEquals("log4j.properties", ResourceReferences.toResourcePath("log4j.properties"));
+		assertNull(ResourceReferences.toResourcePath("Hello, world."));
+		assertNull(ResourceReferences.toResourcePath("name"));
+		assertNull(ResourceReferences.toResourcePath("http://example.com/index.html"));
+		assertNull(ResourceReferences.toResourcePath("/"));
+	}
+
+	@Test
+	public void shouldMatchPropertiesFilesWithTheBundleNamesTheyCanBeLoadedWith() {
+		Set<String> paths = ResourceReferences.pathsFor("com/example/messages_en_US.properties");
+
+		assertTrue(paths.containsAll(Arrays.asList("com/example/messages_en_US.properties", "com.example.messages_en", "com/example/messages", "com.example.messages")));
+	}
+
+	// Built from parts, so the test doesn't refer to the resources itself
+	private static File resource(String directory, String baseName, String extension) {
+		return new File(fakeClassDirectory(), directory + "/" + baseName + "." + extension);
+	}
+
+	private static Set<String> namesOf(Class<?>... classes) {
+		Set<String> names = new HashSet<String>();
+		for (Class<?> each : classes) {
+			names.add(each.getName());
+		}
+		return names;
+	}
+
+	private static Set<String> namesOf(Set<JavaClass> classes) {
+		Set<String> names = new HashSet<String>();
+		for (JavaClass each : classes) {
+			names.add(each.getName());
+		}
+		return names;
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.parser;
+
+import static org.infinitest.util.FakeEnvironments.*;
+import static org.infinitest.util.InfinitestTestUtils.*;
+import static org.infinitest.util.InfinitestUtils.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.infinitest.filter.*;
+import org.junit.*;
+
+public class WhenWritingTheIndexSnapshot {
+	private File snapshotFile;
+	private ClassFileTestDetector detector;
+
+	@Before
+	public void inContext() throws IOException {
+		snapshotFile = File.createTempFile("infinitest", ".index");
+		snapshotFile.delete();
+		detector = createDetector();
+	}
+
+	@After
+	public void cleanup() {
+		snapshotFile.delete();
+	}
+
+	@Test
+	public void shouldNotWriteTheSnapshotOnTheUpdateThread() {
+		detector.setSnapshotWriteDelay(60000);
+		detector.findTestsToRun(setify(getFileForClass(WhenWritingTheIndexSnapshot.class)));
+
+		assertFalse(snapshotFile.exists());
+	}
+
+	@Test
+	public void shouldWriteTheSnapshotShortlyAfterAnUpdate() throws InterruptedException {
+		detector.setSnapshotWriteDelay(10);
+		detector.findTestsToRun(setify(getFileForClass(WhenWritingTheIndexSnapshot.class)));
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!snapshotFile.exists() && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+		assertFalse(createDetector().restoreIndex().isEmpty());
+	}
+
+	private ClassFileTestDetector createDetector() {
+		ClassFileTestDetector testDetector = new ClassFileTestDetector(new FilterStub());
+		testDetector.setClassParserType(ClassParserType.CONSTANT_POOL);
+		testDetector.setClasspathProvider(fakeClasspath());
+		testDetector.setIndexSnapshotFile(snapshotFile);
+		return testDetector;
+	}
+}
@@ -0,0 +1,42 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.testrunner;
+
+import static org.infinitest.testrunner.TestEvent.*;
+
+/**
+ * Loads the test class the way libraries like Spring do, and fails if that
+ * gives it a different identity than the system class loader does.
+ */
+public class ReflectiveLoadingRunner implements NativeRunner {
+	public TestResults runTest(String testClass) {
+		try {
+			Class<?> contextClass = Class.forName(testClass, true, Thread.currentThread().getContextClassLoader());
+			if (contextClass != ClassLoader.getSystemClassLoader().loadClass(testClass)) {
+				return new TestResults(methodFailed(testClass, "", new ClassCastException(testClass + " was loaded twice")));
+			}
+		} catch (ClassNotFoundException e) {
+			return new TestResults(methodFailed(testClass, "", e));
+		}
+		return new TestResults();
+	}
+}
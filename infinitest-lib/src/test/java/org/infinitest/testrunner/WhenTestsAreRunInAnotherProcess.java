@@ -38,6 +38,7 @@ import static org.mockito.Mockito.*;
 import java.util.*;
 
 import org.infinitest.*;
+import org.infinitest.testrunner.process.*;
 import org.infinitest.util.*;
 import org.junit.*;
 
@@ -62,6 +63,16 @@ public class WhenTestsAreRunInAnotherProcess extends AbstractRunnerTest {
 		StubStatefulTest.counter = 0;
 	}
 
+	@Test
+	public void shouldPassClassLoadingTrackingOnToTheProcesses() {
+		ProcessConnectionFactory connectionFactory = mock(ProcessConnectionFactory.class);
+		MultiProcessRunner trackingRunner = new MultiProcessRunner(connectionFactory, fakeEnvironment());
+
+		trackingRunner.setClassLoadingTracked(true);
+
+		verify(connectionFactory).setClassLoadingTracked(true);
+	}
+
 	@Test
 	public void shouldHandleLargeAmountsOfConsoleOutput() throws Exception {
 		final StringBuffer stdOut = new StringBuffer();
@@ -60,21 +60,41 @@ public class WhenCreatingRunnerProcessConnection {
 		return sendMessageWithServerSocket(new String[] { input });
 	}
 
+	@Test
+	public void shouldReportTheProjectClassesTheProcessLoaded() throws Exception {
+		factory = new NativeConnectionFactory(ReflectiveLoadingRunner.class);
+		factory.setClassLoadingTracked(true);
+
+		TestResults results = runInProcess(FakeRunner.class.getName()).get(0);
+
+		assertFalse(results.iterator().hasNext());
+		assertTrue(results.getLoadedClasses().contains(FakeRunner.class.getName()));
+		assertFalse(results.getLoadedClasses().contains(String.class.getName()));
+	}
+
 	private List<TestEvent> sendMessageWithServerSocket(String... messages) throws UnknownHostException, IOException, ClassNotFoundException {
+		List<TestEvent> events = Lists.newArrayList();
+		for (TestResults each : runInProcess(messages)) {
+			addAll(events, each);
+		}
+		return events;
+	}
+
+	private List<TestResults> runInProcess(String... messages) throws UnknownHostException, IOException, ClassNotFoundException {
 		ServerSocket serverSocket = new ServerSocket(0);
 		try {
 			factory.startProcess(serverSocket.getLocalPort(), fakeEnvironment());
 			Socket socket = serverSocket.accept();
 			ObjectInputStream inStream = new ObjectInputStream(socket.getInputStream());
 			ObjectOutputStream outStream = new ObjectOutputStream(socket.getOutputStream());
-			List<TestEvent> results = Lists.newArrayList();
+			List<TestResults> results = Lists.newArrayList();
 			TestResults result = null;
 			int i = 0;
 			do {
 				outStream.writeObject(messages[i++]);
 				result = (TestResults) inStream.readObject();
 				if (result != null) {
-					addAll(results, result);
+					results.add(result);
 				}
 			} while (i < messages.length);
 			outStream.writeObject(null);
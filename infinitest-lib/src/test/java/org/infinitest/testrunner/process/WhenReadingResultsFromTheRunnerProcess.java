@@ -0,0 +1,66 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.testrunner.process;
+
+import static org.infinitest.testrunner.TestEvent.*;
+import static org.infinitest.util.ClassNames.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.infinitest.testrunner.*;
+import org.junit.*;
+
+public class WhenReadingResultsFromTheRunnerProcess {
+	@Test
+	public void shouldShareTheNamesOfTestsWithTheRestOfTheCore() throws Exception {
+		TestResults results = new TestResults(methodFailed("Failed", new String("com.fakeco.FakeTest"), "shouldPass", new AssertionError()));
+
+		TestEvent event = readBack(results).iterator().next();
+
+		assertSame(canonicalName(new String("com.fakeco.FakeTest")), event.getTestName());
+	}
+
+	@Test
+	public void shouldLeaveMessagesAlone() throws Exception {
+		String message = "expected:<1> but was:<2>";
+		TestResults results = new TestResults(methodFailed(message, "com.fakeco.FakeTest", "shouldPass", new AssertionError()));
+
+		TestEvent event = readBack(results).iterator().next();
+
+		assertEquals(message, event.getMessage());
+	}
+
+	private TestResults readBack(TestResults results) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream output = new ObjectOutputStream(bytes);
+		output.writeObject(results);
+		output.close();
+		ObjectInputStream input = new ClassNameSharingInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		try {
+			return (TestResults) input.readObject();
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -32,8 +32,12 @@ public class WhenConfiguringGlobalSettings {
 	public void canResetToDefaults() {
 		InfinitestGlobalSettings.setSlowTestTimeLimit(100);
 		setLogLevel(CONFIG);
+		setUpdateQuietPeriod(300);
+		setMaximumUpdateDelay(5000);
 		resetToDefaults();
 		assertEquals(INFO, getLogLevel());
 		assertEquals(500, InfinitestGlobalSettings.getSlowTestTimeLimit());
+		assertEquals(250, getUpdateQuietPeriod());
+		assertEquals(2000, getMaximumUpdateDelay());
 	}
 }
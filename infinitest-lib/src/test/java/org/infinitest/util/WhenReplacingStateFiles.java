@@ -0,0 +1,70 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.util;
+
+import static com.google.common.io.Files.*;
+import static java.util.Arrays.*;
+import static org.infinitest.util.StateFiles.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+
+public class WhenReplacingStateFiles {
+	private File stateDirectory;
+
+	@Before
+	public void inContext() {
+		stateDirectory = createTempDir();
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		deleteRecursively(stateDirectory.getCanonicalFile());
+	}
+
+	@Test
+	public void shouldReplaceTheExistingFile() throws IOException {
+		File stateFile = new File(stateDirectory, "core.index");
+		replace(stateFile, new byte[] { 1, 2, 3 });
+		replace(stateFile, new byte[] { 4, 5 });
+
+		assertArrayEquals(new byte[] { 4, 5 }, readFully(stateFile));
+	}
+
+	@Test
+	public void shouldCreateTheStateDirectory() throws IOException {
+		File stateFile = new File(stateDirectory, "plugin/state/core.index");
+		replace(stateFile, new byte[] { 1 });
+
+		assertArrayEquals(new byte[] { 1 }, readFully(stateFile));
+	}
+
+	@Test
+	public void shouldNotLeaveTemporaryFilesBehind() throws IOException {
+		replace(new File(stateDirectory, "core.index"), new byte[] { 1 });
+		replace(new File(stateDirectory, "core.index"), new byte[] { 2 });
+
+		assertEquals(asList("core.index"), asList(stateDirectory.list()));
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.util;
+
+import static java.util.Arrays.*;
+import static org.infinitest.util.ClassNames.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+
+public class WhenSharingClassNames {
+	@Test
+	public void shouldReturnTheSameInstanceForEqualNames() {
+		String name = canonicalName(new String("com.fakeco.FakeClass"));
+
+		assertSame(name, canonicalName(new String("com.fakeco.FakeClass")));
+	}
+
+	@Test
+	public void shouldShareEveryNameInACollection() {
+		String name = canonicalName(new String("com.fakeco.OtherClass"));
+
+		Set<String> names = canonicalNames(asList(new String("com.fakeco.OtherClass"), "com.fakeco.ThirdClass"));
+
+		assertEquals(2, names.size());
+		for (String each : names) {
+			if (each.equals(name)) {
+				assertSame(name, each);
+			}
+		}
+	}
+
+	@Test
+	public void shouldAllowNullNames() {
+		assertNull(canonicalName(null));
+	}
+
+	@Test
+	public void shouldRecognizeClassNames() {
+		assertTrue(isClassName("com.fakeco.FakeClass"));
+		assertTrue(isClassName("com.fakeco.FakeClass$Inner"));
+		assertTrue(isClassName("shouldPass"));
+	}
+
+	@Test
+	public void shouldNotMistakeOtherTextForAClassName() {
+		assertFalse(isClassName(""));
+		assertFalse(isClassName("expected:<1> but was:<2>"));
+		assertFalse(isClassName("com..fakeco"));
+		assertFalse(isClassName("com.fakeco."));
+		assertFalse(isClassName("1com.fakeco"));
+	}
+}
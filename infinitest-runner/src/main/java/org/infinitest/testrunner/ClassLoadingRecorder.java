@@ -0,0 +1,124 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.testrunner;
+
+import java.io.*;
+import java.lang.instrument.*;
+import java.net.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * A java agent that records the name of every class defined from the
+ * project's class directories, whichever class loader defines it. It doesn't
+ * change any classes, and it doesn't add a class loader, so classes loaded
+ * reflectively through the system or context class loader are recorded and
+ * keep their usual identity.
+ * 
+ * A class is only defined once per process, so the classes loaded while a
+ * test runs include the ones earlier tests in the same run loaded. That
+ * overstates what each test uses, which is safe for test selection.
+ */
+public class ClassLoadingRecorder implements ClassFileTransformer {
+	private static ClassLoadingRecorder instance;
+
+	private final Set<File> classDirectories = new HashSet<File>();
+	// Whether each code source location is one of the class directories
+	private final Map<String, Boolean> trackedLocations = new HashMap<String, Boolean>();
+	private final Set<String> loadedClasses = new HashSet<String>();
+
+	ClassLoadingRecorder(String classDirectories) {
+		for (String each : classDirectories.split(File.pathSeparator)) {
+			if (each.length() > 0) {
+				this.classDirectories.add(canonicalFile(new File(each)));
+			}
+		}
+	}
+
+	/**
+	 * Called by the JVM when the process is started with
+	 * <code>-javaagent:&lt;jar&gt;=&lt;class directories&gt;</code>.
+	 */
+	public static void premain(String classDirectories, Instrumentation instrumentation) {
+		ClassLoadingRecorder recorder = new ClassLoadingRecorder(classDirectories == null ? "" : classDirectories);
+		instrumentation.addTransformer(recorder);
+		instance = recorder;
+	}
+
+	/**
+	 * The recorder the process was started with, or null if it wasn't started
+	 * with the agent.
+	 */
+	static ClassLoadingRecorder getInstance() {
+		return instance;
+	}
+
+	public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+		if ((className != null) && (classBeingRedefined == null) && isFromClassDirectory(protectionDomain)) {
+			synchronized (this) {
+				loadedClasses.add(className.replace('/', '.'));
+			}
+		}
+		// The class is left as it is
+		return null;
+	}
+
+	private synchronized boolean isFromClassDirectory(ProtectionDomain protectionDomain) {
+		if ((protectionDomain == null) || (protectionDomain.getCodeSource() == null)) {
+			return false;
+		}
+		URL location = protectionDomain.getCodeSource().getLocation();
+		if (location == null) {
+			return false;
+		}
+		String key = location.toString();
+		Boolean tracked = trackedLocations.get(key);
+		if (tracked == null) {
+			tracked = classDirectories.contains(toFile(location));
+			trackedLocations.put(key, tracked);
+		}
+		return tracked;
+	}
+
+	private static File toFile(URL location) {
+		try {
+			return canonicalFile(new File(location.toURI()));
+		} catch (URISyntaxException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			// Not a file URL
+			return null;
+		}
+	}
+
+	private static File canonicalFile(File file) {
+		try {
+			return file.getCanonicalFile();
+		} catch (IOException e) {
+			return file.getAbsoluteFile();
+		}
+	}
+
+	synchronized Set<String> getLoadedClasses() {
+		return new HashSet<String>(loadedClasses);
+	}
+}
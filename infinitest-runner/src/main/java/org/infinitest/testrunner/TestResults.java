@@ -31,6 +31,7 @@ public class TestResults implements Iterable<TestEvent>, Serializable {
 
 	private final List<TestEvent> eventsCollected;
 	private final List<MethodStats> methodStats = new LinkedList<MethodStats>();
+	private Set<String> loadedClasses;
 
 	public TestResults(List<TestEvent> eventsCollected) {
 		this.eventsCollected = eventsCollected;
@@ -51,4 +52,16 @@ public class TestResults implements Iterable<TestEvent>, Serializable {
 	public void addMethodStats(Collection<MethodStats> methodStatistics) {
 		methodStats.addAll(methodStatistics);
 	}
+
+	/**
+	 * The project classes the test loaded, or null if the runner process
+	 * wasn't tracking them.
+	 */
+	public Set<String> getLoadedClasses() {
+		return loadedClasses;
+	}
+
+	public void setLoadedClasses(Set<String> loadedClasses) {
+		this.loadedClasses = new HashSet<String>(loadedClasses);
+	}
 }
@@ -61,7 +61,13 @@ public class TestRunnerProcess {
 	}
 
 	private TestResults runTest(String testName) {
-		return runner.runTest(testName);
+		TestResults results = runner.runTest(testName);
+		// Only there when the process was started with the agent
+		ClassLoadingRecorder recorder = ClassLoadingRecorder.getInstance();
+		if (recorder != null) {
+			results.setLoadedClasses(recorder.getLoadedClasses());
+		}
+		return results;
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Infinitest.
+ *
+ * Copyright (C) 2010
+ * "Ben Rady" <benrady@gmail.com>,
+ * "Rod Coffin" <rfciii@gmail.com>,
+ * "Ryan Breidenbach" <ryan.breidenbach@gmail.com>, et al.
+ *
+ * Infinitest is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Infinitest is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Infinitest.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.infinitest.testrunner;
+
+import static java.util.Collections.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+
+import com.google.common.collect.*;
+
+public class WhenTrackingLoadedClasses {
+	private ClassLoadingRecorder recorder;
+
+	@Before
+	public void inContext() throws Exception {
+		File testClassDirectory = new File(PassingTestCase.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		recorder = new ClassLoadingRecorder(testClassDirectory.getAbsolutePath());
+	}
+
+	@Test
+	public void shouldRecordClassesFromTheClassDirectories() {
+		load(PassingTestCase.class);
+
+		assertEquals(singleton(PassingTestCase.class.getName()), recorder.getLoadedClasses());
+	}
+
+	@Test
+	public void shouldNotRecordOtherClasses() {
+		load(String.class);
+		load(Lists.class);
+
+		assertTrue(recorder.getLoadedClasses().isEmpty());
+	}
+
+	@Test
+	public void shouldNotRecordRedefinedClasses() {
+		recorder.transform(null, internalNameOf(PassingTestCase.class), PassingTestCase.class, PassingTestCase.class.getProtectionDomain(), new byte[0]);
+
+		assertTrue(recorder.getLoadedClasses().isEmpty());
+	}
+
+	@Test
+	public void shouldLeaveClassesAsTheyAre() {
+		assertNull(load(PassingTestCase.class));
+	}
+
+	@Test
+	public void shouldReportLoadedClassesWithTestResults() {
+		TestResults results = new TestResults();
+		assertNull(results.getLoadedClasses());
+
+		results.setLoadedClasses(singleton("com.example.Loaded"));
+
+		assertEquals(singleton("com.example.Loaded"), results.getLoadedClasses());
+	}
+
+	private byte[] load(Class<?> loadedClass) {
+		return recorder.transform(loadedClass.getClassLoader(), internalNameOf(loadedClass), null, loadedClass.getProtectionDomain(), new byte[0]);
+	}
+
+	private static String internalNameOf(Class<?> loadedClass) {
+		return loadedClass.getName().replace('.', '/');
+	}
+}